@@ -16,6 +16,10 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Chat server to connect to; see chatServerHost in gradle.properties.
+        buildConfigField("String", "CHAT_SERVER_HOST", "\"${providers.gradleProperty("chatServerHost").get()}\"")
+        buildConfigField("int", "CHAT_SERVER_PORT", providers.gradleProperty("chatServerPort").get())
     }
 
     buildTypes {
@@ -27,10 +31,17 @@ android {
             )
         }
     }
+    buildFeatures {
+        buildConfig = true
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        // Local unit tests exercise classes that log through android.util.Log.
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -40,9 +51,21 @@ dependencies {
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
-    implementation(libs.volley)
+    implementation(libs.recyclerview)
     testImplementation(libs.junit)
+    // The android.jar used by local unit tests only has stubs of org.json.
+    testImplementation(libs.org.json)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 
-}
\ No newline at end of file
+}
+
+tasks.register<JavaExec>("benchmark") {
+    group = "verification"
+    description = "Runs the Four in a Row AI search benchmark on fixed positions."
+    val unitTest = tasks.named<Test>("testDebugUnitTest")
+    dependsOn("compileDebugUnitTestJavaWithJavac")
+    classpath = files(unitTest.map { it.classpath })
+    mainClass.set("com.example.chatroom.ConnectFourBenchmark")
+    args = (project.findProperty("benchmarkArgs") as String?)?.split(" ") ?: emptyList()
+}
@@ -0,0 +1,389 @@
+package com.example.chatroom;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.FormBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * The app's one HTTP client for the PHP endpoints. Every request shares the same connection pool,
+ * so consecutive calls to the stats server reuse a kept-alive connection instead of paying for a
+ * new TCP handshake, and the same dispatcher threads.
+ *
+ * <p>Listeners run on the main thread. A request started with a tag can be cancelled with
+ * {@link #cancelAll}; once cancelled, neither of its listeners is called.
+ *
+ * <p>Read-only endpoints can go through the response cache instead ({@link #getCached},
+ * {@link #postFormCached}). A copy younger than its TTL is returned without touching the network.
+ * An older copy is returned at once and revalidated in the background with {@code If-None-Match}
+ * or {@code If-Modified-Since}. Callers asking for the same response while it is being fetched
+ * share that one request. A cached endpoint can be parsed as it streams in with a
+ * {@link BodyParser}; the cache then keeps the parsed value instead of the body text.
+ */
+public class ApiClient {
+
+    private static final String TAG = "ApiClient";
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static ApiClient instance;
+
+    public interface Listener {
+        void onResponse(String response);
+    }
+
+    public interface ErrorListener {
+        void onError(IOException error);
+    }
+
+    /** Turns a response body into a value; runs on an OkHttp thread and may stop reading early. */
+    public interface BodyParser<T> {
+        T parse(ResponseBody body) throws IOException;
+    }
+
+    public interface ResultListener<T> {
+        void onResult(T result);
+    }
+
+    private static final BodyParser<String> STRING_PARSER = ResponseBody::string;
+
+    private static final class CachedResponse {
+        final Object value;
+        final String etag;
+        final String lastModified;
+        final long fetchedAtMs;
+
+        CachedResponse(Object value, String etag, String lastModified, long fetchedAtMs) {
+            this.value = value;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAtMs = fetchedAtMs;
+        }
+    }
+
+    /** One caller waiting on a shared cached fetch. */
+    private static final class Waiter {
+        final Object tag;
+        final ResultListener<Object> listener;
+        final ErrorListener errorListener;
+        final boolean hasCachedCopy;
+        volatile boolean cancelled;
+
+        Waiter(Object tag, ResultListener<Object> listener, ErrorListener errorListener, boolean hasCachedCopy) {
+            this.tag = tag;
+            this.listener = listener;
+            this.errorListener = errorListener;
+            this.hasCachedCopy = hasCachedCopy;
+        }
+    }
+
+    private final OkHttpClient client;
+    private final Executor callbackExecutor;
+
+    private final Object cacheLock = new Object();
+    // Guarded by cacheLock.
+    private final Map<String, CachedResponse> cache = new HashMap<>();
+    private final Map<String, List<Waiter>> inFlight = new HashMap<>();
+    private long cacheGeneration;
+
+    public static synchronized ApiClient getInstance() {
+        if (instance == null) {
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .connectTimeout(5, TimeUnit.SECONDS)
+                    .readTimeout(10, TimeUnit.SECONDS)
+                    .writeTimeout(10, TimeUnit.SECONDS)
+                    .build();
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            instance = new ApiClient(client, mainHandler::post);
+        }
+        return instance;
+    }
+
+    ApiClient(OkHttpClient client, Executor callbackExecutor) {
+        this.client = client;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /** POSTs {@code params} form-encoded, like the PHP scripts expect. {@code tag} may be null. */
+    public Call postForm(String url, Map<String, String> params, Object tag, Listener listener, ErrorListener errorListener) {
+        Request request = new Request.Builder()
+                .url(url)
+                .post(formBody(params))
+                .tag(tag)
+                .build();
+        return enqueue(request, listener, errorListener);
+    }
+
+    /**
+     * Blocking variant of {@link #postForm} for callers that already run on their own worker
+     * thread. Returns the body of a 2xx response and throws for anything else.
+     */
+    String postFormBlocking(String url, Map<String, String> params) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .post(formBody(params))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code() + " from " + request.url());
+            }
+            return body != null ? body.string() : "";
+        }
+    }
+
+    public Call get(String url, Object tag, Listener listener, ErrorListener errorListener) {
+        Request request = new Request.Builder()
+                .url(url)
+                .get()
+                .tag(tag)
+                .build();
+        return enqueue(request, listener, errorListener);
+    }
+
+    /**
+     * Cached GET. Must be called on the main thread. A cached copy is delivered before this method
+     * returns. If that copy is stale, {@code listener} runs a second time when the server sends a
+     * different body. Errors reach {@code errorListener} only when there was no copy to show.
+     */
+    public void getCached(String url, long ttlMs, Object tag, Listener listener, ErrorListener errorListener) {
+        fetchCached(url, url, null, ttlMs, tag, STRING_PARSER, listener::onResponse, errorListener);
+    }
+
+    /**
+     * Cached GET whose body is read by {@code parser}; see {@link #getCached}. A URL must always be
+     * fetched with the same parser, and parsed values must implement {@code equals} so an
+     * unchanged refresh is not delivered twice.
+     */
+    public <T> void getCached(String url, long ttlMs, Object tag, BodyParser<T> parser,
+                              ResultListener<T> listener, ErrorListener errorListener) {
+        fetchCached(url, url, null, ttlMs, tag, parser, listener, errorListener);
+    }
+
+    /** Cached form POST for read-only endpoints; see {@link #getCached}. */
+    public void postFormCached(String url, Map<String, String> params, long ttlMs, Object tag,
+                               Listener listener, ErrorListener errorListener) {
+        StringBuilder key = new StringBuilder(url);
+        for (Map.Entry<String, String> param : new TreeMap<>(params).entrySet()) {
+            key.append(key.length() == url.length() ? '?' : '&')
+                    .append(param.getKey()).append('=').append(param.getValue());
+        }
+        fetchCached(key.toString(), url, params, ttlMs, tag, STRING_PARSER, listener::onResponse, errorListener);
+    }
+
+    /** Drops every cached response for {@code url}, whatever parameters it was fetched with. */
+    public void invalidate(String url) {
+        synchronized (cacheLock) {
+            cacheGeneration++;
+            Iterator<String> keys = cache.keySet().iterator();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (key.equals(url) || key.startsWith(url + "?")) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels every queued or running request that was started with {@code tag}. Cached fetches
+     * shared with other callers keep running, but callers with this tag are no longer called.
+     */
+    public void cancelAll(Object tag) {
+        if (tag == null) {
+            return;
+        }
+        synchronized (cacheLock) {
+            for (List<Waiter> waiters : inFlight.values()) {
+                Iterator<Waiter> it = waiters.iterator();
+                while (it.hasNext()) {
+                    Waiter waiter = it.next();
+                    if (tag.equals(waiter.tag)) {
+                        waiter.cancelled = true;
+                        it.remove();
+                    }
+                }
+            }
+        }
+        List<Call> calls = new ArrayList<>(client.dispatcher().queuedCalls());
+        calls.addAll(client.dispatcher().runningCalls());
+        for (Call call : calls) {
+            if (tag.equals(call.request().tag())) {
+                call.cancel();
+            }
+        }
+    }
+
+    private Call enqueue(Request request, Listener listener, ErrorListener errorListener) {
+        Call call = client.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (call.isCanceled()) {
+                    return;
+                }
+                Log.w(TAG, "Request to " + request.url() + " failed", e);
+                deliverError(call, errorListener, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                String body;
+                try (Response r = response) {
+                    ResponseBody responseBody = r.body();
+                    if (!r.isSuccessful()) {
+                        deliverError(call, errorListener, new IOException("HTTP " + r.code() + " from " + request.url()));
+                        return;
+                    }
+                    body = responseBody != null ? responseBody.string() : "";
+                } catch (IOException e) {
+                    deliverError(call, errorListener, e);
+                    return;
+                }
+                callbackExecutor.execute(() -> {
+                    // Checked again here so a cancel from onDestroy wins over an already posted result.
+                    if (!call.isCanceled()) {
+                        listener.onResponse(body);
+                    }
+                });
+            }
+        });
+        return call;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void fetchCached(String key, String url, Map<String, String> params, long ttlMs, Object tag,
+                                 BodyParser<T> parser, ResultListener<T> listener, ErrorListener errorListener) {
+        CachedResponse cached;
+        long generation;
+        boolean startFetch = false;
+        synchronized (cacheLock) {
+            cached = cache.get(key);
+            generation = cacheGeneration;
+            if (cached == null || System.currentTimeMillis() - cached.fetchedAtMs >= ttlMs) {
+                List<Waiter> waiters = inFlight.get(key);
+                if (waiters == null) {
+                    waiters = new ArrayList<>();
+                    inFlight.put(key, waiters);
+                    startFetch = true;
+                }
+                waiters.add(new Waiter(tag, (ResultListener<Object>) listener, errorListener, cached != null));
+            }
+        }
+        if (cached != null) {
+            listener.onResult((T) cached.value);
+        }
+        if (!startFetch) {
+            return;
+        }
+
+        Request.Builder request = new Request.Builder().url(url);
+        if (params != null) {
+            request.post(formBody(params));
+        } else {
+            request.get();
+        }
+        if (cached != null && cached.etag != null) {
+            request.header("If-None-Match", cached.etag);
+        } else if (cached != null && cached.lastModified != null) {
+            request.header("If-Modified-Since", cached.lastModified);
+        }
+        CachedResponse revalidating = cached;
+        client.newCall(request.build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.w(TAG, "Cached request to " + url + " failed", e);
+                completeCached(key, generation, null, e, false);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response r = response) {
+                    long now = System.currentTimeMillis();
+                    if (r.code() == 304 && revalidating != null) {
+                        completeCached(key, generation, new CachedResponse(revalidating.value,
+                                revalidating.etag, revalidating.lastModified, now), null, false);
+                    } else if (r.isSuccessful()) {
+                        ResponseBody responseBody = r.body();
+                        if (responseBody == null) {
+                            throw new IOException("Empty response from " + url);
+                        }
+                        Object value = parser.parse(responseBody);
+                        boolean changed = revalidating == null || !value.equals(revalidating.value);
+                        completeCached(key, generation, new CachedResponse(value,
+                                r.header("ETag"), r.header("Last-Modified"), now), null, changed);
+                    } else {
+                        completeCached(key, generation, null,
+                                new IOException("HTTP " + r.code() + " from " + url), false);
+                    }
+                } catch (IOException e) {
+                    completeCached(key, generation, null, e, false);
+                }
+            }
+        });
+    }
+
+    private void completeCached(String key, long generation, CachedResponse fresh, IOException error, boolean changed) {
+        List<Waiter> waiters;
+        synchronized (cacheLock) {
+            waiters = inFlight.remove(key);
+            // A response that started before an invalidate() may predate the change it was for.
+            if (fresh != null && generation == cacheGeneration) {
+                cache.put(key, fresh);
+            }
+        }
+        if (waiters == null) {
+            return;
+        }
+        for (Waiter waiter : waiters) {
+            if (fresh != null && (changed || !waiter.hasCachedCopy)) {
+                callbackExecutor.execute(() -> {
+                    if (!waiter.cancelled) {
+                        waiter.listener.onResult(fresh.value);
+                    }
+                });
+            } else if (error != null && !waiter.hasCachedCopy) {
+                callbackExecutor.execute(() -> {
+                    if (!waiter.cancelled) {
+                        waiter.errorListener.onError(error);
+                    }
+                });
+            }
+        }
+    }
+
+    private static FormBody formBody(Map<String, String> params) {
+        FormBody.Builder body = new FormBody.Builder();
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            body.add(param.getKey(), param.getValue());
+        }
+        return body.build();
+    }
+
+    private void deliverError(Call call, ErrorListener errorListener, IOException error) {
+        callbackExecutor.execute(() -> {
+            if (!call.isCanceled()) {
+                errorListener.onError(error);
+            }
+        });
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.chatroom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class BinaryFrameCodec implements WireCodec {
+
+    public static final byte TYPE_TEXT = 0x01;
+    public static final byte TYPE_MOVE = 0x02;
+    public static final byte TYPE_MOVE4 = 0x03;
+    public static final byte TYPE_GAME_OVER = 0x04;
+    public static final byte TYPE_GAME_OVER4 = 0x05;
+
+    private static final int MAX_FRAME_LENGTH = 64 * 1024;
+    private static final int MAX_HEADER_LENGTH = 1 + 5;
+
+    private final byte[] header = new byte[MAX_HEADER_LENGTH];
+    private int headerLength = 0;
+    private byte frameType;
+    private byte[] payload = new byte[256];
+    private int payloadLength = -1;
+    private int payloadRead = 0;
+    private final int[] cursor = new int[1];
+    // Only touched by the writing thread, like the encode methods.
+    private final long[] encodeFields = new long[5];
+    private final MessageDecoder decoder = new MessageDecoder();
+
+    @Override
+    public byte[] encode(String message) {
+        byte type = typeOf(message);
+        if (type != TYPE_TEXT) {
+            byte[] frame = encodeGameFrame(type, message);
+            if (frame != null) {
+                return frame;
+            }
+        }
+        return frame(TYPE_TEXT, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean encode(String message, ByteBuffer out) {
+        byte type = typeOf(message);
+        int fieldCount = type != TYPE_TEXT ? parseGameFields(type, message, encodeFields) : -1;
+        if (fieldCount > 0) {
+            int bodyLength = 0;
+            for (int i = 0; i < fieldCount; i++) {
+                bodyLength += varintLength(encodeFields[i]);
+            }
+            if (out.remaining() < 1 + varintLength(bodyLength) + bodyLength) {
+                return false;
+            }
+            out.put(type);
+            putVarint(out, bodyLength);
+            for (int i = 0; i < fieldCount; i++) {
+                putVarint(out, encodeFields[i]);
+            }
+            return true;
+        }
+        int bodyLength = TextCodec.utf8Length(message);
+        if (out.remaining() < 1 + varintLength(bodyLength) + bodyLength) {
+            return false;
+        }
+        out.put(TYPE_TEXT);
+        putVarint(out, bodyLength);
+        TextCodec.putUtf8(out, message);
+        return true;
+    }
+
+    private static byte typeOf(String message) {
+        if (message.startsWith("MOVE:")) return TYPE_MOVE;
+        if (message.startsWith("MOVE4:")) return TYPE_MOVE4;
+        if (message.startsWith("GAME_OVER:")) return TYPE_GAME_OVER;
+        if (message.startsWith("GAME_OVER4:")) return TYPE_GAME_OVER4;
+        return TYPE_TEXT;
+    }
+
+    private static byte[] encodeGameFrame(byte type, String message) {
+        long[] fields = new long[5];
+        int fieldCount = parseGameFields(type, message, fields);
+        if (fieldCount < 0) {
+            return null;
+        }
+        byte[] body = new byte[fieldCount * 10];
+        int length = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            length = writeVarint(body, length, fields[i]);
+        }
+        return frame(type, Arrays.copyOf(body, length));
+    }
+
+    /**
+     * Parses the numeric fields of a game message into {@code fields} and returns how many there
+     * are, or -1 if the message has to go as a text frame.
+     */
+    private static int parseGameFields(byte type, String message, long[] fields) {
+        // Moves carry an optional trailing sequence number; it is simply one more varint in the frame.
+        boolean move = type == TYPE_MOVE || type == TYPE_MOVE4;
+        int minFields = move ? 4 : 2;
+        int maxFields = move ? 5 : 2;
+        int fieldCount = 0;
+        int start = message.indexOf(':') + 1;
+        while (true) {
+            if (fieldCount == maxFields) {
+                return -1;
+            }
+            int end = message.indexOf(':', start);
+            long value = parseUnsigned(message, start, end < 0 ? message.length() : end);
+            // Row, column, player and winner must fit the int the receiver decodes them into.
+            boolean intField = fieldCount > 0 && fieldCount < (move ? 4 : 2);
+            if (value < 0 || (intField && value > Integer.MAX_VALUE)) {
+                return -1;
+            }
+            fields[fieldCount++] = value;
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+        return fieldCount < minFields ? -1 : fieldCount;
+    }
+
+    private static long parseUnsigned(String s, int start, int end) {
+        // Leading zeros would not survive the round trip, so such fields stay text.
+        if (start >= end || end - start > 18 || (end - start > 1 && s.charAt(start) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static byte[] frame(byte type, byte[] body) {
+        byte[] frame = new byte[1 + 5 + body.length];
+        frame[0] = type;
+        int offset = writeVarint(frame, 1, body.length);
+        System.arraycopy(body, 0, frame, offset, body.length);
+        return Arrays.copyOf(frame, offset + body.length);
+    }
+
+    static int writeVarint(byte[] out, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[offset++] = (byte) value;
+        return offset;
+    }
+
+    static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long readVarint(byte[] in, int[] cursor, int limit) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (cursor[0] < limit) {
+            byte b = in[cursor[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                break;
+            }
+        }
+        throw new IOException("Malformed varint in frame");
+    }
+
+    /** A varint that must fit a non-negative long; a 10-byte varint can overflow into the sign bit. */
+    private static long readLongField(byte[] in, int[] cursor, int limit) throws IOException {
+        long value = readVarint(in, cursor, limit);
+        if (value < 0) {
+            throw new IOException("Frame field out of range");
+        }
+        return value;
+    }
+
+    /** A varint that must fit a non-negative int, as the encoder guarantees for these fields. */
+    private static int readIntField(byte[] in, int[] cursor, int limit) throws IOException {
+        long value = readVarint(in, cursor, limit);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Frame field out of range");
+        }
+        return (int) value;
+    }
+
+    @Override
+    public boolean decodeNext(ByteBuffer in, Listener listener) throws IOException {
+        if (payloadLength < 0 && !readHeader(in)) {
+            return false;
+        }
+        int count = Math.min(in.remaining(), payloadLength - payloadRead);
+        in.get(payload, payloadRead, count);
+        payloadRead += count;
+        if (payloadRead < payloadLength) {
+            return false;
+        }
+        ChatMessage message = decodePayload();
+        headerLength = 0;
+        payloadLength = -1;
+        payloadRead = 0;
+        listener.onMessage(message);
+        return true;
+    }
+
+    private boolean readHeader(ByteBuffer in) throws IOException {
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            header[headerLength++] = b;
+            if (headerLength > 1 && (b & 0x80) == 0) {
+                frameType = header[0];
+                cursor[0] = 1;
+                long length = readVarint(header, cursor, headerLength);
+                if (length > MAX_FRAME_LENGTH) {
+                    throw new IOException("Frame exceeds " + MAX_FRAME_LENGTH + " bytes");
+                }
+                payloadLength = (int) length;
+                if (payload.length < payloadLength) {
+                    payload = new byte[Math.max(payload.length * 2, payloadLength)];
+                }
+                return true;
+            }
+            if (headerLength == MAX_HEADER_LENGTH) {
+                throw new IOException("Malformed frame header");
+            }
+        }
+        return false;
+    }
+
+    private ChatMessage decodePayload() throws IOException {
+        switch (frameType) {
+            case TYPE_TEXT:
+                return decoder.decode(new String(payload, 0, payloadLength, StandardCharsets.UTF_8));
+            case TYPE_MOVE:
+            case TYPE_MOVE4: {
+                cursor[0] = 0;
+                long gameId = readLongField(payload, cursor, payloadLength);
+                int row = readIntField(payload, cursor, payloadLength);
+                int col = readIntField(payload, cursor, payloadLength);
+                int player = readIntField(payload, cursor, payloadLength);
+                long seq = cursor[0] < payloadLength ? readLongField(payload, cursor, payloadLength) : -1;
+                if (cursor[0] != payloadLength) {
+                    throw new IOException("Trailing bytes in move frame");
+                }
+                return ChatMessage.move(frameType == TYPE_MOVE ? ChatMessage.Game.TIC_TAC_TOE : ChatMessage.Game.FOUR_IN_A_ROW,
+                        String.valueOf(gameId), row, col, player, seq);
+            }
+            case TYPE_GAME_OVER:
+            case TYPE_GAME_OVER4: {
+                cursor[0] = 0;
+                long gameId = readLongField(payload, cursor, payloadLength);
+                int winner = readIntField(payload, cursor, payloadLength);
+                if (cursor[0] != payloadLength) {
+                    throw new IOException("Trailing bytes in game over frame");
+                }
+                return ChatMessage.gameOver(frameType == TYPE_GAME_OVER ? ChatMessage.Game.TIC_TAC_TOE : ChatMessage.Game.FOUR_IN_A_ROW,
+                        String.valueOf(gameId), winner);
+            }
+            default:
+                throw new IOException("Unknown frame type " + frameType);
+        }
+    }
+}
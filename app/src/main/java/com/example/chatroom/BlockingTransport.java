@@ -0,0 +1,136 @@
+package com.example.chatroom;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+
+public class BlockingTransport implements Transport {
+
+    private static final String TAG = "BlockingTransport";
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private final OutboundQueue outboundQueue;
+    private final WireProtocol protocol;
+    private final Callback callback;
+    private Socket socket;
+    private MessageWriter messageWriter;
+    private volatile boolean closed = false;
+
+    public BlockingTransport(OutboundQueue outboundQueue, WireProtocol protocol, Callback callback) {
+        this.outboundQueue = outboundQueue;
+        this.protocol = protocol;
+        this.callback = callback;
+    }
+
+    @Override
+    public void start(String host, int port, String handshake) {
+        new Thread(() -> {
+            InputStream in;
+            try {
+                Log.d(TAG, "Connecting to server...");
+                socket = new Socket(host, port);
+                socket.setKeepAlive(true);
+                BufferedOutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                in = socket.getInputStream();
+
+                out.write(protocol.encode(handshake));
+                out.flush();
+                Log.d(TAG, "Sent username: " + handshake);
+
+                if (closed) {
+                    closeSocket();
+                    return;
+                }
+                messageWriter = new MessageWriter(outboundQueue, out, protocol, this::finish);
+                messageWriter.start();
+                callback.onConnected();
+            } catch (IOException e) {
+                Log.e(TAG, "Error connecting to server: " + e.getMessage(), e);
+                finish(e);
+                return;
+            }
+            listen(in);
+        }, TAG).start();
+    }
+
+    private void listen(InputStream in) {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        WireCodec.Listener listener = callback::onMessageReceived;
+        try {
+            int read;
+            while (!closed && (read = in.read(buffer.array(), buffer.position(), buffer.remaining())) != -1) {
+                buffer.position(buffer.position() + read);
+                buffer.flip();
+                while (protocol.decodeNext(buffer, listener)) {
+                    // Dispatch every complete message in the buffer.
+                }
+                buffer.compact();
+            }
+            Log.d(TAG, "Disconnected from server.  Stopping message listener.");
+            finish(null);
+        } catch (SocketException e) {
+            Log.e(TAG, "SocketException while listening for messages: " + e.getMessage(), e);
+            finish(e);
+        } catch (IOException e) {
+            if (!closed) {
+                Log.e(TAG, "Error reading from server: " + e.getMessage(), e);
+            }
+            finish(e);
+        }
+    }
+
+    @Override
+    public void onMessageQueued() {
+        // The writer thread is already parked on the queue.
+    }
+
+    @Override
+    public void closeAfterDrain() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (messageWriter != null) {
+            // The writer thread closes the socket once the queue has been flushed.
+            messageWriter.closeAfterDrain();
+        } else {
+            closeSocket();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (messageWriter != null) {
+            // Leave anything still queued for the next connection instead of writing it to a dead socket.
+            messageWriter.stop();
+        }
+        closeSocket();
+    }
+
+    private void finish(Exception cause) {
+        boolean wasOpen = !closed;
+        close();
+        if (wasOpen) {
+            callback.onClosed(cause);
+        }
+    }
+
+    private void closeSocket() {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing connection: " + e.getMessage(), e);
+        }
+    }
+}
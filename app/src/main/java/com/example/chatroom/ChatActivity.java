@@ -1,105 +1,129 @@
 package com.example.chatroom;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.content.res.TypedArray;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
-import android.util.TypedValue;
-import android.view.View;
+import android.view.inputmethod.EditorInfo;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.LinearLayout;
-import android.widget.ScrollView;
-import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.FragmentManager;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import com.android.volley.DefaultRetryPolicy;
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
-import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
-
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
 public class ChatActivity extends AppCompatActivity {
 
     private static final String TAG = "ChatActivity";
-    private static final String STATS_URL = "http://51.21.214.199/get_stats.php";
-    private static final String SCOREBOARD_URL = "http://51.21.214.199/get_scoreboard.php";
+    static final String STATS_URL = "http://51.21.214.199/get_stats.php";
+    static final String SCOREBOARD_URL = "http://51.21.214.199/get_scoreboard.php";
+    private static final long STATS_TTL_MS = 30_000;
+    private static final long SCOREBOARD_TTL_MS = 60_000;
+    private static final int SCOREBOARD_PAGE_SIZE = 20;
+    private static final int SCOREBOARD_PREFETCH_ROWS = 5;
+    private static final int HISTORY_PAGE_SIZE = 50;
+    private static final int HISTORY_PREFETCH_ROWS = 10;
+    private static final int SEARCH_RESULT_LIMIT = 50;
 
-    private Map<String, View[]> activeGameInvites = new HashMap<>();
     private EditText messageEditText;
+    private EditText searchEditText;
     private Button sendButton;
-    private TextView chatTextView;
     private String username;
-    private LinearLayout chatLinearLayout;
     private Button openGameMenuButton;
     private LinearLayout gameSelectionLayout;
-    private ServerConnectionManager connectionManager;
-    private Handler handler = new Handler(Looper.getMainLooper());
-    private ScrollView chatScrollView;
+    private ChatServiceConnection chatService;
+    private boolean resumed = false;
+    private RecyclerView chatRecyclerView;
+    private ChatTimelineAdapter timelineAdapter;
+    private ChatHistoryStore history;
+    // History index of the oldest chat line on screen; MAX_VALUE until the first page arrives.
+    private long oldestHistoryIndex = Long.MAX_VALUE;
+    private boolean loadingHistory = false;
     private Button statsButton;
     private Button scoreboardButton;
-    private RequestQueue requestQueue;
-
-    private BroadcastReceiver messageReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String message = intent.getStringExtra("message");
-            Log.d(TAG, "Received broadcast: " + intent.getAction() + ", message: " + message);
-
-            if ("chat_message".equals(intent.getAction())) {
-                if (message.startsWith("NEW_TICTACTOE:")) {
-                    showGameInvite(message);
-                } else if (message.startsWith("JOIN_TICTACTOE:")) {
+    // Kept so a background refresh of a cached response can update the dialog in place.
+    private android.app.AlertDialog statsDialog;
+    private LeaderboardAdapter leaderboardAdapter;
+    private boolean loadingLeaderboard = false;
+    private final LiveLeaderboard.Listener liveLeaderboardListener = this::onLiveLeaderboardChanged;
+
+    private static final ChatMessage.Type[] CHAT_TOPICS = {
+            ChatMessage.Type.CHAT,
+            ChatMessage.Type.JOINED,
+            ChatMessage.Type.TEXT,
+            ChatMessage.Type.INVITE,
+            ChatMessage.Type.JOIN,
+            ChatMessage.Type.START,
+            ChatMessage.Type.EXIT
+    };
+
+    private final List<MessageBus.Subscription> subscriptions = new ArrayList<>();
+
+    // Delivered on the socket thread and applied to the timeline once per frame.
+    private FrameBatcher<ChatMessage> incomingMessages;
+    private final MessageBus.Subscriber messageSubscriber = message -> incomingMessages.add(message);
+    private final List<String> pendingChatLines = new ArrayList<>();
+
+    private void applyMessages(List<ChatMessage> batch) {
+        boolean appended = false;
+        for (ChatMessage message : batch) {
+            appended |= applyMessage(message);
+        }
+        flushChatLines();
+        if (appended && timelineAdapter.isFollowingTail()) {
+            scrollToLatest();
+        }
+    }
+
+    /** Returns true if the message appended a row to the timeline. */
+    private boolean applyMessage(ChatMessage message) {
+        Log.d(TAG, "Received " + message.getType() + " message: " + message);
+
+        boolean ticTacToe = message.getGame() == ChatMessage.Game.TIC_TAC_TOE;
+        switch (message.getType()) {
+            case INVITE:
+                flushChatLines();
+                timelineAdapter.putInvite(message.getGame(), message.getGameId(), message.getUsername());
+                return true;
+            case JOIN:
+                if (ticTacToe) {
                     handleJoinTicTacToe(message);
-                } else if (message.startsWith("START_TICTACTOE:")) {
-                    handleStartTicTacToe(message);
-                } else if (message.startsWith("EXIT_TICTACTOE:") || (message.startsWith("EXIT_FOURINAROW"))) {
-                    handleGameExit(message);
-                } if (message.startsWith("NEW_FOURINAROW:")) {
-                    showFourInARowInvite(message);
-                } else if (message.startsWith("JOIN_FOURINAROW:")) {
+                } else {
                     handleJoinFourInARow(message);
-                } else if (message.startsWith("START_FOURINAROW:")) {
+                }
+                return false;
+            case START:
+                flushChatLines();
+                if (ticTacToe) {
+                    handleStartTicTacToe(message);
+                } else {
                     handleStartFourInARow(message);
-                } else if (!message.startsWith("EXIT_TICTACTOE:") &&
-                        !message.startsWith("EXIT_FOURINAROW:") &&
-                        !message.startsWith("RESET_GAME_REQUEST:") &&
-                        !message.startsWith("RESET_GAME_CONFIRMED:") &&
-                        !message.startsWith("MOVE:") &&
-                        !message.startsWith("GAME_OVER:") &&
-                        !message.startsWith("MOVE4:") &&
-                        !message.startsWith("GAME_OVER4:") &&
-                        !message.startsWith("NEW_TICTACTOE:") &&
-                        !message.startsWith("JOIN_TICTACTOE:") &&
-                        !message.startsWith("START_TICTACTOE:") &&
-                        !message.startsWith("NEW_FOURINAROW:") &&
-                        !message.startsWith("JOIN_FOURINAROW:") &&
-                        !message.startsWith("START_FOURINAROW:")) {
-
-                    addChatMessage(message);
                 }
-            }
+                return true;
+            case EXIT:
+                timelineAdapter.closeGame(message.getGameId());
+                return false;
+            default:
+                pendingChatLines.add(message.getRaw());
+                return true;
         }
-    };
+    }
+
+    private void flushChatLines() {
+        timelineAdapter.addChats(pendingChatLines);
+        pendingChatLines.clear();
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -108,32 +132,111 @@ public class ChatActivity extends AppCompatActivity {
         setContentView(R.layout.activity_chat);
 
         messageEditText = findViewById(R.id.messageEditText);
+        searchEditText = findViewById(R.id.searchEditText);
         sendButton = findViewById(R.id.sendButton);
-        chatTextView = findViewById(R.id.chatTextView);
-        chatLinearLayout = findViewById(R.id.chatLinearLayout);
         openGameMenuButton = findViewById(R.id.openGameMenuButton);
         gameSelectionLayout = findViewById(R.id.gameSelectionLayout);
-        chatScrollView = findViewById(R.id.chatScrollView);
+        chatRecyclerView = findViewById(R.id.chatRecyclerView);
         statsButton = findViewById(R.id.statsButton);
         scoreboardButton = findViewById(R.id.scoreboardButton);
 
-        requestQueue = Volley.newRequestQueue(this);
-
         username = getIntent().getStringExtra("USERNAME");
         Log.d(TAG, "Intent extra USERNAME: " + getIntent().getStringExtra("USERNAME"));
         Log.d(TAG, "Username on this device: " + username);
 
-        connectionManager = ServerConnectionManager.getInstance(username);
+        chatService = new ChatServiceConnection(this, username);
+        chatService.bind();
 
+        history = ChatHistoryStore.getInstance(this, MyChatService.HISTORY_ROOM);
+        setupTimeline();
+        loadOlderHistory();
+        incomingMessages = new FrameBatcher<>(this::applyMessages);
         setupButtonListeners();
 
     }
 
+    private void setupTimeline() {
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        layoutManager.setStackFromEnd(true);
+        chatRecyclerView.setLayoutManager(layoutManager);
+        timelineAdapter = new ChatTimelineAdapter(username, invite -> {
+            String request = invite.getGame() == ChatMessage.Game.TIC_TAC_TOE ? "JOIN_REQUEST:" : "JOIN_REQUEST4:";
+            chatService.sendMessage(request + invite.getGameId() + ":" + invite.getInitiator() + ":" + username);
+            timelineAdapter.removeGame(invite.getGameId());
+        });
+        chatRecyclerView.setAdapter(timelineAdapter);
+        chatRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy < 0 && layoutManager.findFirstVisibleItemPosition() < HISTORY_PREFETCH_ROWS) {
+                    loadOlderHistory();
+                } else if (dy > 0 && !timelineAdapter.isFollowingTail() && layoutManager.findLastVisibleItemPosition()
+                        >= timelineAdapter.getItemCount() - HISTORY_PREFETCH_ROWS) {
+                    loadNewerHistory();
+                }
+            }
+        });
+    }
+
+    private void loadOlderHistory() {
+        if (loadingHistory || oldestHistoryIndex == 0) {
+            return;
+        }
+        if (oldestHistoryIndex != Long.MAX_VALUE) {
+            oldestHistoryIndex += timelineAdapter.takeTrimmedChatLines();
+        }
+        boolean firstPage = oldestHistoryIndex == Long.MAX_VALUE;
+        loadingHistory = true;
+        history.loadPage(oldestHistoryIndex, HISTORY_PAGE_SIZE, page -> {
+            loadingHistory = false;
+            if (isDestroyed()) {
+                return;
+            }
+            oldestHistoryIndex = page.firstIndex;
+            timelineAdapter.prependChats(page.lines);
+            if (firstPage) {
+                scrollToLatest();
+            }
+        });
+    }
+
+    /** Pages back down towards the live tail after older pages pushed the newest rows out. */
+    private void loadNewerHistory() {
+        if (loadingHistory || oldestHistoryIndex == Long.MAX_VALUE) {
+            return;
+        }
+        oldestHistoryIndex += timelineAdapter.takeTrimmedChatLines();
+        // Chat rows are consecutive history lines while the timeline is not following the tail.
+        long newestIndex = oldestHistoryIndex + timelineAdapter.getChatCount();
+        long skippedBefore = timelineAdapter.getSkippedLiveChats();
+        loadingHistory = true;
+        history.loadPage(newestIndex + HISTORY_PAGE_SIZE, HISTORY_PAGE_SIZE, page -> {
+            loadingHistory = false;
+            if (isDestroyed()) {
+                return;
+            }
+            // A page near the tail starts before newestIndex; those lines are already shown.
+            int shown = (int) Math.max(0, Math.min(page.lines.size(), newestIndex - page.firstIndex));
+            List<String> newer = page.lines.subList(shown, page.lines.size());
+            boolean shortPage = newer.size() < HISTORY_PAGE_SIZE;
+            // Lines skipped while this page loaded are in neither the page nor the timeline.
+            boolean missedLive = timelineAdapter.getSkippedLiveChats() != skippedBefore;
+            timelineAdapter.appendNewerChats(newer, shortPage && !missedLive);
+            if (shortPage && missedLive) {
+                loadNewerHistory();
+            }
+        });
+    }
+
+    private void scrollToLatest() {
+        chatRecyclerView.scrollToPosition(timelineAdapter.getItemCount() - 1);
+    }
+
     private void setupButtonListeners() {
         sendButton.setOnClickListener(v -> {
             String message = messageEditText.getText().toString().trim();
             if (!message.isEmpty()) {
-                connectionManager.sendMessage(message);
+                chatService.sendMessage(message);
                 messageEditText.setText("");
             }
         });
@@ -144,23 +247,54 @@ public class ChatActivity extends AppCompatActivity {
             gameOptionsBottomSheet.show(fragmentManager, gameOptionsBottomSheet.getTag());
         });
 
+        searchEditText.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId != EditorInfo.IME_ACTION_SEARCH) {
+                return false;
+            }
+            String query = searchEditText.getText().toString().trim();
+            if (!query.isEmpty()) {
+                searchHistory(query);
+            }
+            return true;
+        });
+
         statsButton.setOnClickListener(v -> fetchUserStats());
         scoreboardButton.setOnClickListener(v -> fetchScoreboard());
 
         Button exitButton = findViewById(R.id.exitButton);
         exitButton.setOnClickListener(v -> {
-            connectionManager.sendMessage("DISCONNECT:" + username);
-            Intent serviceIntent = new Intent(ChatActivity.this, MyChatService.class);
-            stopService(serviceIntent);
-            connectionManager.disconnect();
+            // Not through the binding: finish() unbinds and would drop a logout still waiting for it.
+            MyChatService.logout(ChatActivity.this);
             Intent intent = new Intent(ChatActivity.this, MainActivity.class);
             startActivity(intent);
             finish();
         });
     }
 
+    private void searchHistory(String query) {
+        long started = System.nanoTime();
+        history.search(query, SEARCH_RESULT_LIMIT, hits -> {
+            Log.d(TAG, "Search for '" + query + "' found " + hits.size() + " lines in "
+                    + (System.nanoTime() - started) / 1_000_000 + " ms");
+            if (isFinishing()) {
+                return;
+            }
+            StringBuilder resultsText = new StringBuilder();
+            for (ChatHistoryStore.SearchHit hit : hits) {
+                resultsText.append(hit.line).append("\n");
+            }
+            new android.app.AlertDialog.Builder(this)
+                    .setTitle(hits.isEmpty() ? "No matches" : "Matches for \"" + query + "\"")
+                    .setMessage(hits.isEmpty() ? "Nothing in the chat history matches \"" + query + "\"." : resultsText.toString())
+                    .setPositiveButton("OK", null)
+                    .show();
+        });
+    }
+
     private void fetchUserStats() {
-        StringRequest stringRequest = new StringRequest(Request.Method.POST, STATS_URL,
+        Map<String, String> params = new HashMap<>();
+        params.put("username", username);
+        ApiClient.getInstance().postFormCached(STATS_URL, params, STATS_TTL_MS, TAG,
                 response -> {
                     try {
                         JSONObject jsonResponse = new JSONObject(response);
@@ -176,53 +310,84 @@ public class ChatActivity extends AppCompatActivity {
                 error -> {
                     Log.e(TAG, "Error fetching stats", error);
                     Toast.makeText(ChatActivity.this, "Failed to load stats", Toast.LENGTH_SHORT).show();
-                }) {
+                });
+    }
+
+    private void fetchScoreboard() {
+        if (leaderboardAdapter != null) {
+            return;
+        }
+        leaderboardAdapter = new LeaderboardAdapter();
+        RecyclerView leaderboardView = (RecyclerView) getLayoutInflater().inflate(R.layout.dialog_leaderboard, null);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        leaderboardView.setLayoutManager(layoutManager);
+        leaderboardView.setAdapter(leaderboardAdapter);
+        leaderboardView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
-            protected Map<String, String> getParams() {
-                Map<String, String> params = new HashMap<>();
-                params.put("username", username);
-                return params;
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= leaderboardAdapter.getItemCount() - SCOREBOARD_PREFETCH_ROWS) {
+                    loadLeaderboardPage();
+                }
             }
-        };
+        });
+        new android.app.AlertDialog.Builder(this)
+                .setTitle("Top Players")
+                .setView(leaderboardView)
+                .setPositiveButton("OK", null)
+                .setOnDismissListener(dialog -> closeLeaderboard())
+                .show();
+        chatService.whenConnected(service -> service.addLeaderboardListener(liveLeaderboardListener));
+        loadLeaderboardPage();
+    }
 
-        requestQueue.add(stringRequest);
+    private void closeLeaderboard() {
+        if (leaderboardAdapter == null) {
+            return;
+        }
+        leaderboardAdapter = null;
+        chatService.whenConnected(service -> service.removeLeaderboardListener(liveLeaderboardListener));
     }
 
-    private void fetchScoreboard() {
-        StringRequest stringRequest = new StringRequest(Request.Method.GET, SCOREBOARD_URL,
-                response -> {
-                    Log.d(TAG, "Scoreboard response: " + response);
-                    try {
-                        JSONObject jsonResponse = new JSONObject(response);
-                        if (jsonResponse.getBoolean("success")) {
-                            if (jsonResponse.has("scoreboard")) {
-                                JSONArray scoreboard = jsonResponse.getJSONArray("scoreboard");
-                                showScoreboardDialog(scoreboard);
-                            } else {
-                                Toast.makeText(ChatActivity.this, "No scoreboard data available", Toast.LENGTH_LONG).show();
-                            }
-                        } else {
-                            String error = jsonResponse.optString("message", "Unknown error");
-                            Toast.makeText(ChatActivity.this, "Error: " + error, Toast.LENGTH_LONG).show();
-                        }
-                    } catch (JSONException e) {
-                        Log.e(TAG, "JSON parsing error: " + e.getMessage());
-                        Toast.makeText(ChatActivity.this, "Error parsing scoreboard data", Toast.LENGTH_LONG).show();
+    private void onLiveLeaderboardChanged(LiveLeaderboard leaderboard) {
+        if (leaderboardAdapter == null) {
+            return;
+        }
+        leaderboardAdapter.putLiveBoard(leaderboard.rows(), leaderboard.getTopK());
+    }
+
+    private void loadLeaderboardPage() {
+        LeaderboardAdapter adapter = leaderboardAdapter;
+        if (adapter == null || loadingLeaderboard || !adapter.hasMore()) {
+            return;
+        }
+        int offset = adapter.getNextOffset();
+        loadingLeaderboard = true;
+        ApiClient.getInstance().getCached(ScoreboardPage.url(SCOREBOARD_URL, offset, SCOREBOARD_PAGE_SIZE),
+                SCOREBOARD_TTL_MS, TAG,
+                body -> ScoreboardPage.parse(body.charStream(), offset, SCOREBOARD_PAGE_SIZE),
+                page -> {
+                    // A cached page arrives before getCached returns; a refresh of it may follow.
+                    loadingLeaderboard = false;
+                    if (adapter != leaderboardAdapter) {
+                        return;
+                    }
+                    if (page.error != null) {
+                        Toast.makeText(ChatActivity.this, "Error: " + page.error, Toast.LENGTH_LONG).show();
+                        return;
                     }
+                    if (offset == 0 && page.rows.isEmpty()) {
+                        Toast.makeText(ChatActivity.this, "No scoreboard data available", Toast.LENGTH_LONG).show();
+                    }
+                    adapter.putPage(page);
                 },
                 error -> {
-                    Log.e(TAG, "Volley error: " + error.getMessage());
+                    loadingLeaderboard = false;
+                    Log.e(TAG, "Scoreboard request failed: " + error.getMessage());
                     Toast.makeText(ChatActivity.this,
                             "Network error: " + (error.getMessage() != null ? error.getMessage() : "Check connection"),
                             Toast.LENGTH_LONG).show();
                 });
-
-        stringRequest.setRetryPolicy(new DefaultRetryPolicy(
-                5000,
-                DefaultRetryPolicy.DEFAULT_MAX_RETRIES,
-                DefaultRetryPolicy.DEFAULT_BACKOFF_MULT));
-
-        requestQueue.add(stringRequest);
     }
 
     private void showStatsDialog(JSONObject stats) {
@@ -237,288 +402,130 @@ public class ChatActivity extends AppCompatActivity {
             statsText.append("Losses: ").append(stats.getInt("fourinarow_losses")).append("\n");
             statsText.append("Draws: ").append(stats.getInt("fourinarow_draws"));
 
-            new android.app.AlertDialog.Builder(this)
-                    .setTitle("Your Game Stats")
-                    .setMessage(statsText.toString())
-                    .setPositiveButton("OK", null)
-                    .show();
+            statsDialog = showOrUpdateDialog(statsDialog, "Your Game Stats", statsText.toString());
         } catch (JSONException e) {
             Log.e(TAG, "Error processing stats data", e);
         }
     }
 
-    private void showScoreboardDialog(JSONArray scoreboard) {
-        try {
-            StringBuilder scoreboardText = new StringBuilder();
-            for (int i = 0; i < Math.min(scoreboard.length(), 5); i++) {
-                JSONObject player = scoreboard.getJSONObject(i);
-                String username = player.optString("up_ime", "Unknown");
-                int wins = player.optInt("total_wins", 0);
-
-                scoreboardText.append(i + 1).append(". ")
-                        .append(username).append(" - ")
-                        .append("Wins: ").append(wins).append("\n");
-            }
-
-            new android.app.AlertDialog.Builder(this)
-                    .setTitle("Top Players")
-                    .setMessage(scoreboardText.toString())
-                    .setPositiveButton("OK", null)
-                    .show();
-        } catch (JSONException e) {
-            Log.e(TAG, "Error processing scoreboard data", e);
-            Toast.makeText(this, "Error displaying scoreboard", Toast.LENGTH_SHORT).show();
+    private android.app.AlertDialog showOrUpdateDialog(android.app.AlertDialog dialog, String title, String message) {
+        if (dialog != null && dialog.isShowing()) {
+            dialog.setMessage(message);
+            return dialog;
         }
-    }
-
-    private void addChatMessage(String message) {
-        TextView messageView = new TextView(this);
-        messageView.setText(message);
-        messageView.setTextSize(16);
-        TypedValue typedValue = new TypedValue();
-        TypedArray a = obtainStyledAttributes(typedValue.data, new int[]{android.R.attr.textColorPrimary});
-        int color = a.getColor(0, 0xFF000000);
-        a.recycle();
-
-        messageView.setTextColor(color);
-        messageView.setPadding(0, 4, 0, 4);
-
-        chatLinearLayout.addView(messageView);
-        chatScrollView.post(() -> chatScrollView.fullScroll(View.FOCUS_DOWN));
+        return new android.app.AlertDialog.Builder(this)
+                .setTitle(title)
+                .setMessage(message)
+                .setPositiveButton("OK", null)
+                .show();
     }
 
     public void initiateTicTacToeGame() {
         String gameId = generateGameId();
         String inviteMessage = "NEW_TICTACTOE:" + gameId + ":" + username;
-        connectionManager.sendMessage(inviteMessage);
+        chatService.sendMessage(inviteMessage);
     }
 
-    private String generateGameId() {
-        return String.valueOf(System.currentTimeMillis() + new Random().nextInt(1000));
-    }
-
-    private void showGameInvite(String message) {
-        String[] parts = message.split(":");
-        if (parts.length != 3) return;
-
-        final String gameId = parts[1];
-        final String initiatorUsername = parts[2];
-
-        handler.post(() -> {
-            removeExistingInvite(gameId);
-
-            TextView inviteText = new TextView(this);
-            inviteText.setText(initiatorUsername + " wants to play Tic Tac Toe!");
-            inviteText.setTextSize(16);
-            inviteText.setPadding(0, 16, 0, 8);
-
-            Button joinButton = new Button(this);
-            joinButton.setText("Join Game");
-            joinButton.setAllCaps(false);
-
-            if (initiatorUsername.equals(username)) {
-                joinButton.setText("Your Game - Waiting...");
-                joinButton.setEnabled(false);
-            } else {
-                joinButton.setOnClickListener(v -> {
-                    connectionManager.sendMessage("JOIN_REQUEST:" + gameId + ":" + initiatorUsername + ":" + username);
-                    removeExistingInvite(gameId);
-                });
-            }
-
-            chatLinearLayout.addView(inviteText);
-            chatLinearLayout.addView(joinButton);
-
-            activeGameInvites.put(gameId, new View[]{inviteText, joinButton});
-
-            chatScrollView.post(() -> chatScrollView.fullScroll(View.FOCUS_DOWN));
-        });
+    public void startTicTacToeVsComputer(int boardSize, int winLength) {
+        Intent intent = new Intent(ChatActivity.this, TicTacToeActivity.class);
+        intent.putExtra("USERNAME", username);
+        intent.putExtra("VS_COMPUTER", true);
+        intent.putExtra("BOARD_SIZE", boardSize);
+        intent.putExtra("WIN_LENGTH", winLength);
+        startActivity(intent);
     }
 
-    private void removeExistingInvite(String gameId) {
-        View[] views = activeGameInvites.remove(gameId);
-        if (views != null) {
-            for (View view : views) {
-                chatLinearLayout.removeView(view);
-            }
-        }
+    private String generateGameId() {
+        return String.valueOf(System.currentTimeMillis() + new Random().nextInt(1000));
     }
 
-    private void handleJoinTicTacToe(String message) {
-        String[] parts = message.split(":");
-        if (parts.length == 4 && parts[0].equals("JOIN_TICTACTOE")) {
-            Log.d(TAG, "Received JOIN_TICTACTOE confirmation: " + message);
-            handler.post(() -> {
-                Toast.makeText(ChatActivity.this, "You have joined the Tic Tac Toe game!", Toast.LENGTH_SHORT).show();
-            });
-        } else {
-            Log.e(TAG, "Invalid JOIN_TICTACTOE message format received: " + message);
-        }
+    private void handleJoinTicTacToe(ChatMessage message) {
+        Log.d(TAG, "Received JOIN_TICTACTOE confirmation: " + message);
+        Toast.makeText(ChatActivity.this, "You have joined the Tic Tac Toe game!", Toast.LENGTH_SHORT).show();
     }
 
-    private void handleGameExit(String message) {
-        String[] parts = message.split(":");
-        if (parts.length == 2) {
-            String gameId = parts[1];
-
-            handler.post(() -> {
-                View[] views = activeGameInvites.get(gameId);
-                if (views != null && views.length == 2 && views[1] instanceof Button) {
-                    Button gameButton = (Button) views[1];
-                    gameButton.setEnabled(false);
-                    gameButton.setText("This game was closed.");
-                }
-            });
-        }
-    }
+    private void handleStartTicTacToe(ChatMessage message) {
+        String gameId = message.getGameId();
+        String player1 = message.getFirstPlayer();
+        String player2 = message.getSecondPlayer();
 
-    private void handleStartTicTacToe(String message) {
-        String[] parts = message.split(":");
-        if (parts.length == 4 && parts[0].equals("START_TICTACTOE")) {
-            String gameId = parts[1];
-            String player1 = parts[2];
-            String player2 = parts[3];
-
-            Intent intent = new Intent(ChatActivity.this, TicTacToeActivity.class);
-            intent.putExtra("PLAYER1", player1);
-            intent.putExtra("PLAYER2", player2);
-            intent.putExtra("GAME_ID", gameId);
-            intent.putExtra("USERNAME", username);
-            startActivity(intent);
+        Intent intent = new Intent(ChatActivity.this, TicTacToeActivity.class);
+        intent.putExtra("PLAYER1", player1);
+        intent.putExtra("PLAYER2", player2);
+        intent.putExtra("GAME_ID", gameId);
+        intent.putExtra("USERNAME", username);
+        startActivity(intent);
 
-            removeExistingInvite(gameId);
-
-            handler.post(() -> {
-                TextView infoText = new TextView(this);
-                infoText.setText("Tic Tac Toe: " + player1 + " vs " + player2);
-                infoText.setTextSize(16);
-                infoText.setPadding(0, 16, 0, 8);
-
-                Button gameStatusButton = new Button(this);
-                gameStatusButton.setText("Game in Progress");
-                gameStatusButton.setAllCaps(false);
-                gameStatusButton.setEnabled(false);
-
-                chatLinearLayout.addView(infoText);
-                chatLinearLayout.addView(gameStatusButton);
-
-                activeGameInvites.put(gameId, new View[]{infoText, gameStatusButton});
-                chatScrollView.post(() -> chatScrollView.fullScroll(View.FOCUS_DOWN));
-            });
-        } else {
-            Log.e(TAG, "Invalid START_TICTACTOE message format: " + message);
-        }
+        timelineAdapter.putGameStatus(message.getGame(), gameId, player1, player2);
     }
 
     public void initiateFourInARowGame() {
         String gameId = generateGameId();
         String inviteMessage = "NEW_FOURINAROW:" + gameId + ":" + username;
-        connectionManager.sendMessage(inviteMessage);
+        chatService.sendMessage(inviteMessage);
     }
 
-    private void showFourInARowInvite(String message) {
-        String[] parts = message.split(":");
-        if (parts.length != 3) return;
-
-        final String gameId = parts[1];
-        final String initiatorUsername = parts[2];
-
-        handler.post(() -> {
-            removeExistingInvite(gameId);
-
-            TextView inviteText = new TextView(this);
-            inviteText.setText(initiatorUsername + " wants to play Four in a Row!");
-            inviteText.setTextSize(16);
-            inviteText.setPadding(0, 16, 0, 8);
-
-            Button joinButton = new Button(this);
-            joinButton.setText("Join Game");
-            joinButton.setAllCaps(false);
-
-            if (initiatorUsername.equals(username)) {
-                joinButton.setText("Your Game - Waiting...");
-                joinButton.setEnabled(false);
-            } else {
-                joinButton.setOnClickListener(v -> {
-                    connectionManager.sendMessage("JOIN_REQUEST4:" + gameId + ":" + initiatorUsername + ":" + username);
-                    removeExistingInvite(gameId);
-                });
-            }
-
-            chatLinearLayout.addView(inviteText);
-            chatLinearLayout.addView(joinButton);
-            activeGameInvites.put(gameId, new View[]{inviteText, joinButton});
-            chatScrollView.post(() -> chatScrollView.fullScroll(View.FOCUS_DOWN));
-        });
+    public void startFourInARowVsComputer(ConnectFourAI.Level level) {
+        Intent intent = new Intent(ChatActivity.this, FourInARowActivity.class);
+        intent.putExtra("USERNAME", username);
+        intent.putExtra("VS_COMPUTER", true);
+        intent.putExtra("AI_LEVEL", level.name());
+        startActivity(intent);
     }
 
-    private void handleJoinFourInARow(String message) {
-        String[] parts = message.split(":");
-        if (parts.length == 4) {
-            handler.post(() ->
-                    Toast.makeText(ChatActivity.this, "You have joined the Four in a Row game!", Toast.LENGTH_SHORT).show()
-            );
-        }
+    private void handleJoinFourInARow(ChatMessage message) {
+        Toast.makeText(ChatActivity.this, "You have joined the Four in a Row game!", Toast.LENGTH_SHORT).show();
     }
 
-    private void handleStartFourInARow(String message) {
-        String[] parts = message.split(":");
-        if (parts.length == 4) {
-            String gameId = parts[1];
-            String player1 = parts[2];
-            String player2 = parts[3];
-
-            Intent intent = new Intent(ChatActivity.this, FourInARowActivity.class);
-            intent.putExtra("PLAYER1", player1);
-            intent.putExtra("PLAYER2", player2);
-            intent.putExtra("GAME_ID", gameId);
-            intent.putExtra("USERNAME", username);
-            startActivity(intent);
-
-            removeExistingInvite(gameId);
+    private void handleStartFourInARow(ChatMessage message) {
+        String gameId = message.getGameId();
+        String player1 = message.getFirstPlayer();
+        String player2 = message.getSecondPlayer();
 
-            handler.post(() -> {
-                TextView infoText = new TextView(this);
-                infoText.setText("Four in a Row: " + player1 + " vs " + player2);
-                infoText.setTextSize(16);
-                infoText.setPadding(0, 16, 0, 8);
+        Intent intent = new Intent(ChatActivity.this, FourInARowActivity.class);
+        intent.putExtra("PLAYER1", player1);
+        intent.putExtra("PLAYER2", player2);
+        intent.putExtra("GAME_ID", gameId);
+        intent.putExtra("USERNAME", username);
+        startActivity(intent);
 
-                Button gameStatusButton = new Button(this);
-                gameStatusButton.setText("Game in Progress / Has already ended");
-                gameStatusButton.setAllCaps(false);
-                gameStatusButton.setEnabled(false);
-
-                chatLinearLayout.addView(infoText);
-                chatLinearLayout.addView(gameStatusButton);
-
-                activeGameInvites.put(gameId, new View[]{infoText, gameStatusButton});
-                chatScrollView.post(() -> chatScrollView.fullScroll(View.FOCUS_DOWN));
-            });
-        } else {
-            Log.e(TAG, "Invalid START_FOURINAROW message format: " + message);
-        }
+        timelineAdapter.putGameStatus(message.getGame(), gameId, player1, player2);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        LocalBroadcastManager.getInstance(this).registerReceiver(messageReceiver, new IntentFilter("chat_message"));
-        Log.d(TAG, "ChatActivity - BroadcastReceiver registered in onResume()");
+        resumed = true;
+        chatService.whenConnected(service -> {
+            if (!resumed || !subscriptions.isEmpty()) {
+                return;
+            }
+            for (ChatMessage.Type type : CHAT_TOPICS) {
+                subscriptions.add(service.subscribe(type, MessageBus.ThreadMode.POSTING, messageSubscriber));
+            }
+            Log.d(TAG, "ChatActivity - subscribed to chat service");
+        });
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(messageReceiver);
-        Log.d(TAG, "ChatActivity - BroadcastReceiver unregistered in onPause()");
+        resumed = false;
+        for (MessageBus.Subscription subscription : subscriptions) {
+            subscription.cancel();
+        }
+        subscriptions.clear();
+        // Deliver what already arrived: the batch may hold a START or INVITE, not just chat lines.
+        incomingMessages.flush();
+        Log.d(TAG, "ChatActivity - unsubscribed from chat service in onPause()");
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        Log.d(TAG, "ChatActivity onDestroy() - Disconnecting.");
-        if (requestQueue != null) {
-            requestQueue.cancelAll(TAG);
-        }
+        Log.d(TAG, "ChatActivity onDestroy() - Unbinding from chat service.");
+        closeLeaderboard();
+        chatService.unbind();
+        ApiClient.getInstance().cancelAll(TAG);
     }
 }
\ No newline at end of file
@@ -0,0 +1,371 @@
+package com.example.chatroom;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only chat history for one room. Lines live in {@code <room>.log} as
+ * {@code [int length][UTF-8 bytes]} records and {@code <room>.idx} holds one 8-byte log offset per
+ * record, so record {@code i} is found at index position {@code i * 8}. The index is memory-mapped
+ * for reads and pages are a single positional read of the log.
+ *
+ * <p>All disk work runs on one background thread. {@link #append} only queues the line; queued
+ * lines are written and synced together, one group commit per drain, and then added to the
+ * room's {@link ChatSearchIndex}. Reads and searches go through the same thread.
+ */
+public class ChatHistoryStore {
+
+    private static final String TAG = "ChatHistoryStore";
+    private static final int INDEX_ENTRY_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private static final Map<String, ChatHistoryStore> STORES = new HashMap<>();
+
+    public interface PageCallback {
+        void onPage(Page page);
+    }
+
+    public interface SearchCallback {
+        void onResults(List<SearchHit> hits);
+    }
+
+    public static final class SearchHit {
+        public final long index;
+        public final String line;
+
+        SearchHit(long index, String line) {
+            this.index = index;
+            this.line = line;
+        }
+    }
+
+    public static final class Page {
+        /** History index of the first line, so the next older page ends just before it. */
+        public final long firstIndex;
+        public final List<String> lines;
+
+        Page(long firstIndex, List<String> lines) {
+            this.firstIndex = firstIndex;
+            this.lines = lines;
+        }
+
+        public boolean isOldest() {
+            return firstIndex == 0;
+        }
+    }
+
+    private final File logFile;
+    private final File indexFile;
+    private final Executor callbackExecutor;
+    private final ExecutorService io = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, TAG);
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicLong appended = new AtomicLong();
+    private final ChatSearchIndex searchIndex;
+
+    // Only touched on the io thread.
+    private FileChannel log;
+    private FileChannel index;
+    private long count;
+    private long logLength;
+    private MappedByteBuffer indexMap;
+    private long mappedCount;
+    private long sessionStart;
+    private boolean failed;
+
+    public static synchronized ChatHistoryStore getInstance(Context context, String room) {
+        ChatHistoryStore store = STORES.get(room);
+        if (store == null) {
+            File dir = new File(context.getApplicationContext().getFilesDir(), "history");
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            store = new ChatHistoryStore(dir, room, mainHandler::post);
+            STORES.put(room, store);
+        }
+        return store;
+    }
+
+    ChatHistoryStore(File dir, String room, Executor callbackExecutor) {
+        String name = room.replaceAll("[^A-Za-z0-9_-]", "_");
+        this.logFile = new File(dir, name + ".log");
+        this.indexFile = new File(dir, name + ".idx");
+        this.searchIndex = new ChatSearchIndex(new File(dir, name + ".sidx"));
+        this.callbackExecutor = callbackExecutor;
+        io.execute(this::open);
+    }
+
+    /** Queues a line for the next group commit; never blocks on disk. */
+    public void append(String line) {
+        appended.incrementAndGet();
+        pending.add(line);
+        if (flushScheduled.compareAndSet(false, true)) {
+            io.execute(this::flush);
+        }
+    }
+
+    /**
+     * Loads up to {@code limit} lines ending just before history index {@code before} (pass
+     * {@link Long#MAX_VALUE} for the newest page) and delivers them oldest first on the callback
+     * executor. The newest page stops at the last line appended before this call, so lines that
+     * arrive while it loads are not returned twice. A failed read delivers an empty page at 0.
+     */
+    public void loadPage(long before, int limit, PageCallback callback) {
+        long appendedSoFar = appended.get();
+        io.execute(() -> {
+            Page page;
+            try {
+                page = readPage(Math.min(before, sessionStart + appendedSoFar), limit);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read history page", e);
+                page = new Page(0, Collections.emptyList());
+            }
+            Page result = page;
+            callbackExecutor.execute(() -> callback.onPage(result));
+        });
+    }
+
+    private void open() {
+        try {
+            File dir = logFile.getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            log = new RandomAccessFile(logFile, "rw").getChannel();
+            index = new RandomAccessFile(indexFile, "rw").getChannel();
+            recover();
+            sessionStart = count;
+            Log.d(TAG, "Opened " + logFile.getName() + " with " + count + " lines");
+            catchUpSearchIndex();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open chat history; history is disabled", e);
+            failed = true;
+        }
+    }
+
+    /**
+     * Drops whatever a crash left half-written: a partial index entry, index entries whose
+     * record is not fully in the log, and log bytes that no index entry points to.
+     */
+    private void recover() throws IOException {
+        count = index.size() / INDEX_ENTRY_BYTES;
+        long logSize = log.size();
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        long end = 0;
+        while (count > 0) {
+            buffer.clear();
+            readFully(index, buffer, (count - 1) * INDEX_ENTRY_BYTES);
+            long offset = buffer.getLong(0);
+            if (offset >= 0 && offset + 4 <= logSize) {
+                buffer.clear().limit(4);
+                readFully(log, buffer, offset);
+                int length = buffer.getInt(0);
+                if (length >= 0 && offset + 4 + length <= logSize) {
+                    end = offset + 4 + length;
+                    break;
+                }
+            }
+            count--;
+        }
+        index.truncate(count * INDEX_ENTRY_BYTES);
+        log.truncate(end);
+        logLength = end;
+        indexMap = null;
+        mappedCount = 0;
+    }
+
+    public void search(String query, int limit, SearchCallback callback) {
+        io.execute(() -> {
+            List<SearchHit> hits = new ArrayList<>();
+            if (!failed) {
+                try {
+                    for (int id : searchIndex.query(query, limit)) {
+                        if (id < count) {
+                            hits.add(new SearchHit(id, readLine(id)));
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to read search results", e);
+                }
+            }
+            callbackExecutor.execute(() -> callback.onResults(hits));
+        });
+    }
+
+    /** Indexes whatever the last saved snapshot is missing, straight from the log. */
+    private void catchUpSearchIndex() throws IOException {
+        searchIndex.load();
+        if (searchIndex.getIndexedUpTo() > count) {
+            // The log lost lines the snapshot had seen; start over rather than return ghosts.
+            searchIndex.clear();
+        }
+        long next = searchIndex.getIndexedUpTo();
+        while (next < count) {
+            Page page = readPage(Math.min(count, next + 1024), 1024);
+            for (int i = 0; i < page.lines.size(); i++) {
+                searchIndex.add(page.firstIndex + i, searchableText(page.lines.get(i)));
+            }
+            next = page.firstIndex + page.lines.size();
+        }
+        searchIndex.saveIfDirty();
+    }
+
+    /** What a search should match in a stored line: the message text, not the command or sender. */
+    static String searchableText(String line) {
+        if (line.startsWith("CHAT:")) {
+            int textStart = line.indexOf(':', "CHAT:".length());
+            return textStart < 0 ? "" : line.substring(textStart + 1);
+        }
+        if (line.startsWith("JOINED:")) {
+            return "";
+        }
+        return line;
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        List<String> lines = new ArrayList<>();
+        List<byte[]> batch = new ArrayList<>();
+        int logBytes = 0;
+        for (String line; (line = pending.poll()) != null; ) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_RECORD_BYTES) {
+                // Truncated rather than dropped so history indices keep matching append order.
+                Log.w(TAG, "Truncating oversized history line of " + bytes.length + " bytes");
+                int end = MAX_RECORD_BYTES / 3;
+                if (Character.isHighSurrogate(line.charAt(end - 1))) {
+                    end--;
+                }
+                line = line.substring(0, end);
+                bytes = line.getBytes(StandardCharsets.UTF_8);
+            }
+            lines.add(line);
+            batch.add(bytes);
+            logBytes += 4 + bytes.length;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (failed) {
+            // loadPage caps pages at sessionStart + appended; lines that never land must not count.
+            appended.addAndGet(-batch.size());
+            return;
+        }
+
+        ByteBuffer records = ByteBuffer.allocate(logBytes);
+        ByteBuffer offsets = ByteBuffer.allocate(batch.size() * INDEX_ENTRY_BYTES);
+        long offset = logLength;
+        for (byte[] bytes : batch) {
+            offsets.putLong(offset);
+            records.putInt(bytes.length).put(bytes);
+            offset += 4 + bytes.length;
+        }
+        records.flip();
+        offsets.flip();
+        long expected = count + batch.size();
+        try {
+            // The log goes first; recover() discards records the index does not reach yet.
+            writeFully(log, records, logLength);
+            writeFully(index, offsets, count * INDEX_ENTRY_BYTES);
+            log.force(false);
+            index.force(false);
+            logLength = offset;
+            for (int i = 0; i < lines.size(); i++) {
+                searchIndex.add(count + i, searchableText(lines.get(i)));
+            }
+            count += batch.size();
+            searchIndex.saveIfDirty();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to append " + batch.size() + " history lines", e);
+            try {
+                recover();
+                appended.addAndGet(count - expected);
+            } catch (IOException recoverError) {
+                Log.e(TAG, "Failed to recover chat history; history is disabled", recoverError);
+                failed = true;
+                appended.addAndGet(-batch.size());
+            }
+        }
+    }
+
+    private Page readPage(long before, int limit) throws IOException {
+        if (failed || count == 0) {
+            return new Page(0, Collections.emptyList());
+        }
+        long to = Math.min(before, count);
+        long from = Math.max(0, to - limit);
+        if (from >= to) {
+            return new Page(from, Collections.emptyList());
+        }
+
+        long start = offsetOf(from);
+        long end = to < count ? offsetOf(to) : logLength;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        readFully(log, buffer, start);
+        buffer.flip();
+
+        List<String> lines = new ArrayList<>((int) (to - from));
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            lines.add(new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8));
+            buffer.position(buffer.position() + length);
+        }
+        return new Page(from, lines);
+    }
+
+    private String readLine(long line) throws IOException {
+        long start = offsetOf(line);
+        long end = line + 1 < count ? offsetOf(line + 1) : logLength;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        readFully(log, buffer, start);
+        return new String(buffer.array(), 4, buffer.capacity() - 4, StandardCharsets.UTF_8);
+    }
+
+    private long offsetOf(long line) throws IOException {
+        if (line >= mappedCount) {
+            // The index only grows, so the map is refreshed only when a read reaches past it.
+            indexMap = index.map(FileChannel.MapMode.READ_ONLY, 0, count * INDEX_ENTRY_BYTES);
+            mappedCount = count;
+        }
+        return indexMap.getLong((int) (line * INDEX_ENTRY_BYTES));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + channel);
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.chatroom;
+
+public final class ChatMessage {
+
+    public enum Type {
+        CHAT,
+        JOINED,
+        INVITE,
+        JOIN,
+        START,
+        MOVE,
+        MOVE_ACK,
+        GAME_OVER,
+        RESET,
+        EXIT,
+        PROTOCOL,
+        PING,
+        PONG,
+        TEXT,
+        LEADERBOARD_RESET,
+        LEADERBOARD_DELTA,
+        LEADERBOARD_REMOVE,
+        MALFORMED
+    }
+
+    public enum Game {
+        NONE,
+        TIC_TAC_TOE,
+        FOUR_IN_A_ROW
+    }
+
+    public enum ResetPhase {
+        NONE,
+        REQUEST,
+        PENDING,
+        CONFIRMED
+    }
+
+    final Type type;
+    final Game game;
+    final ResetPhase resetPhase;
+    final String gameId;
+    final String firstUser;
+    final String secondUser;
+    final int row;
+    final int col;
+    final int player;
+    final long sequence;
+    private String raw;
+
+    ChatMessage(String raw, Type type, Game game, ResetPhase resetPhase, String gameId,
+                String firstUser, String secondUser, int row, int col, int player) {
+        this(raw, type, game, resetPhase, gameId, firstUser, secondUser, row, col, player, -1);
+    }
+
+    ChatMessage(String raw, Type type, Game game, ResetPhase resetPhase, String gameId,
+                String firstUser, String secondUser, int row, int col, int player, long sequence) {
+        this.raw = raw;
+        this.type = type;
+        this.game = game;
+        this.resetPhase = resetPhase;
+        this.gameId = gameId;
+        this.firstUser = firstUser;
+        this.secondUser = secondUser;
+        this.row = row;
+        this.col = col;
+        this.player = player;
+        this.sequence = sequence;
+    }
+
+    static ChatMessage move(Game game, String gameId, int row, int col, int player, long sequence) {
+        return new ChatMessage(null, Type.MOVE, game, ResetPhase.NONE, gameId, null, null, row, col, player, sequence);
+    }
+
+    static ChatMessage gameOver(Game game, String gameId, int winner) {
+        return new ChatMessage(null, Type.GAME_OVER, game, ResetPhase.NONE, gameId, null, null, -1, -1, winner);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    public ResetPhase getResetPhase() {
+        return resetPhase;
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public boolean isForGame(String id) {
+        return gameId != null && gameId.equals(id);
+    }
+
+    public String getUsername() {
+        return firstUser;
+    }
+
+    public String getFirstPlayer() {
+        return firstUser;
+    }
+
+    public String getSecondPlayer() {
+        return secondUser;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public int getPlayer() {
+        return player;
+    }
+
+    public int getWinner() {
+        return player;
+    }
+
+    /** Total wins carried by a leaderboard delta. */
+    public int getScore() {
+        return player;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getRaw() {
+        if (raw == null) {
+            // Messages decoded from binary frames only render their text form on demand.
+            if (type == Type.MOVE) {
+                raw = (game == Game.FOUR_IN_A_ROW ? "MOVE4:" : "MOVE:") + gameId + ":" + row + ":" + col + ":" + player
+                        + (sequence >= 0 ? ":" + sequence : "");
+            } else if (type == Type.GAME_OVER) {
+                raw = (game == Game.FOUR_IN_A_ROW ? "GAME_OVER4:" : "GAME_OVER:") + gameId + ":" + player;
+            }
+        }
+        return raw;
+    }
+
+    @Override
+    public String toString() {
+        return getRaw();
+    }
+}
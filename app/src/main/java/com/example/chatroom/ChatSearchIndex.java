@@ -0,0 +1,453 @@
+package com.example.chatroom;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over one room's chat history. Every lower-cased term maps to the ascending
+ * history indices of the lines that contain it. On disk each posting list is stored as varint
+ * deltas, so dense terms cost about a byte per occurrence.
+ *
+ * <p>A save appends only the postings added since the previous one to a segment file next to the
+ * snapshot, so it costs the size of the new lines rather than of the whole index. Once the
+ * segments outgrow the snapshot they are merged into a new snapshot. A segment torn by a crash is
+ * cut off on load and its lines are indexed again from the log.
+ *
+ * <p>Not thread-safe: {@link ChatHistoryStore} owns it and only calls it from its io thread. The
+ * snapshot may trail the log; the store re-indexes the missing tail on open.
+ */
+class ChatSearchIndex {
+
+    private static final String TAG = "ChatSearchIndex";
+    private static final int MAGIC = 0x43534932;
+    private static final int SEGMENT_MAGIC = 0x43535347;
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 32;
+    private static final int SAVE_EVERY_LINES = 256;
+    private static final long MIN_MERGE_BYTES = 64 * 1024;
+
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+        // Ids before this position are already on disk.
+        int savedSize;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private final File file;
+    private final File segmentFile;
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Postings> unsaved = new HashMap<>();
+    private long indexedUpTo;
+    private long savedUpTo;
+    private int unsavedLines;
+    private long snapshotBytes;
+    private long segmentBytes;
+    // Set when the files no longer describe a prefix of the index; the next save writes a snapshot.
+    private boolean rewriteSnapshot = true;
+
+    ChatSearchIndex(File file) {
+        this.file = file;
+        this.segmentFile = new File(file.getPath() + ".seg");
+    }
+
+    /** History index of the next line to index. */
+    long getIndexedUpTo() {
+        return indexedUpTo;
+    }
+
+    void add(long historyIndex, String line) {
+        if (historyIndex < indexedUpTo) {
+            return;
+        }
+        int id = (int) historyIndex;
+        for (String term : tokenize(line)) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(term, postings);
+            }
+            postings.add(id);
+            if (postings.size > postings.savedSize) {
+                unsaved.put(term, postings);
+            }
+        }
+        indexedUpTo = historyIndex + 1;
+        unsavedLines++;
+    }
+
+    void clear() {
+        terms.clear();
+        unsaved.clear();
+        indexedUpTo = 0;
+        savedUpTo = 0;
+        unsavedLines = 0;
+        rewriteSnapshot = true;
+    }
+
+    /**
+     * Returns the history indices of up to {@code limit} lines containing every term of the query,
+     * newest first. The last term also matches as a prefix so results follow the user's typing.
+     */
+    int[] query(String query, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return new int[0];
+        }
+        boolean lastIsPrefix = Character.isLetterOrDigit(query.charAt(query.length() - 1));
+
+        int[] result = null;
+        int resultSize = 0;
+        for (int i = 0; i < queryTerms.size(); i++) {
+            String term = queryTerms.get(i);
+            int[] ids;
+            int size;
+            if (i == queryTerms.size() - 1 && lastIsPrefix) {
+                ids = prefixPostings(term);
+                size = ids.length;
+            } else {
+                Postings postings = terms.get(term);
+                if (postings == null) {
+                    return new int[0];
+                }
+                ids = postings.ids;
+                size = postings.size;
+            }
+            if (result == null) {
+                result = ids;
+                resultSize = size;
+            } else {
+                int[] merged = new int[Math.min(resultSize, size)];
+                resultSize = intersect(result, resultSize, ids, size, merged);
+                result = merged;
+            }
+            if (resultSize == 0) {
+                return new int[0];
+            }
+        }
+
+        int count = Math.min(limit, resultSize);
+        int[] newest = new int[count];
+        for (int i = 0; i < count; i++) {
+            newest[i] = result[resultSize - 1 - i];
+        }
+        return newest;
+    }
+
+    private int[] prefixPostings(String prefix) {
+        SortedMap<String, Postings> matches = terms.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (matches.size() == 1) {
+            Postings only = matches.values().iterator().next();
+            return Arrays.copyOf(only.ids, only.size);
+        }
+        int total = 0;
+        for (Postings postings : matches.values()) {
+            total += postings.size;
+        }
+        int[] all = new int[total];
+        int size = 0;
+        for (Postings postings : matches.values()) {
+            System.arraycopy(postings.ids, 0, all, size, postings.size);
+            size += postings.size;
+        }
+        Arrays.sort(all);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || all[unique - 1] != all[i]) {
+                all[unique++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, unique);
+    }
+
+    private static int intersect(int[] a, int aSize, int[] b, int bSize, int[] out) {
+        int i = 0, j = 0, size = 0;
+        while (i < aSize && j < bSize) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return size;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.append(Character.toLowerCase(c));
+                }
+            } else if (term.length() > 0) {
+                if (term.length() >= MIN_TERM_LENGTH) {
+                    tokens.add(term.toString());
+                }
+                term.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    void saveIfDirty() {
+        if (unsavedLines >= SAVE_EVERY_LINES) {
+            save();
+        }
+    }
+
+    void save() {
+        if (rewriteSnapshot || segmentBytes > Math.max(snapshotBytes, MIN_MERGE_BYTES)) {
+            writeSnapshot();
+        } else if (!unsaved.isEmpty() || savedUpTo < indexedUpTo) {
+            appendSegment();
+        }
+    }
+
+    /** Writes every posting to a fresh snapshot, which replaces the old one and its segments. */
+    private void writeSnapshot() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            writeVarLong(out, indexedUpTo);
+            writeVarLong(out, terms.size());
+            for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+                writePostings(out, entry.getKey(), entry.getValue(), 0);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save search index", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Failed to replace " + file);
+            return;
+        }
+        // Segments left behind by a failed delete only cover lines the snapshot has; load skips them.
+        if (segmentFile.exists() && !segmentFile.delete()) {
+            Log.w(TAG, "Failed to delete " + segmentFile);
+        }
+        snapshotBytes = file.length();
+        segmentBytes = segmentFile.length();
+        rewriteSnapshot = false;
+        markSaved();
+    }
+
+    /** Appends the postings added since the last save as one length-prefixed segment. */
+    private void appendSegment() {
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        try (FileOutputStream fileOut = new FileOutputStream(segmentFile, true)) {
+            DataOutputStream payload = new DataOutputStream(segment);
+            payload.writeInt(SEGMENT_MAGIC);
+            writeVarLong(payload, indexedUpTo);
+            writeVarLong(payload, unsaved.size());
+            for (Map.Entry<String, Postings> entry : unsaved.entrySet()) {
+                Postings postings = entry.getValue();
+                writePostings(payload, entry.getKey(), postings, postings.savedSize);
+            }
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(segment.size());
+            segment.writeTo(out);
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            // Part of the segment may have reached the file; start over from a snapshot next time.
+            Log.e(TAG, "Failed to append search index segment", e);
+            rewriteSnapshot = true;
+            return;
+        }
+        segmentBytes += 4 + segment.size();
+        markSaved();
+    }
+
+    private void markSaved() {
+        for (Postings postings : unsaved.values()) {
+            postings.savedSize = postings.size;
+        }
+        unsaved.clear();
+        savedUpTo = indexedUpTo;
+        unsavedLines = 0;
+    }
+
+    /** Loads the last snapshot and its segments; a missing or unreadable snapshot leaves the index empty. */
+    void load() {
+        clear();
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Bad magic");
+            }
+            long upTo = readVarLong(in);
+            long termCount = readVarLong(in);
+            for (long t = 0; t < termCount; t++) {
+                String term = readTerm(in);
+                Postings postings = new Postings();
+                postings.ids = readIds(in);
+                postings.size = postings.ids.length;
+                terms.put(term, postings);
+            }
+            indexedUpTo = upTo;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable search index", e);
+            clear();
+            return;
+        }
+        snapshotBytes = file.length();
+        replaySegments();
+        for (Postings postings : terms.values()) {
+            postings.savedSize = postings.size;
+        }
+        unsaved.clear();
+        savedUpTo = indexedUpTo;
+        unsavedLines = 0;
+    }
+
+    /** Applies every complete segment in order and cuts off a torn one left by a crash. */
+    private void replaySegments() {
+        long fileLength = segmentFile.length();
+        long valid = 0;
+        if (fileLength > 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile)))) {
+                while (fileLength - valid >= 4) {
+                    int length = in.readInt();
+                    if (length < 0 || length > fileLength - valid - 4) {
+                        break;
+                    }
+                    byte[] segment = new byte[length];
+                    in.readFully(segment);
+                    applySegment(segment);
+                    valid += 4 + length;
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Dropping unreadable search index segment", e);
+            }
+        }
+        if (valid < fileLength) {
+            Log.w(TAG, "Truncating " + segmentFile.getName() + " from " + fileLength + " to " + valid + " bytes");
+            try (RandomAccessFile segments = new RandomAccessFile(segmentFile, "rw")) {
+                segments.setLength(valid);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to truncate " + segmentFile, e);
+                rewriteSnapshot = true;
+            }
+        }
+        segmentBytes = valid;
+    }
+
+    private void applySegment(byte[] segment) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(segment));
+        if (in.readInt() != SEGMENT_MAGIC) {
+            throw new IOException("Bad segment magic");
+        }
+        long upTo = readVarLong(in);
+        if (upTo <= indexedUpTo) {
+            return;
+        }
+        // Parsed in full before anything is applied, so a bad segment leaves the index untouched.
+        int termCount = (int) readVarLong(in);
+        String[] segmentTerms = new String[termCount];
+        int[][] segmentIds = new int[termCount][];
+        for (int t = 0; t < termCount; t++) {
+            segmentTerms[t] = readTerm(in);
+            segmentIds[t] = readIds(in);
+        }
+        for (int t = 0; t < termCount; t++) {
+            Postings postings = terms.get(segmentTerms[t]);
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(segmentTerms[t], postings);
+            }
+            for (int id : segmentIds[t]) {
+                postings.add(id);
+            }
+        }
+        indexedUpTo = upTo;
+    }
+
+    private static void writePostings(DataOutputStream out, String term, Postings postings, int from)
+            throws IOException {
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+        writeVarLong(out, postings.size - from);
+        int previous = 0;
+        for (int i = from; i < postings.size; i++) {
+            writeVarLong(out, postings.ids[i] - previous);
+            previous = postings.ids[i];
+        }
+    }
+
+    private static String readTerm(DataInputStream in) throws IOException {
+        byte[] term = new byte[(int) readVarLong(in)];
+        in.readFully(term);
+        return new String(term, StandardCharsets.UTF_8);
+    }
+
+    private static int[] readIds(DataInputStream in) throws IOException {
+        int size = (int) readVarLong(in);
+        int[] ids = new int[size];
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += (int) readVarLong(in);
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
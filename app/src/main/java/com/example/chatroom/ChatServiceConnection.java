@@ -0,0 +1,84 @@
+package com.example.chatroom;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An activity's binding to {@link MyChatService}. Work that needs the service is queued with
+ * {@link #whenConnected} until the binder arrives and runs immediately afterwards. Used only
+ * from the main thread.
+ */
+public class ChatServiceConnection implements ServiceConnection {
+
+    private static final String TAG = "ChatServiceConnection";
+
+    public interface ServiceAction {
+        void run(MyChatService service);
+    }
+
+    private final Context context;
+    private final String username;
+    private final List<ServiceAction> pending = new ArrayList<>();
+    private MyChatService service;
+    private boolean bound = false;
+
+    public ChatServiceConnection(Context context, String username) {
+        this.context = context;
+        this.username = username;
+    }
+
+    public void bind() {
+        if (bound) {
+            return;
+        }
+        Intent intent = new Intent(context, MyChatService.class);
+        intent.putExtra(MyChatService.EXTRA_USERNAME, username);
+        bound = context.bindService(intent, this, Context.BIND_AUTO_CREATE);
+        if (!bound) {
+            Log.e(TAG, "Could not bind to MyChatService");
+        }
+    }
+
+    public void unbind() {
+        pending.clear();
+        service = null;
+        if (bound) {
+            context.unbindService(this);
+            bound = false;
+        }
+    }
+
+    public void whenConnected(ServiceAction action) {
+        if (service != null) {
+            action.run(service);
+        } else if (bound) {
+            pending.add(action);
+        }
+    }
+
+    public void sendMessage(String message) {
+        whenConnected(service -> service.sendMessage(message));
+    }
+
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder binder) {
+        service = ((MyChatService.LocalBinder) binder).getService();
+        List<ServiceAction> actions = new ArrayList<>(pending);
+        pending.clear();
+        for (ServiceAction action : actions) {
+            action.run(service);
+        }
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        service = null;
+    }
+}
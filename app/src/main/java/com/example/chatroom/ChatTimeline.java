@@ -0,0 +1,216 @@
+package com.example.chatroom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rows of the chat timeline, kept apart from {@link ChatTimelineAdapter} so the windowing can
+ * be tested without a RecyclerView. It never holds more than {@link #MAX_ITEMS} rows and trims
+ * the end away from what the user reads: appending drops the oldest rows, and prepending a
+ * history page drops the newest chat rows. Once newest rows are dropped the timeline no longer
+ * follows the live tail; live chat lines are skipped (history keeps them) until
+ * {@link #appendNewerChats} catches up again.
+ */
+public class ChatTimeline {
+
+    static final int MAX_ITEMS = 500;
+
+    /** Told about every change, in the terms of RecyclerView's notify calls. */
+    public interface Listener {
+        void onInserted(int start, int count);
+
+        void onRemoved(int start, int count);
+
+        void onChanged(int position);
+    }
+
+    private final List<ChatTimelineItem> items = new ArrayList<>();
+    private final Map<String, ChatTimelineItem> games = new HashMap<>();
+    private final Listener listener;
+    private long nextId = 0;
+    private int trimmedChatLines = 0;
+    private boolean followingTail = true;
+    private long skippedLiveChats = 0;
+
+    public ChatTimeline(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Appends a run of live chat lines with a single range insertion. */
+    public void addChats(List<String> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        if (!followingTail) {
+            skippedLiveChats += lines.size();
+            return;
+        }
+        insertAtEnd(lines);
+    }
+
+    /**
+     * Appends chat lines loaded from history below everything else, while paging back towards the
+     * live tail. {@code reachedTail} says the page ends at the newest line, so live lines are shown
+     * again from now on.
+     */
+    public void appendNewerChats(List<String> lines, boolean reachedTail) {
+        if (reachedTail) {
+            followingTail = true;
+        }
+        if (!lines.isEmpty()) {
+            insertAtEnd(lines);
+        }
+    }
+
+    private void insertAtEnd(List<String> lines) {
+        int start = items.size();
+        for (String line : lines) {
+            items.add(ChatTimelineItem.chat(nextId++, line));
+        }
+        listener.onInserted(start, lines.size());
+        trim();
+    }
+
+    /** Inserts older chat lines above everything else, e.g. a page loaded from history. */
+    public void prependChats(List<String> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        List<ChatTimelineItem> older = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            older.add(ChatTimelineItem.chat(nextId++, line));
+        }
+        items.addAll(0, older);
+        listener.onInserted(0, older.size());
+        trimNewest();
+    }
+
+    /** False while the newest rows are trimmed off, i.e. the user is paging back through history. */
+    public boolean isFollowingTail() {
+        return followingTail;
+    }
+
+    /** Live chat lines left out since the timeline stopped following the tail; only ever grows. */
+    public long getSkippedLiveChats() {
+        return skippedLiveChats;
+    }
+
+    /** Number of chat rows, which are consecutive history lines while paging back. */
+    public int getChatCount() {
+        int chats = 0;
+        for (ChatTimelineItem item : items) {
+            if (item.getKind() == ChatTimelineItem.Kind.CHAT) {
+                chats++;
+            }
+        }
+        return chats;
+    }
+
+    /** Returns how many chat lines were dropped off the top since the last call. */
+    public int takeTrimmedChatLines() {
+        int trimmed = trimmedChatLines;
+        trimmedChatLines = 0;
+        return trimmed;
+    }
+
+    /** Adds an invite row, replacing any row already shown for the same game. */
+    public void putInvite(ChatMessage.Game game, String gameId, String initiator) {
+        removeGame(gameId);
+        ChatTimelineItem item = ChatTimelineItem.invite(nextId++, game, gameId, initiator);
+        games.put(gameId, item);
+        append(item);
+    }
+
+    /** Adds a game-in-progress row, replacing the invite for the same game if it is still shown. */
+    public void putGameStatus(ChatMessage.Game game, String gameId, String player1, String player2) {
+        removeGame(gameId);
+        ChatTimelineItem item = ChatTimelineItem.gameStatus(nextId++, game, gameId, player1, player2);
+        games.put(gameId, item);
+        append(item);
+    }
+
+    public void removeGame(String gameId) {
+        ChatTimelineItem item = games.remove(gameId);
+        if (item == null) {
+            return;
+        }
+        int position = positionOf(item);
+        if (position >= 0) {
+            items.remove(position);
+            listener.onRemoved(position, 1);
+        }
+    }
+
+    public void closeGame(String gameId) {
+        ChatTimelineItem item = games.get(gameId);
+        if (item == null || item.isClosed()) {
+            return;
+        }
+        item.close();
+        int position = positionOf(item);
+        if (position >= 0) {
+            listener.onChanged(position);
+        }
+    }
+
+    private void append(ChatTimelineItem item) {
+        items.add(item);
+        listener.onInserted(items.size() - 1, 1);
+        if (followingTail) {
+            trim();
+        } else {
+            trimNewest();
+        }
+    }
+
+    /**
+     * Drops the newest chat rows past {@link #MAX_ITEMS}. Game rows are live state that history
+     * cannot bring back, so they stay.
+     */
+    private void trimNewest() {
+        for (int i = items.size() - 1; i >= 0 && items.size() > MAX_ITEMS; i--) {
+            if (items.get(i).getKind() == ChatTimelineItem.Kind.CHAT) {
+                items.remove(i);
+                listener.onRemoved(i, 1);
+                followingTail = false;
+            }
+        }
+    }
+
+    private void trim() {
+        int overflow = items.size() - MAX_ITEMS;
+        if (overflow > 0) {
+            for (int i = 0; i < overflow; i++) {
+                ChatTimelineItem dropped = items.get(i);
+                if (dropped.getKind() == ChatTimelineItem.Kind.CHAT) {
+                    trimmedChatLines++;
+                }
+                if (dropped.getGameId() != null && games.get(dropped.getGameId()) == dropped) {
+                    games.remove(dropped.getGameId());
+                }
+            }
+            items.subList(0, overflow).clear();
+            listener.onRemoved(0, overflow);
+        }
+    }
+
+    // Game rows are almost always near the bottom, so search from the end.
+    private int positionOf(ChatTimelineItem item) {
+        for (int i = items.size() - 1; i >= 0; i--) {
+            if (items.get(i) == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public ChatTimelineItem get(int position) {
+        return items.get(position);
+    }
+
+    public int size() {
+        return items.size();
+    }
+}
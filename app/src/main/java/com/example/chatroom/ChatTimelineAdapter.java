@@ -0,0 +1,173 @@
+package com.example.chatroom;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * Backs the chat RecyclerView with a {@link ChatTimeline}, which keeps the rows bounded. Rows have
+ * stable ids and one view type per {@link ChatTimelineItem.Kind}.
+ */
+public class ChatTimelineAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    public interface OnJoinListener {
+        void onJoin(ChatTimelineItem invite);
+    }
+
+    private final ChatTimeline timeline = new ChatTimeline(new ChatTimeline.Listener() {
+        @Override
+        public void onInserted(int start, int count) {
+            notifyItemRangeInserted(start, count);
+        }
+
+        @Override
+        public void onRemoved(int start, int count) {
+            notifyItemRangeRemoved(start, count);
+        }
+
+        @Override
+        public void onChanged(int position) {
+            notifyItemChanged(position);
+        }
+    });
+    private final String username;
+    private final OnJoinListener joinListener;
+
+    public ChatTimelineAdapter(String username, OnJoinListener joinListener) {
+        this.username = username;
+        this.joinListener = joinListener;
+        setHasStableIds(true);
+    }
+
+    /** Appends a run of live chat lines with a single range insertion. */
+    public void addChats(List<String> lines) {
+        timeline.addChats(lines);
+    }
+
+    /** See {@link ChatTimeline#appendNewerChats}. */
+    public void appendNewerChats(List<String> lines, boolean reachedTail) {
+        timeline.appendNewerChats(lines, reachedTail);
+    }
+
+    /** Inserts older chat lines above everything else, e.g. a page loaded from history. */
+    public void prependChats(List<String> lines) {
+        timeline.prependChats(lines);
+    }
+
+    public boolean isFollowingTail() {
+        return timeline.isFollowingTail();
+    }
+
+    public long getSkippedLiveChats() {
+        return timeline.getSkippedLiveChats();
+    }
+
+    public int getChatCount() {
+        return timeline.getChatCount();
+    }
+
+    /** Returns how many chat lines were dropped off the top since the last call. */
+    public int takeTrimmedChatLines() {
+        return timeline.takeTrimmedChatLines();
+    }
+
+    public void putInvite(ChatMessage.Game game, String gameId, String initiator) {
+        timeline.putInvite(game, gameId, initiator);
+    }
+
+    public void putGameStatus(ChatMessage.Game game, String gameId, String player1, String player2) {
+        timeline.putGameStatus(game, gameId, player1, player2);
+    }
+
+    public void removeGame(String gameId) {
+        timeline.removeGame(gameId);
+    }
+
+    public void closeGame(String gameId) {
+        timeline.closeGame(gameId);
+    }
+
+    @Override
+    public int getItemCount() {
+        return timeline.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return timeline.get(position).getId();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return timeline.get(position).getKind().ordinal();
+    }
+
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == ChatTimelineItem.Kind.CHAT.ordinal()) {
+            return new ChatViewHolder(inflater.inflate(R.layout.item_chat_message, parent, false));
+        }
+        return new GameViewHolder(inflater.inflate(R.layout.item_game_row, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        ChatTimelineItem item = timeline.get(position);
+        if (holder instanceof ChatViewHolder) {
+            ((ChatViewHolder) holder).text.setText(item.getText());
+        } else {
+            ((GameViewHolder) holder).bind(item);
+        }
+    }
+
+    static class ChatViewHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        ChatViewHolder(View itemView) {
+            super(itemView);
+            text = itemView.findViewById(R.id.messageText);
+        }
+    }
+
+    class GameViewHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+        final Button button;
+
+        GameViewHolder(View itemView) {
+            super(itemView);
+            text = itemView.findViewById(R.id.gameText);
+            button = itemView.findViewById(R.id.gameButton);
+            button.setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION && joinListener != null) {
+                    joinListener.onJoin(timeline.get(position));
+                }
+            });
+        }
+
+        void bind(ChatTimelineItem item) {
+            text.setText(item.getText());
+            if (item.isClosed()) {
+                button.setText("This game was closed.");
+                button.setEnabled(false);
+            } else if (item.getKind() == ChatTimelineItem.Kind.GAME_STATUS) {
+                button.setText(item.getGame() == ChatMessage.Game.TIC_TAC_TOE
+                        ? "Game in Progress" : "Game in Progress / Has already ended");
+                button.setEnabled(false);
+            } else if (item.getInitiator().equals(username)) {
+                button.setText("Your Game - Waiting...");
+                button.setEnabled(false);
+            } else {
+                button.setText("Join Game");
+                button.setEnabled(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.chatroom;
+
+/**
+ * One row of the chat timeline. Chat lines are immutable; game rows (invites and games in
+ * progress) are keyed by game id and only ever change by being closed.
+ */
+public final class ChatTimelineItem {
+
+    public enum Kind {
+        CHAT,
+        INVITE,
+        GAME_STATUS
+    }
+
+    private final long id;
+    private final Kind kind;
+    private final String text;
+    private final String gameId;
+    private final ChatMessage.Game game;
+    private final String initiator;
+    private boolean closed;
+
+    private ChatTimelineItem(long id, Kind kind, String text, String gameId, ChatMessage.Game game, String initiator) {
+        this.id = id;
+        this.kind = kind;
+        this.text = text;
+        this.gameId = gameId;
+        this.game = game;
+        this.initiator = initiator;
+    }
+
+    static ChatTimelineItem chat(long id, String text) {
+        return new ChatTimelineItem(id, Kind.CHAT, text, null, null, null);
+    }
+
+    static ChatTimelineItem invite(long id, ChatMessage.Game game, String gameId, String initiator) {
+        String name = game == ChatMessage.Game.TIC_TAC_TOE ? "Tic Tac Toe" : "Four in a Row";
+        return new ChatTimelineItem(id, Kind.INVITE, initiator + " wants to play " + name + "!", gameId, game, initiator);
+    }
+
+    static ChatTimelineItem gameStatus(long id, ChatMessage.Game game, String gameId, String player1, String player2) {
+        String name = game == ChatMessage.Game.TIC_TAC_TOE ? "Tic Tac Toe" : "Four in a Row";
+        return new ChatTimelineItem(id, Kind.GAME_STATUS, name + ": " + player1 + " vs " + player2, gameId, game, player1);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public ChatMessage.Game getGame() {
+        return game;
+    }
+
+    public String getInitiator() {
+        return initiator;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,485 @@
+package com.example.chatroom;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Four in a Row opponent: negamax with alpha-beta pruning and iterative deepening over the
+ * {@link ConnectFourBoard} bit layout. Positions are (stones of the side to move, all stones), so
+ * playing a move is two bit operations and undoing it is restoring two longs. A shared, lock-free
+ * transposition table carries bounds and best moves between iterations and between threads. At
+ * the root the first (expected best) move is searched alone to get a bound, then the remaining
+ * moves are searched in parallel on a fork/join pool. Every search stops at its time budget and
+ * answers with the deepest fully completed iteration.
+ */
+public class ConnectFourAI {
+
+    private static final String TAG = "ConnectFourAI";
+
+    private static final int ROWS = ConnectFourBoard.ROWS;
+    private static final int COLS = ConnectFourBoard.COLS;
+    private static final int COLUMN_BITS = ConnectFourBoard.COLUMN_BITS;
+    private static final int CELLS = ROWS * COLS;
+    private static final long BOTTOM_MASK = bottomMask();
+    private static final long BOARD_MASK = BOTTOM_MASK * ((1L << ROWS) - 1);
+    private static final long CENTER_MASK = columnMask(COLS / 2);
+    private static final int[] COLUMN_ORDER = {3, 2, 4, 1, 5, 0, 6};
+
+    static final int WIN_SCORE = 1_000_000;
+    private static final int WIN_THRESHOLD = WIN_SCORE - 2 * CELLS;
+    private static final int NODE_CHECK_INTERVAL = 1024;
+
+    public enum Level {
+        EASY(2, 150),
+        MEDIUM(8, 500),
+        HARD(CELLS, 1500);
+
+        final int maxDepth;
+        final long budgetMillis;
+
+        Level(int maxDepth, long budgetMillis) {
+            this.maxDepth = maxDepth;
+            this.budgetMillis = budgetMillis;
+        }
+    }
+
+    public static final class Result {
+        public final int column;
+        public final int score;
+        public final int depth;
+        public final long nodes;
+        public final long elapsedNanos;
+
+        Result(int column, int score, int depth, long nodes, long elapsedNanos) {
+            this.column = column;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long nodesPerSecond() {
+            return elapsedNanos > 0 ? nodes * 1_000_000_000L / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "column=" + column + ", score=" + score + ", depth=" + depth + ", nodes=" + nodes
+                    + ", time=" + elapsedNanos / 1_000_000 + "ms, nps=" + nodesPerSecond();
+        }
+    }
+
+    private final TranspositionTable table;
+    private final ForkJoinPool pool;
+    private volatile boolean stopped;
+    private long deadline;
+
+    public ConnectFourAI() {
+        this(1 << 18, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ConnectFourAI(int tableEntries, int parallelism) {
+        this.table = new TranspositionTable(tableEntries);
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    public void shutdown() {
+        stopped = true;
+        pool.shutdownNow();
+    }
+
+    public Result chooseMove(ConnectFourBoard board, int player, Level level) {
+        return chooseMove(board, player, level.maxDepth, level.budgetMillis);
+    }
+
+    /** Blocking; call from a worker thread. {@code player} is the side to move on {@code board}. */
+    public Result chooseMove(ConnectFourBoard board, int player, int maxDepth, long budgetMillis) {
+        long start = System.nanoTime();
+        deadline = start + budgetMillis * 1_000_000L;
+        stopped = false;
+        Position root = new Position(board.stones(player), board.occupied(), board.getMoveCount());
+
+        int forced = forcedMove(root);
+        if (forced >= 0) {
+            return new Result(forced, 0, 0, 1, System.nanoTime() - start);
+        }
+
+        int[] moves = new int[COLS];
+        int[] scores = new int[COLS];
+        int moveCount = root.orderMoves(root.nonLosingMoves(), -1, moves, scores);
+        int bestColumn = moves[0];
+        int bestScore = 0;
+        int completedDepth = 0;
+        long nodes = 0;
+        for (int depth = 1; depth <= Math.min(maxDepth, CELLS - root.moves); depth++) {
+            RootSearch search = searchRoot(root, moves, moveCount, depth);
+            nodes += search.nodes;
+            if (stopped) {
+                break;
+            }
+            bestColumn = search.bestColumn;
+            bestScore = search.bestScore;
+            completedDepth = depth;
+            moveCount = root.orderMoves(root.nonLosingMoves(), bestColumn, moves, scores);
+            if (Math.abs(bestScore) >= WIN_THRESHOLD) {
+                break;
+            }
+        }
+        Result result = new Result(bestColumn, bestScore, completedDepth, nodes, System.nanoTime() - start);
+        Log.d(TAG, "Search finished: " + result);
+        return result;
+    }
+
+    /** A column that must be played regardless of search (a win, the only defence), or -1. */
+    private static int forcedMove(Position root) {
+        long possible = root.possible();
+        long winning = possible & root.winningCells();
+        long nonLosing = root.nonLosingMoves();
+        long choice;
+        if (winning != 0) {
+            choice = winning;
+        } else if (nonLosing == 0) {
+            // Lost against best play; any legal column will do.
+            choice = possible;
+        } else if (Long.bitCount(nonLosing) == 1) {
+            choice = nonLosing;
+        } else {
+            return -1;
+        }
+        for (int col : COLUMN_ORDER) {
+            if ((choice & columnMask(col)) != 0) {
+                return col;
+            }
+        }
+        return -1;
+    }
+
+    private static final class RootSearch {
+        int bestColumn = -1;
+        int bestScore = -Integer.MAX_VALUE;
+        long nodes;
+    }
+
+    private RootSearch searchRoot(Position root, int[] moves, int moveCount, int depth) {
+        RootSearch search = new RootSearch();
+        Searcher first = new Searcher();
+        Position child = root.copy();
+        child.play(moves[0]);
+        search.bestScore = -first.negamax(child, depth - 1, -WIN_SCORE, WIN_SCORE);
+        search.bestColumn = moves[0];
+        search.nodes = first.nodes;
+        if (stopped || moveCount == 1) {
+            return search;
+        }
+
+        // Younger siblings only need to prove they beat the first move, so they share its score as alpha.
+        int alpha = search.bestScore;
+        List<RootMoveTask> tasks = new ArrayList<>(moveCount - 1);
+        for (int i = 1; i < moveCount; i++) {
+            tasks.add(new RootMoveTask(root, moves[i], depth, alpha));
+        }
+        for (RootMoveTask task : tasks) {
+            pool.execute(task);
+        }
+        for (RootMoveTask task : tasks) {
+            int score = task.join();
+            search.nodes += task.nodes;
+            if (score > search.bestScore) {
+                search.bestScore = score;
+                search.bestColumn = task.column;
+            }
+        }
+        return search;
+    }
+
+    private final class RootMoveTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        final transient Position root;
+        final int column;
+        final int depth;
+        final int alpha;
+        long nodes;
+
+        RootMoveTask(Position root, int column, int depth, int alpha) {
+            this.root = root;
+            this.column = column;
+            this.depth = depth;
+            this.alpha = alpha;
+        }
+
+        @Override
+        protected Integer compute() {
+            Searcher searcher = new Searcher();
+            Position child = root.copy();
+            child.play(column);
+            // The window (alpha, WIN) has no real upper bound, so a score above alpha is already
+            // exact; one at or below it only proves this move is no better than the first.
+            int score = -searcher.negamax(child, depth - 1, -WIN_SCORE, -alpha);
+            nodes = searcher.nodes;
+            return score;
+        }
+    }
+
+    private final class Searcher {
+        long nodes;
+        private final int[][] moveBuffers = new int[CELLS + 1][COLS];
+        private final int[] scores = new int[COLS];
+
+        int negamax(Position pos, int depth, int alpha, int beta) {
+            if ((++nodes & (NODE_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() > deadline) {
+                stopped = true;
+            }
+            if (stopped) {
+                return 0;
+            }
+            if (pos.moves == CELLS) {
+                return 0;
+            }
+            if ((pos.possible() & pos.winningCells()) != 0) {
+                return WIN_SCORE - pos.moves - 1;
+            }
+            long next = pos.nonLosingMoves();
+            if (next == 0) {
+                return -(WIN_SCORE - pos.moves - 2);
+            }
+            if (depth <= 0) {
+                return pos.evaluate();
+            }
+
+            long key = pos.key();
+            long entry = table.get(key);
+            int ttMove = -1;
+            if (entry != 0) {
+                ttMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int score = TranspositionTable.score(entry);
+                    int flag = TranspositionTable.flag(entry);
+                    if (flag == TranspositionTable.EXACT) {
+                        return score;
+                    } else if (flag == TranspositionTable.LOWER) {
+                        alpha = Math.max(alpha, score);
+                    } else {
+                        beta = Math.min(beta, score);
+                    }
+                    if (alpha >= beta) {
+                        return score;
+                    }
+                }
+            }
+
+            int originalAlpha = alpha;
+            int[] moves = moveBuffers[pos.moves];
+            int count = pos.orderMoves(next, ttMove, moves, scores);
+            int best = -Integer.MAX_VALUE;
+            int bestMove = moves[0];
+            long current = pos.current;
+            long mask = pos.mask;
+            for (int i = 0; i < count; i++) {
+                pos.play(moves[i]);
+                int score = -negamax(pos, depth - 1, -beta, -alpha);
+                pos.undo(current, mask);
+                if (stopped) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    bestMove = moves[i];
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+            int flag = best <= originalAlpha ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.put(key, best, depth, flag, bestMove);
+            return best;
+        }
+    }
+
+    static final class Position {
+        long current;
+        long mask;
+        int moves;
+
+        Position(long current, long mask, int moves) {
+            this.current = current;
+            this.mask = mask;
+            this.moves = moves;
+        }
+
+        Position copy() {
+            return new Position(current, mask, moves);
+        }
+
+        void play(int col) {
+            current ^= mask;
+            mask |= mask + bottomMask(col);
+            moves++;
+        }
+
+        void undo(long current, long mask) {
+            this.current = current;
+            this.mask = mask;
+            moves--;
+        }
+
+        long key() {
+            return current + mask;
+        }
+
+        long possible() {
+            return (mask + BOTTOM_MASK) & BOARD_MASK;
+        }
+
+        long winningCells() {
+            return winningCells(current, mask);
+        }
+
+        long opponentWinningCells() {
+            return winningCells(current ^ mask, mask);
+        }
+
+        /** Playable cells that neither ignore an immediate threat nor sit right under one. */
+        long nonLosingMoves() {
+            long possible = possible();
+            long opponentWins = opponentWinningCells();
+            long forced = possible & opponentWins;
+            if (forced != 0) {
+                if ((forced & (forced - 1)) != 0) {
+                    return 0;
+                }
+                possible = forced;
+            }
+            return possible & ~(opponentWins >> 1);
+        }
+
+        int evaluate() {
+            int threats = Long.bitCount(winningCells()) - Long.bitCount(opponentWinningCells());
+            int center = Long.bitCount(current & CENTER_MASK) - Long.bitCount((current ^ mask) & CENTER_MASK);
+            return threats * 16 + center * 3;
+        }
+
+        /** Fills {@code out} with the columns of {@code candidates}, best guess first. */
+        int orderMoves(long candidates, int firstColumn, int[] out, int[] scores) {
+            int count = 0;
+            for (int col : COLUMN_ORDER) {
+                long cell = candidates & columnMask(col);
+                if (cell == 0) {
+                    continue;
+                }
+                int score = col == firstColumn ? Integer.MAX_VALUE
+                        : Long.bitCount(winningCells(current | cell, mask | cell));
+                int i = count++;
+                while (i > 0 && scores[i - 1] < score) {
+                    scores[i] = scores[i - 1];
+                    out[i] = out[i - 1];
+                    i--;
+                }
+                scores[i] = score;
+                out[i] = col;
+            }
+            return count;
+        }
+
+        static long winningCells(long position, long mask) {
+            // Vertical: three stacked stones win on the cell above them.
+            long r = (position << 1) & (position << 2) & (position << 3);
+            r |= lineCells(position, COLUMN_BITS);
+            r |= lineCells(position, COLUMN_BITS - 1);
+            r |= lineCells(position, COLUMN_BITS + 1);
+            return r & (BOARD_MASK ^ mask);
+        }
+
+        private static long lineCells(long position, int shift) {
+            long r;
+            long p = (position << shift) & (position << 2 * shift);
+            r = p & (position << 3 * shift);
+            r |= p & (position >>> shift);
+            p = (position >>> shift) & (position >>> 2 * shift);
+            r |= p & (position << shift);
+            r |= p & (position >>> 3 * shift);
+            return r;
+        }
+    }
+
+    /**
+     * Fixed-size, always-replace table shared by all search threads without locks. Each slot
+     * stores {@code key ^ data} next to {@code data}; a torn or concurrently overwritten slot
+     * fails the xor check and reads as a miss.
+     */
+    static final class TranspositionTable {
+        static final int EXACT = 0;
+        static final int LOWER = 1;
+        static final int UPPER = 2;
+        private static final int SCORE_OFFSET = 1 << 21;
+
+        private final long[] keys;
+        private final long[] data;
+        private final int indexMask;
+
+        TranspositionTable(int entries) {
+            int size = Integer.highestOneBit(Math.max(entries, 1024));
+            keys = new long[size];
+            data = new long[size];
+            indexMask = size - 1;
+        }
+
+        long get(long key) {
+            int index = index(key);
+            long value = data[index];
+            return (keys[index] ^ value) == key ? value : 0;
+        }
+
+        void put(long key, int score, int depth, int flag, int move) {
+            long value = (score + SCORE_OFFSET) | ((long) depth << 22) | ((long) flag << 28) | ((long) move << 30);
+            int index = index(key);
+            data[index] = value;
+            keys[index] = key ^ value;
+        }
+
+        static int score(long value) {
+            return (int) (value & ((1 << 22) - 1)) - SCORE_OFFSET;
+        }
+
+        static int depth(long value) {
+            return (int) (value >>> 22) & 0x3F;
+        }
+
+        static int flag(long value) {
+            return (int) (value >>> 28) & 0x3;
+        }
+
+        static int move(long value) {
+            return (int) (value >>> 30) & 0x7;
+        }
+
+        private int index(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & indexMask;
+        }
+    }
+
+    private static long bottomMask(int col) {
+        return 1L << (col * COLUMN_BITS);
+    }
+
+    private static long columnMask(int col) {
+        return ((1L << ROWS) - 1) << (col * COLUMN_BITS);
+    }
+
+    private static long bottomMask() {
+        long mask = 0;
+        for (int col = 0; col < COLS; col++) {
+            mask |= bottomMask(col);
+        }
+        return mask;
+    }
+}
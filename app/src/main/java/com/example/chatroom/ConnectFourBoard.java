@@ -0,0 +1,97 @@
+package com.example.chatroom;
+
+import java.util.Arrays;
+
+/**
+ * 7x6 Connect Four position stored as one bitboard per player. Each column takes seven bits, the
+ * lowest six for the cells from bottom to top and one spare bit that keeps shifted lines from
+ * wrapping into the next column, so a four-in-a-row test is a handful of shifts and masks.
+ * Rows and columns use the view's orientation: row 0 is the top row.
+ */
+public class ConnectFourBoard {
+
+    public static final int ROWS = 6;
+    public static final int COLS = 7;
+    static final int COLUMN_BITS = ROWS + 1;
+
+    private final long[] stones = new long[2];
+    private final int[] heights = new int[COLS];
+    private int moveCount = 0;
+
+    public boolean canPlay(int col) {
+        return col >= 0 && col < COLS && heights[col] < ROWS;
+    }
+
+    /** Row a chip dropped into {@code col} would land on, or -1 if the column is full. */
+    public int nextRow(int col) {
+        return canPlay(col) ? ROWS - 1 - heights[col] : -1;
+    }
+
+    /** Drops a chip for {@code player} (1 or 2) into {@code col}; returns the row it landed on or -1. */
+    public int play(int col, int player) {
+        int row = nextRow(col);
+        if (row < 0) {
+            return -1;
+        }
+        stones[player - 1] |= 1L << (col * COLUMN_BITS + heights[col]);
+        heights[col]++;
+        moveCount++;
+        return row;
+    }
+
+    /** Places a chip at an explicit cell, as received from the opponent; only the landing cell is accepted. */
+    public boolean place(int row, int col, int player) {
+        // canPlay first: nextRow returns -1 for a bad column, which a row of -1 would match.
+        if (player < 1 || player > 2 || !canPlay(col) || row != nextRow(col)) {
+            return false;
+        }
+        play(col, player);
+        return true;
+    }
+
+    public int get(int row, int col) {
+        long bit = 1L << (col * COLUMN_BITS + (ROWS - 1 - row));
+        if ((stones[0] & bit) != 0) {
+            return 1;
+        }
+        return (stones[1] & bit) != 0 ? 2 : 0;
+    }
+
+    public boolean isWin(int player) {
+        return hasFour(stones[player - 1]);
+    }
+
+    public boolean isFull() {
+        return moveCount == ROWS * COLS;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    long stones(int player) {
+        return stones[player - 1];
+    }
+
+    long occupied() {
+        return stones[0] | stones[1];
+    }
+
+    public void reset() {
+        stones[0] = 0;
+        stones[1] = 0;
+        Arrays.fill(heights, 0);
+        moveCount = 0;
+    }
+
+    static boolean hasFour(long bits) {
+        // Vertical, horizontal and both diagonals are neighbours 1, 7, 6 and 8 bits apart.
+        return hasFour(bits, 1) || hasFour(bits, COLUMN_BITS)
+                || hasFour(bits, COLUMN_BITS - 1) || hasFour(bits, COLUMN_BITS + 1);
+    }
+
+    private static boolean hasFour(long bits, int shift) {
+        long pairs = bits & (bits >> shift);
+        return (pairs & (pairs >> (2 * shift))) != 0;
+    }
+}
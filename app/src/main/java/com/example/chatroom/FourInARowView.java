@@ -1,20 +1,45 @@
 package com.example.chatroom;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.animation.AccelerateInterpolator;
 
+/**
+ * Draws the board as chips underneath a cached frame bitmap with the holes punched out, so a frame
+ * is one background fill, the occupied cells and a single bitmap blit. Nothing is allocated in
+ * {@link #onDraw}; a new chip falls down its column behind the frame and only that column is
+ * invalidated while it moves.
+ */
 public class FourInARowView extends View {
-    private static final int ROWS = 6;
-    private static final int COLS = 7;
-    private int[][] board = new int[ROWS][COLS];
-    private Paint player1Paint, player2Paint, gridPaint;
+    private static final int ROWS = ConnectFourBoard.ROWS;
+    private static final int COLS = ConnectFourBoard.COLS;
+    private static final int HOLE_MARGIN = 12;
+    // Time to fall one row; longer falls scale with sqrt(distance) like a chip under gravity.
+    private static final long DROP_DURATION_MS = 110;
+    private static final int BOARD_COLOR = Color.rgb(33, 150, 243);
+
+    private ConnectFourBoard board = new ConnectFourBoard();
+    private Paint player1Paint, player2Paint, holePaint;
     private OnMoveListener moveListener;
 
+    private Bitmap frame;
+    private float cellWidth, cellHeight, radius;
+
+    private ValueAnimator dropAnimator;
+    private int dropRow = -1, dropCol, dropPlayer;
+    private float dropY;
+
     public interface OnMoveListener {
         void onMoveMade(int row, int col, int player);
     }
@@ -29,73 +54,142 @@ public class FourInARowView extends View {
     }
 
     private void init() {
-        player1Paint = new Paint();
+        player1Paint = new Paint(Paint.ANTI_ALIAS_FLAG);
         player1Paint.setColor(Color.RED);
-        player2Paint = new Paint();
+        player2Paint = new Paint(Paint.ANTI_ALIAS_FLAG);
         player2Paint.setColor(Color.YELLOW);
-        gridPaint = new Paint();
-        gridPaint.setColor(Color.BLACK);
-        gridPaint.setStrokeWidth(5);
+        holePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        holePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+
+        // Animates 0..1 and reads the interpolated fraction so no Float is boxed per frame.
+        dropAnimator = ValueAnimator.ofFloat(0f, 1f);
+        dropAnimator.setInterpolator(new AccelerateInterpolator());
+        dropAnimator.addUpdateListener(animation -> {
+            float start = -cellHeight / 2f;
+            dropY = start + (centerY(dropRow) - start) * animation.getAnimatedFraction();
+            invalidateColumn(dropCol, dropRow);
+        });
+        dropAnimator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                if (dropRow >= 0) {
+                    invalidateColumn(dropCol, dropRow);
+                    dropRow = -1;
+                }
+            }
+        });
     }
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        float cellWidth = getWidth() / (float) COLS;
-        float cellHeight = getHeight() / (float) ROWS;
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        cellWidth = w / (float) COLS;
+        cellHeight = h / (float) ROWS;
+        radius = Math.min(cellWidth, cellHeight) / 2f - HOLE_MARGIN;
 
-        Paint boardPaint = new Paint();
-        boardPaint.setColor(Color.rgb(33, 150, 243));
-        canvas.drawRect(0, 0, getWidth(), getHeight(), boardPaint);
+        if (frame != null) {
+            frame.recycle();
+            frame = null;
+        }
+        if (w > 0 && h > 0) {
+            frame = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            Canvas frameCanvas = new Canvas(frame);
+            frameCanvas.drawColor(BOARD_COLOR);
+            for (int row = 0; row < ROWS; row++) {
+                for (int col = 0; col < COLS; col++) {
+                    frameCanvas.drawCircle(centerX(col), centerY(row), radius, holePaint);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        // Empty holes show the background through the frame.
+        canvas.drawColor(Color.WHITE);
 
         for (int row = 0; row < ROWS; row++) {
             for (int col = 0; col < COLS; col++) {
-                float cx = col * cellWidth + cellWidth / 2f;
-                float cy = row * cellHeight + cellHeight / 2f;
-                float radius = Math.min(cellWidth, cellHeight) / 2f - 12;
-
-                Paint paint;
-                if (board[row][col] == 1) {
-                    paint = player1Paint;
-                } else if (board[row][col] == 2) {
-                    paint = player2Paint;
-                } else {
-                    paint = new Paint();
-                    paint.setColor(Color.WHITE);
+                int cell = board.get(row, col);
+                if (cell == 0 || (row == dropRow && col == dropCol)) {
+                    continue;
                 }
-
-                canvas.drawCircle(cx, cy, radius, paint);
+                canvas.drawCircle(centerX(col), centerY(row), radius, cell == 1 ? player1Paint : player2Paint);
             }
         }
+        if (dropRow >= 0) {
+            canvas.drawCircle(centerX(dropCol), dropY, radius, dropPlayer == 1 ? player1Paint : player2Paint);
+        }
+
+        if (frame != null) {
+            canvas.drawBitmap(frame, 0, 0, null);
+        }
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent e) {
         if (e.getAction() != MotionEvent.ACTION_DOWN) return false;
-        int col = (int) (e.getX() / (getWidth() / COLS));
-        for (int row = ROWS - 1; row >= 0; row--) {
-            if (board[row][col] == 0) {
-                if (moveListener != null) moveListener.onMoveMade(row, col, 0);
-                return true;
-            }
+        int col = Math.min(COLS - 1, (int) (e.getX() / (getWidth() / (float) COLS)));
+        int row = board.nextRow(col);
+        if (row < 0) {
+            return false;
         }
-        return false;
+        if (moveListener != null) moveListener.onMoveMade(row, col, 0);
+        return true;
     }
 
     public boolean placeChip(int row, int col, int player) {
-        if (board[row][col] == 0) {
-            board[row][col] = player;
-            invalidate();
+        if (!board.place(row, col, player)) {
+            return false;
+        }
+        if (frame == null || !isAttachedToWindow()) {
+            invalidateColumn(col, row);
             return true;
         }
-        return false;
+        // Finishing the previous drop lands that chip in its cell before this one starts.
+        dropAnimator.end();
+        dropRow = row;
+        dropCol = col;
+        dropPlayer = player;
+        dropY = -cellHeight / 2f;
+        dropAnimator.setDuration((long) (DROP_DURATION_MS * Math.sqrt(row + 1)));
+        dropAnimator.start();
+        return true;
     }
 
     public void resetBoard() {
-        board = new int[ROWS][COLS];
+        dropAnimator.cancel();
+        board.reset();
         invalidate();
     }
 
-    public int[][] getBoard() {
+    public void setBoard(ConnectFourBoard board) {
+        dropAnimator.cancel();
+        this.board = board;
+        invalidate();
+    }
+
+    public ConnectFourBoard getBoard() {
         return board;
     }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        dropAnimator.cancel();
+        super.onDetachedFromWindow();
+    }
+
+    private float centerX(int col) {
+        return col * cellWidth + cellWidth / 2f;
+    }
+
+    private float centerY(int row) {
+        return row * cellHeight + cellHeight / 2f;
+    }
+
+    /** Invalidates the strip of {@code col} from the top edge down to the bottom of {@code row}. */
+    private void invalidateColumn(int col, int row) {
+        postInvalidateOnAnimation((int) (col * cellWidth), 0,
+                (int) Math.ceil((col + 1) * cellWidth), (int) Math.ceil((row + 1) * cellHeight));
+    }
 }
@@ -0,0 +1,79 @@
+package com.example.chatroom;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects items from any thread and hands them to the main thread at most once per display
+ * frame, as one batch in arrival order. Only the first item after a frame schedules a callback,
+ * so a burst costs one frame callback however many items it contains.
+ */
+public class FrameBatcher<T> implements Choreographer.FrameCallback {
+
+    public interface BatchConsumer<T> {
+        void onBatch(List<T> batch);
+    }
+
+    private final BatchConsumer<T> consumer;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Choreographer choreographer;
+    private final Object lock = new Object();
+    private final Runnable scheduleFrame;
+
+    private ArrayList<T> pending = new ArrayList<>();
+    private ArrayList<T> draining = new ArrayList<>();
+    private boolean scheduled = false;
+
+    /** Must be created on the main thread so that it binds to the main thread's Choreographer. */
+    public FrameBatcher(BatchConsumer<T> consumer) {
+        this.consumer = consumer;
+        this.choreographer = Choreographer.getInstance();
+        this.scheduleFrame = () -> choreographer.postFrameCallback(this);
+    }
+
+    public void add(T item) {
+        boolean schedule;
+        synchronized (lock) {
+            pending.add(item);
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (schedule) {
+            mainHandler.post(scheduleFrame);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        deliver();
+    }
+
+    /** Main thread only: hands over anything pending right away instead of on the next frame. */
+    public void flush() {
+        mainHandler.removeCallbacks(scheduleFrame);
+        choreographer.removeFrameCallback(this);
+        deliver();
+    }
+
+    private void deliver() {
+        ArrayList<T> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = draining;
+            draining = batch;
+            scheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            consumer.onBatch(batch);
+        } finally {
+            batch.clear();
+        }
+    }
+}
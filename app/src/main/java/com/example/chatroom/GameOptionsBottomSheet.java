@@ -55,6 +55,35 @@ public class GameOptionsBottomSheet extends BottomSheetDialogFragment {
             dismiss();
         });
 
+        Button ticTacToeComputerButton = view.findViewById(R.id.ticTacToeComputerButton);
+        ticTacToeComputerButton.setOnClickListener(v -> {
+            if (chatActivity != null) {
+                chatActivity.startTicTacToeVsComputer(3, 3);
+            }
+            dismiss();
+        });
+
+        Button ticTacToeLargeComputerButton = view.findViewById(R.id.ticTacToeLargeComputerButton);
+        ticTacToeLargeComputerButton.setOnClickListener(v -> {
+            if (chatActivity != null) {
+                chatActivity.startTicTacToeVsComputer(5, 4);
+            }
+            dismiss();
+        });
+
+        bindComputerLevel(view.findViewById(R.id.fourInARowEasyButton), ConnectFourAI.Level.EASY);
+        bindComputerLevel(view.findViewById(R.id.fourInARowMediumButton), ConnectFourAI.Level.MEDIUM);
+        bindComputerLevel(view.findViewById(R.id.fourInARowHardButton), ConnectFourAI.Level.HARD);
+
         return view;
     }
+
+    private void bindComputerLevel(Button button, ConnectFourAI.Level level) {
+        button.setOnClickListener(v -> {
+            if (chatActivity != null) {
+                chatActivity.startFourInARowVsComputer(level);
+            }
+            dismiss();
+        });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.example.chatroom;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Move sequencing for one game. Both players number moves from a shared per-game counter, so the
+ * n-th move of a round carries sequence n whoever made it. Incoming moves are applied strictly in
+ * sequence order: duplicates are dropped and moves that arrive after a gap are held back until a
+ * resync fills it. Own moves stay queued for resend until the server acknowledges them. Servers
+ * without resync never fill a gap or send acks, so there own moves are sent without a sequence and
+ * not tracked, and later moves are applied in order past a gap.
+ */
+public class GameSession {
+
+    private static final String TAG = "GameSession";
+    // Far more moves than a game can have in flight; guards against a server that stops acking.
+    private static final int MAX_UNACKED = 64;
+
+    private final ChatMessage.Game game;
+    private String gameId;
+    private long lastApplied = 0;
+    private boolean resyncSupported = false;
+    private final TreeMap<Long, String> unacked = new TreeMap<>();
+    private final TreeMap<Long, ChatMessage> heldBack = new TreeMap<>();
+
+    public interface MoveHandler {
+        void onMove(ChatMessage move);
+    }
+
+    public GameSession(ChatMessage.Game game, String gameId) {
+        this.game = game;
+        this.gameId = gameId;
+    }
+
+    public synchronized String getGameId() {
+        return gameId;
+    }
+
+    public synchronized long getLastApplied() {
+        return lastApplied;
+    }
+
+    /** Set from the server's RESYNC:1 offer, which also means it acknowledges moves. */
+    public synchronized void setResyncSupported(boolean supported) {
+        resyncSupported = supported;
+        if (!supported) {
+            unacked.clear();
+        }
+    }
+
+    public synchronized String nextMove(int row, int col, int player) {
+        long seq = ++lastApplied;
+        String move = (game == ChatMessage.Game.FOUR_IN_A_ROW ? "MOVE4:" : "MOVE:")
+                + gameId + ":" + row + ":" + col + ":" + player;
+        if (resyncSupported) {
+            // Peers behind a server without resync may only accept the five-field form.
+            move += ":" + seq;
+            unacked.put(seq, move);
+            if (unacked.size() > MAX_UNACKED) {
+                Log.w(TAG, "No ack for move " + unacked.pollFirstEntry().getKey() + " of game " + gameId);
+            }
+        }
+        return move;
+    }
+
+    /**
+     * Applies {@code move} and any held-back moves it unblocks. Returns false if a gap was found
+     * and the caller should ask the server to resync.
+     */
+    public boolean receive(ChatMessage move, MoveHandler handler) {
+        List<ChatMessage> ready = new ArrayList<>(1);
+        boolean gap;
+        synchronized (this) {
+            long seq = move.getSequence();
+            if (seq < 0) {
+                // Peers and servers without sequencing still get their moves applied as they come.
+                lastApplied++;
+                ready.add(move);
+            } else if (seq <= lastApplied) {
+                Log.d(TAG, "Dropping duplicate move " + seq + " for game " + gameId);
+            } else {
+                heldBack.put(seq, move);
+            }
+            while (!heldBack.isEmpty() && (heldBack.firstKey() == lastApplied + 1 || !resyncSupported)) {
+                long next = heldBack.firstKey();
+                if (next != lastApplied + 1) {
+                    Log.w(TAG, "Moves " + (lastApplied + 1) + " to " + (next - 1) + " for game " + gameId
+                            + " are lost, the server cannot resync");
+                }
+                lastApplied = next;
+                ready.add(heldBack.pollFirstEntry().getValue());
+            }
+            gap = !heldBack.isEmpty();
+            if (gap) {
+                Log.d(TAG, "Move " + heldBack.firstKey() + " for game " + gameId + " arrived before "
+                        + (lastApplied + 1));
+            }
+        }
+        for (ChatMessage readyMove : ready) {
+            handler.onMove(readyMove);
+        }
+        return !gap;
+    }
+
+    public synchronized void onAck(long seq) {
+        Iterator<Long> pending = unacked.keySet().iterator();
+        while (pending.hasNext() && pending.next() <= seq) {
+            pending.remove();
+        }
+    }
+
+    /** The resync request followed by every own move the server has not acknowledged yet. */
+    public synchronized List<String> resyncMessages() {
+        List<String> messages = new ArrayList<>(1 + unacked.size());
+        messages.add("RESYNC:" + gameId + ":" + lastApplied);
+        messages.addAll(unacked.values());
+        return messages;
+    }
+
+    public synchronized void reset(String newGameId) {
+        gameId = newGameId;
+        lastApplied = 0;
+        unacked.clear();
+        heldBack.clear();
+    }
+}
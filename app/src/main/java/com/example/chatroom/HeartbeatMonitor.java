@@ -0,0 +1,113 @@
+package com.example.chatroom;
+
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class HeartbeatMonitor {
+
+    private static final String TAG = "HeartbeatMonitor";
+    private static final long DEFAULT_INTERVAL_MS = 15_000;
+    private static final int DEFAULT_MAX_MISSED_PONGS = 3;
+    private static final int LATENCY_WINDOW = 256;
+
+    private final Callback callback;
+    private final LatencyHistogram latency = new LatencyHistogram(LATENCY_WINDOW);
+    // Ping id -> System.nanoTime() at send, in send order.
+    private final Map<Long, Long> outstanding = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, TAG));
+    private ScheduledFuture<?> ticker;
+    private long intervalMs = DEFAULT_INTERVAL_MS;
+    private int maxMissedPongs = DEFAULT_MAX_MISSED_PONGS;
+    private long nextId = 0;
+
+    public interface Callback {
+        void sendPing(String ping);
+
+        void onConnectionDead(int missedPongs);
+    }
+
+    public HeartbeatMonitor(Callback callback) {
+        this.callback = callback;
+    }
+
+    public synchronized void setInterval(long intervalMs) {
+        this.intervalMs = intervalMs;
+    }
+
+    public synchronized void setMaxMissedPongs(int maxMissedPongs) {
+        this.maxMissedPongs = Math.max(1, maxMissedPongs);
+    }
+
+    public synchronized void start() {
+        stop();
+        ticker = scheduler.scheduleAtFixedRate(this::tick, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+        outstanding.clear();
+    }
+
+    public synchronized boolean isRunning() {
+        return ticker != null;
+    }
+
+    public void onPong(long id) {
+        long now = System.nanoTime();
+        Long sentAt;
+        synchronized (this) {
+            sentAt = outstanding.remove(id);
+            if (sentAt == null) {
+                return;
+            }
+            // A pong also proves the link was alive for every ping sent before it.
+            Iterator<Long> older = outstanding.keySet().iterator();
+            while (older.hasNext() && older.next() < id) {
+                older.remove();
+            }
+        }
+        long rttMicros = (now - sentAt) / 1_000;
+        latency.record(rttMicros);
+        Log.d(TAG, "PONG " + id + " rtt=" + rttMicros + "us");
+    }
+
+    public LatencyHistogram.Snapshot getLatencyStats() {
+        return latency.snapshot();
+    }
+
+    private void tick() {
+        String ping;
+        int missed;
+        synchronized (this) {
+            if (ticker == null) {
+                return;
+            }
+            missed = outstanding.size();
+            if (missed < maxMissedPongs) {
+                long id = ++nextId;
+                outstanding.put(id, System.nanoTime());
+                ping = "PING:" + id;
+            } else {
+                ping = null;
+                stop();
+            }
+        }
+        if (ping != null) {
+            callback.sendPing(ping);
+        } else {
+            Log.w(TAG, "No pong for " + missed + " ping(s), declaring connection dead. Latency: " + latency.snapshot());
+            callback.onConnectionDead(missed);
+        }
+    }
+}
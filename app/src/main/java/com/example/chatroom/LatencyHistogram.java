@@ -0,0 +1,96 @@
+package com.example.chatroom;
+
+public class LatencyHistogram {
+
+    private static final int BUCKET_COUNT = 32;
+
+    private final long[] window;
+    private final int[] buckets = new int[BUCKET_COUNT];
+    private int next = 0;
+    private int size = 0;
+    private long lastMicros = -1;
+
+    public static final class Snapshot {
+        public final int samples;
+        public final long lastMicros;
+        public final long minMicros;
+        public final long maxMicros;
+        public final long meanMicros;
+        public final long p50Micros;
+        public final long p90Micros;
+        public final long p99Micros;
+
+        Snapshot(int samples, long lastMicros, long minMicros, long maxMicros, long meanMicros,
+                 long p50Micros, long p90Micros, long p99Micros) {
+            this.samples = samples;
+            this.lastMicros = lastMicros;
+            this.minMicros = minMicros;
+            this.maxMicros = maxMicros;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p90Micros = p90Micros;
+            this.p99Micros = p99Micros;
+        }
+
+        @Override
+        public String toString() {
+            return "samples=" + samples + ", last=" + lastMicros + "us, min=" + minMicros + "us, max=" + maxMicros +
+                    "us, mean=" + meanMicros + "us, p50<=" + p50Micros + "us, p90<=" + p90Micros +
+                    "us, p99<=" + p99Micros + "us";
+        }
+    }
+
+    public LatencyHistogram(int windowSize) {
+        this.window = new long[windowSize];
+    }
+
+    public synchronized void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        if (size == window.length) {
+            buckets[bucketOf(window[next])]--;
+        } else {
+            size++;
+        }
+        window[next] = micros;
+        next = (next + 1) % window.length;
+        buckets[bucketOf(micros)]++;
+        lastMicros = micros;
+    }
+
+    public synchronized Snapshot snapshot() {
+        if (size == 0) {
+            return new Snapshot(0, -1, 0, 0, 0, 0, 0, 0);
+        }
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            long sample = window[i];
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+            total += sample;
+        }
+        return new Snapshot(size, lastMicros, min, max, total / size,
+                percentile(0.50), percentile(0.90), percentile(0.99));
+    }
+
+    // Buckets are powers of two, so percentiles are reported as the upper bound of the matching bucket.
+    private long percentile(double fraction) {
+        int target = (int) Math.ceil(size * fraction);
+        int seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= target) {
+                return (1L << bucket) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static int bucketOf(long micros) {
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+}
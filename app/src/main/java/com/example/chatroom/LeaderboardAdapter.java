@@ -0,0 +1,122 @@
+package com.example.chatroom;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Backs the scrollable leaderboard. Pages are put at their offset, so a background refresh of a page
+ * that is already shown updates its rows in place instead of appending them again.
+ *
+ * <p>Once a pushed {@link LiveLeaderboard} arrives it owns the top of the list. HTTP pages for
+ * those ranks are ignored from then on, and later pages go below the pushed rows.
+ */
+public class LeaderboardAdapter extends RecyclerView.Adapter<LeaderboardAdapter.RowViewHolder> {
+
+    private final List<ScoreboardPage.Row> rows = new ArrayList<>();
+    private boolean hasMore = true;
+    // Ranks the pushed board covers (its K) and how many rows it currently has; 0 without push.
+    private int liveCapacity = 0;
+    private int liveRows = 0;
+
+    /** Server offset of the next page to fetch. */
+    public int getNextOffset() {
+        return liveCapacity > 0 ? liveCapacity + rows.size() - liveRows : rows.size();
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public void putPage(ScoreboardPage page) {
+        if (page.offset < liveCapacity) {
+            return;
+        }
+        int start = liveCapacity > 0 ? liveRows + page.offset - liveCapacity : page.offset;
+        if (start > rows.size()) {
+            // Would leave a gap; the page before it has not arrived.
+            return;
+        }
+        int end = start + page.rows.size();
+        replaceRange(start, Math.max(start, Math.min(end, rows.size())), page.rows);
+        if (!page.hasMore && rows.size() > end) {
+            // A refreshed page says the list now ends earlier than what is shown.
+            int removed = rows.size() - end;
+            rows.subList(end, rows.size()).clear();
+            notifyItemRangeRemoved(end, removed);
+        }
+        if (end == rows.size()) {
+            hasMore = page.hasMore;
+        }
+    }
+
+    /** Replaces the top of the list with the pushed board's rows, ranked 1 to K. */
+    public void putLiveBoard(List<ScoreboardPage.Row> board, int capacity) {
+        if (liveCapacity == 0) {
+            // HTTP rows for the ranks the board covers are superseded by it.
+            int superseded = Math.min(rows.size(), capacity);
+            rows.subList(0, superseded).clear();
+            notifyItemRangeRemoved(0, superseded);
+            liveCapacity = capacity;
+            liveRows = 0;
+        }
+        replaceRange(0, liveRows, board);
+        liveRows = board.size();
+        if (rows.size() == liveRows) {
+            // Nothing below the board is loaded yet; a full board means more players may follow.
+            hasMore = board.size() == capacity;
+        }
+    }
+
+    /** Replaces rows {@code [from, to)} with {@code replacement}, which may be a different length. */
+    private void replaceRange(int from, int to, List<ScoreboardPage.Row> replacement) {
+        int oldCount = to - from;
+        int newCount = replacement.size();
+        int common = Math.min(oldCount, newCount);
+        for (int i = 0; i < common; i++) {
+            rows.set(from + i, replacement.get(i));
+        }
+        if (common > 0) {
+            notifyItemRangeChanged(from, common);
+        }
+        if (newCount > oldCount) {
+            rows.addAll(from + oldCount, replacement.subList(oldCount, newCount));
+            notifyItemRangeInserted(from + oldCount, newCount - oldCount);
+        } else if (oldCount > newCount) {
+            rows.subList(from + newCount, to).clear();
+            notifyItemRangeRemoved(from + newCount, oldCount - newCount);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    @Override
+    public RowViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_leaderboard_row, parent, false);
+        return new RowViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(RowViewHolder holder, int position) {
+        ScoreboardPage.Row row = rows.get(position);
+        holder.text.setText(row.rank + ". " + row.username + " - Wins: " + row.totalWins);
+    }
+
+    static class RowViewHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        RowViewHolder(View itemView) {
+            super(itemView);
+            text = itemView.findViewById(R.id.leaderboardRowText);
+        }
+    }
+}
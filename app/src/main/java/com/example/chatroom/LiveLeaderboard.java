@@ -0,0 +1,124 @@
+package com.example.chatroom;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Local copy of the server's top-K leaderboard, kept current from the {@code LB_*} lines
+ * described in {@link WireProtocol}. Players are kept sorted by wins, ties by name, and indexed by
+ * name, so a delta costs O(log K) rather than a re-sort. Not thread-safe; {@link MyChatService}
+ * only touches it on the main thread.
+ */
+public class LiveLeaderboard {
+
+    public interface Listener {
+        void onLeaderboardChanged(LiveLeaderboard leaderboard);
+    }
+
+    public enum Result {
+        APPLIED,
+        IGNORED,
+        /** A version was skipped; the board was cleared and needs a fresh snapshot. */
+        GAP
+    }
+
+    private static final class Entry {
+        final String username;
+        final int wins;
+
+        Entry(String username, int wins) {
+            this.username = username;
+            this.wins = wins;
+        }
+    }
+
+    private static final Comparator<Entry> RANKING = (a, b) -> {
+        if (a.wins != b.wins) {
+            return Integer.compare(b.wins, a.wins);
+        }
+        return a.username.compareTo(b.username);
+    };
+
+    private final int topK;
+    private final TreeSet<Entry> ranked = new TreeSet<>(RANKING);
+    private final Map<String, Entry> byName = new HashMap<>();
+    // Version of the last line applied; -1 until a snapshot starts.
+    private long version = -1;
+
+    public LiveLeaderboard(int topK) {
+        this.topK = topK;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    /** True once a snapshot has started and no version was skipped since. */
+    public boolean isSynced() {
+        return version >= 0;
+    }
+
+    public void clear() {
+        ranked.clear();
+        byName.clear();
+        version = -1;
+    }
+
+    public Result apply(ChatMessage message) {
+        long messageVersion = message.getSequence();
+        if (message.getType() == ChatMessage.Type.LEADERBOARD_RESET) {
+            clear();
+            version = messageVersion;
+            return Result.APPLIED;
+        }
+        if (version < 0 || messageVersion <= version) {
+            return Result.IGNORED;
+        }
+        if (messageVersion != version + 1) {
+            clear();
+            return Result.GAP;
+        }
+        version = messageVersion;
+        switch (message.getType()) {
+            case LEADERBOARD_DELTA:
+                put(message.getUsername(), message.getScore());
+                return Result.APPLIED;
+            case LEADERBOARD_REMOVE:
+                remove(message.getUsername());
+                return Result.APPLIED;
+            default:
+                return Result.IGNORED;
+        }
+    }
+
+    private void put(String username, int wins) {
+        remove(username);
+        Entry entry = new Entry(username, wins);
+        ranked.add(entry);
+        byName.put(username, entry);
+        // The server keeps us at K players; trim anyway so a missed remove cannot grow the board.
+        while (ranked.size() > topK) {
+            byName.remove(ranked.pollLast().username);
+        }
+    }
+
+    private void remove(String username) {
+        Entry old = byName.remove(username);
+        if (old != null) {
+            ranked.remove(old);
+        }
+    }
+
+    /** The board in rank order, as rows the HTTP-paged leaderboard list can show. */
+    public List<ScoreboardPage.Row> rows() {
+        List<ScoreboardPage.Row> rows = new ArrayList<>(ranked.size());
+        for (Entry entry : ranked) {
+            rows.add(new ScoreboardPage.Row(rows.size() + 1, entry.username, entry.wins));
+        }
+        return rows;
+    }
+}
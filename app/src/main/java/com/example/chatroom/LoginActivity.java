@@ -11,16 +11,10 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
-import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
-
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -60,8 +54,11 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
 
-        StringRequest stringRequest = new StringRequest(Request.Method.POST, LOGIN_URL,
-                new Response.Listener<String>() {
+        Map<String, String> params = new HashMap<>();
+        params.put("username", username);
+        params.put("password", password);
+        ApiClient.getInstance().postForm(LOGIN_URL, params, TAG,
+                new ApiClient.Listener() {
                     @Override
                     public void onResponse(String response) {
                         Log.d(TAG, "PHP Response: " + response);
@@ -76,9 +73,7 @@ public class LoginActivity extends AppCompatActivity {
                             Log.d(TAG, "Username: " + returnedUsername);
 
                             if (success) {
-                                Intent serviceIntent = new Intent(LoginActivity.this, MyChatService.class);
-                                serviceIntent.putExtra("USERNAME", returnedUsername);
-                                startService(serviceIntent);
+                                MyChatService.start(LoginActivity.this, returnedUsername);
 
                                 Intent intent = new Intent(LoginActivity.this, ChatActivity.class);
                                 intent.putExtra("USERNAME", returnedUsername);
@@ -93,24 +88,19 @@ public class LoginActivity extends AppCompatActivity {
                         }
                     }
                 },
-                new Response.ErrorListener() {
+                new ApiClient.ErrorListener() {
                     @Override
-                    public void onErrorResponse(VolleyError error) {
-                        Log.e(TAG, "Volley Error: " + error.getMessage(), error);
+                    public void onError(IOException error) {
+                        Log.e(TAG, "Login request failed: " + error.getMessage(), error);
                         Toast.makeText(LoginActivity.this, "Login failed: " + (error.getMessage() != null ? error.getMessage() : "Unknown error"), Toast.LENGTH_LONG).show();
                     }
-                }) {
-            @Override
-            protected Map<String, String> getParams() {
-                Map<String, String> params = new HashMap<>();
-                params.put("username", username);
-                params.put("password", password);
-                return params;
-            }
-        };
+                });
+    }
 
-        RequestQueue requestQueue = Volley.newRequestQueue(this);
-        requestQueue.add(stringRequest);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        ApiClient.getInstance().cancelAll(TAG);
     }
 
     public void onRegisterTextClick(View view) {
@@ -0,0 +1,147 @@
+package com.example.chatroom;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+public class MessageBus {
+
+    private static final String TAG = "MessageBus";
+
+    private static MessageBus instance;
+
+    private final Map<ChatMessage.Type, Topic> topics = new EnumMap<>(ChatMessage.Type.class);
+    private final Executor mainExecutor;
+    private final Executor backgroundExecutor;
+
+    public enum ThreadMode {
+        /** Called on the publishing thread, usually the socket reader; must not block. */
+        POSTING,
+        MAIN,
+        BACKGROUND
+    }
+
+    public interface Subscriber {
+        void onMessage(ChatMessage message);
+    }
+
+    public static final class Subscription {
+        private final MessageBus bus;
+        final ChatMessage.Type type;
+        final String gameId;
+        final ThreadMode threadMode;
+        final Subscriber subscriber;
+        private volatile boolean active = true;
+
+        Subscription(MessageBus bus, ChatMessage.Type type, String gameId, ThreadMode threadMode, Subscriber subscriber) {
+            this.bus = bus;
+            this.type = type;
+            this.gameId = gameId;
+            this.threadMode = threadMode;
+            this.subscriber = subscriber;
+        }
+
+        public void cancel() {
+            if (active) {
+                active = false;
+                bus.remove(this);
+            }
+        }
+    }
+
+    private static final class Topic {
+        final List<Subscription> allGames = new CopyOnWriteArrayList<>();
+        final Map<String, List<Subscription>> byGameId = new ConcurrentHashMap<>();
+    }
+
+    public static synchronized MessageBus getInstance() {
+        if (instance == null) {
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            instance = new MessageBus(mainHandler::post, Executors.newSingleThreadExecutor());
+        }
+        return instance;
+    }
+
+    MessageBus(Executor mainExecutor, Executor backgroundExecutor) {
+        this.mainExecutor = mainExecutor;
+        this.backgroundExecutor = backgroundExecutor;
+        for (ChatMessage.Type type : ChatMessage.Type.values()) {
+            topics.put(type, new Topic());
+        }
+    }
+
+    public Subscription subscribe(ChatMessage.Type type, ThreadMode threadMode, Subscriber subscriber) {
+        return subscribe(type, null, threadMode, subscriber);
+    }
+
+    public synchronized Subscription subscribe(ChatMessage.Type type, String gameId, ThreadMode threadMode,
+                                               Subscriber subscriber) {
+        Subscription subscription = new Subscription(this, type, gameId, threadMode, subscriber);
+        Topic topic = topics.get(type);
+        if (gameId == null) {
+            topic.allGames.add(subscription);
+        } else {
+            topic.byGameId.computeIfAbsent(gameId, id -> new CopyOnWriteArrayList<>()).add(subscription);
+        }
+        return subscription;
+    }
+
+    private synchronized void remove(Subscription subscription) {
+        Topic topic = topics.get(subscription.type);
+        if (subscription.gameId == null) {
+            topic.allGames.remove(subscription);
+        } else {
+            List<Subscription> subscriptions = topic.byGameId.get(subscription.gameId);
+            if (subscriptions != null) {
+                subscriptions.remove(subscription);
+                if (subscriptions.isEmpty()) {
+                    topic.byGameId.remove(subscription.gameId, subscriptions);
+                }
+            }
+        }
+    }
+
+    public void publish(ChatMessage message) {
+        Topic topic = topics.get(message.getType());
+        int delivered = deliver(topic.allGames, message);
+        if (message.getGameId() != null) {
+            List<Subscription> subscriptions = topic.byGameId.get(message.getGameId());
+            if (subscriptions != null) {
+                delivered += deliver(subscriptions, message);
+            }
+        }
+        if (delivered == 0) {
+            Log.d(TAG, "No subscribers for " + message.getType() + " message: " + message);
+        }
+    }
+
+    private int deliver(List<Subscription> subscriptions, ChatMessage message) {
+        for (Subscription subscription : subscriptions) {
+            Runnable delivery = () -> {
+                if (subscription.active) {
+                    subscription.subscriber.onMessage(message);
+                }
+            };
+            switch (subscription.threadMode) {
+                case POSTING:
+                    delivery.run();
+                    break;
+                case MAIN:
+                    mainExecutor.execute(delivery);
+                    break;
+                default:
+                    backgroundExecutor.execute(delivery);
+                    break;
+            }
+        }
+        return subscriptions.size();
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.chatroom;
+
+import com.example.chatroom.ChatMessage.Game;
+import com.example.chatroom.ChatMessage.ResetPhase;
+import com.example.chatroom.ChatMessage.Type;
+
+public class MessageDecoder {
+
+    private static final int MAX_FIELDS = 8;
+
+    private static final Prefix[] PREFIXES = {
+            new Prefix("CHAT", Type.CHAT, Game.NONE, ResetPhase.NONE, 0, Integer.MAX_VALUE),
+            new Prefix("JOINED", Type.JOINED, Game.NONE, ResetPhase.NONE, 1, Integer.MAX_VALUE),
+            new Prefix("NEW_TICTACTOE", Type.INVITE, Game.TIC_TAC_TOE, ResetPhase.NONE, 2, 2),
+            new Prefix("NEW_FOURINAROW", Type.INVITE, Game.FOUR_IN_A_ROW, ResetPhase.NONE, 2, 2),
+            new Prefix("JOIN_TICTACTOE", Type.JOIN, Game.TIC_TAC_TOE, ResetPhase.NONE, 3, 3),
+            new Prefix("JOIN_FOURINAROW", Type.JOIN, Game.FOUR_IN_A_ROW, ResetPhase.NONE, 3, 3),
+            new Prefix("START_TICTACTOE", Type.START, Game.TIC_TAC_TOE, ResetPhase.NONE, 3, 3),
+            new Prefix("START_FOURINAROW", Type.START, Game.FOUR_IN_A_ROW, ResetPhase.NONE, 3, 3),
+            new Prefix("MOVE", Type.MOVE, Game.TIC_TAC_TOE, ResetPhase.NONE, 4, 5),
+            new Prefix("MOVE4", Type.MOVE, Game.FOUR_IN_A_ROW, ResetPhase.NONE, 4, 5),
+            new Prefix("MOVE_ACK", Type.MOVE_ACK, Game.NONE, ResetPhase.NONE, 2, 2),
+            new Prefix("GAME_OVER", Type.GAME_OVER, Game.TIC_TAC_TOE, ResetPhase.NONE, 2, 2),
+            new Prefix("GAME_OVER4", Type.GAME_OVER, Game.FOUR_IN_A_ROW, ResetPhase.NONE, 2, 2),
+            new Prefix("RESET_GAME_REQUEST", Type.RESET, Game.NONE, ResetPhase.REQUEST, 1, Integer.MAX_VALUE),
+            new Prefix("RESET_GAME_PENDING", Type.RESET, Game.NONE, ResetPhase.PENDING, 2, Integer.MAX_VALUE),
+            new Prefix("RESET_GAME_CONFIRMED", Type.RESET, Game.NONE, ResetPhase.CONFIRMED, 1, Integer.MAX_VALUE),
+            new Prefix("EXIT_TICTACTOE", Type.EXIT, Game.TIC_TAC_TOE, ResetPhase.NONE, 1, 1),
+            new Prefix("EXIT_FOURINAROW", Type.EXIT, Game.FOUR_IN_A_ROW, ResetPhase.NONE, 1, 1),
+            new Prefix("PROTOCOL_OFFER", Type.PROTOCOL, Game.NONE, ResetPhase.NONE, 0, Integer.MAX_VALUE),
+            new Prefix("PROTOCOL_ACCEPT", Type.PROTOCOL, Game.NONE, ResetPhase.NONE, 0, Integer.MAX_VALUE),
+            new Prefix("PING", Type.PING, Game.NONE, ResetPhase.NONE, 1, 1),
+            new Prefix("PONG", Type.PONG, Game.NONE, ResetPhase.NONE, 1, 1),
+            new Prefix("LB_RESET", Type.LEADERBOARD_RESET, Game.NONE, ResetPhase.NONE, 1, 1),
+            new Prefix("LB_DELTA", Type.LEADERBOARD_DELTA, Game.NONE, ResetPhase.NONE, 3, 3),
+            new Prefix("LB_REMOVE", Type.LEADERBOARD_REMOVE, Game.NONE, ResetPhase.NONE, 2, 2),
+    };
+
+    private static final class Prefix {
+        final String name;
+        final Type type;
+        final Game game;
+        final ResetPhase resetPhase;
+        final int minFields;
+        final int maxFields;
+
+        Prefix(String name, Type type, Game game, ResetPhase resetPhase, int minFields, int maxFields) {
+            this.name = name;
+            this.type = type;
+            this.game = game;
+            this.resetPhase = resetPhase;
+            this.minFields = minFields;
+            this.maxFields = maxFields;
+        }
+    }
+
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+
+    public ChatMessage decode(String line) {
+        int colon = line.indexOf(':');
+        Prefix prefix = colon > 0 ? findPrefix(line, colon) : null;
+        if (prefix == null) {
+            return new ChatMessage(line, Type.TEXT, Game.NONE, ResetPhase.NONE, null, null, null, -1, -1, 0);
+        }
+        if (prefix.type == Type.CHAT || prefix.type == Type.PROTOCOL) {
+            return new ChatMessage(line, prefix.type, Game.NONE, ResetPhase.NONE, null, null, null, -1, -1, 0);
+        }
+        if (prefix.type == Type.JOINED) {
+            return new ChatMessage(line, Type.JOINED, Game.NONE, ResetPhase.NONE, null,
+                    line.substring(colon + 1), null, -1, -1, 0);
+        }
+
+        // Field boundaries are tracked as offsets into the line; only the fields a type needs are materialized.
+        int fieldCount = 0;
+        int start = colon + 1;
+        while (fieldCount < MAX_FIELDS) {
+            int end = line.indexOf(':', start);
+            starts[fieldCount] = start;
+            ends[fieldCount] = end < 0 ? line.length() : end;
+            fieldCount++;
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+        // Match String.split semantics, which drops trailing empty fields.
+        while (fieldCount > 0 && starts[fieldCount - 1] == ends[fieldCount - 1]) {
+            fieldCount--;
+        }
+        if (fieldCount < prefix.minFields || fieldCount > prefix.maxFields) {
+            return malformed(line);
+        }
+
+        String gameId = line.substring(starts[0], ends[0]);
+        switch (prefix.type) {
+            case INVITE:
+                return new ChatMessage(line, Type.INVITE, prefix.game, ResetPhase.NONE, gameId,
+                        line.substring(starts[1], ends[1]), null, -1, -1, 0);
+            case JOIN:
+            case START:
+                return new ChatMessage(line, prefix.type, prefix.game, ResetPhase.NONE, gameId,
+                        line.substring(starts[1], ends[1]), line.substring(starts[2], ends[2]), -1, -1, 0);
+            case MOVE: {
+                int row = parseInt(line, starts[1], ends[1]);
+                int col = parseInt(line, starts[2], ends[2]);
+                int player = parseInt(line, starts[3], ends[3]);
+                long seq = fieldCount > 4 ? parseLong(line, starts[4], ends[4]) : -1;
+                if (row < 0 || col < 0 || player < 0 || (fieldCount > 4 && seq < 0)) {
+                    return malformed(line);
+                }
+                return new ChatMessage(line, Type.MOVE, prefix.game, ResetPhase.NONE, gameId, null, null, row, col, player, seq);
+            }
+            case MOVE_ACK: {
+                long seq = parseLong(line, starts[1], ends[1]);
+                if (seq < 0) {
+                    return malformed(line);
+                }
+                return new ChatMessage(line, Type.MOVE_ACK, Game.NONE, ResetPhase.NONE, gameId, null, null, -1, -1, 0, seq);
+            }
+            case GAME_OVER: {
+                int winner = parseInt(line, starts[1], ends[1]);
+                if (winner < 0) {
+                    return malformed(line);
+                }
+                return new ChatMessage(line, Type.GAME_OVER, prefix.game, ResetPhase.NONE, gameId, null, null, -1, -1, winner);
+            }
+            case RESET: {
+                String user = fieldCount > 1 ? line.substring(starts[1], ends[1]) : null;
+                return new ChatMessage(line, Type.RESET, Game.NONE, prefix.resetPhase, gameId, user, null, -1, -1, 0);
+            }
+            case EXIT:
+                return new ChatMessage(line, Type.EXIT, prefix.game, ResetPhase.NONE, gameId, null, null, -1, -1, 0);
+            case PING:
+            case PONG: {
+                long id = parseLong(line, starts[0], ends[0]);
+                if (id < 0) {
+                    return malformed(line);
+                }
+                return new ChatMessage(line, prefix.type, Game.NONE, ResetPhase.NONE, null, null, null, -1, -1, 0, id);
+            }
+            case LEADERBOARD_RESET:
+            case LEADERBOARD_DELTA:
+            case LEADERBOARD_REMOVE: {
+                long version = parseLong(line, starts[0], ends[0]);
+                String user = fieldCount > 1 ? line.substring(starts[1], ends[1]) : null;
+                int score = fieldCount > 2 ? parseInt(line, starts[2], ends[2]) : 0;
+                if (version < 0 || score < 0 || (user != null && user.isEmpty())) {
+                    return malformed(line);
+                }
+                return new ChatMessage(line, prefix.type, Game.NONE, ResetPhase.NONE, null, user, null, -1, -1, score, version);
+            }
+            default:
+                return malformed(line);
+        }
+    }
+
+    private static Prefix findPrefix(String line, int length) {
+        for (Prefix prefix : PREFIXES) {
+            if (prefix.name.length() == length && line.regionMatches(0, prefix.name, 0, length)) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    private static int parseInt(String line, int start, int end) {
+        if (start >= end || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static long parseLong(String line, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static ChatMessage malformed(String line) {
+        return new ChatMessage(line, Type.MALFORMED, Game.NONE, ResetPhase.NONE, null, null, null, -1, -1, 0);
+    }
+}
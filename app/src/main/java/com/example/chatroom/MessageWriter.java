@@ -0,0 +1,100 @@
+package com.example.chatroom;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MessageWriter implements Runnable {
+
+    private static final String TAG = "MessageWriter";
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private final OutboundQueue queue;
+    private final OutputStream out;
+    private final WireProtocol protocol;
+    private final FailureListener failureListener;
+    private final List<OutboundQueue.Entry> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    private volatile boolean closing = false;
+    private volatile boolean stopped = false;
+    private Thread thread;
+
+    public interface FailureListener {
+        void onWriteFailed(IOException e);
+    }
+
+    public MessageWriter(OutboundQueue queue, OutputStream out, WireProtocol protocol, FailureListener failureListener) {
+        this.queue = queue;
+        this.out = out;
+        this.protocol = protocol;
+        this.failureListener = failureListener;
+    }
+
+    public void start() {
+        thread = new Thread(this, TAG);
+        thread.start();
+    }
+
+    public void stop() {
+        stopped = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public void closeAfterDrain() {
+        closing = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!stopped) {
+                OutboundQueue.Entry first;
+                try {
+                    first = closing ? queue.poll() : queue.take();
+                } catch (InterruptedException e) {
+                    if (!closing || stopped) {
+                        return;
+                    }
+                    first = queue.poll();
+                }
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                writeBatch();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing to server: " + e.getMessage(), e);
+            // The batch was already taken from the queue; the next connection sends it first.
+            queue.requeueFirst(batch);
+            batch.clear();
+            if (!closing && !stopped && failureListener != null) {
+                failureListener.onWriteFailed(e);
+            }
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing writer: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        for (OutboundQueue.Entry entry : batch) {
+            out.write(protocol.encode(entry.line));
+        }
+        out.flush();
+        queue.recordSent(batch, System.nanoTime());
+        Log.d(TAG, "Flushed " + batch.size() + " message(s), queue depth: " + queue.getDepth());
+        batch.clear();
+    }
+}
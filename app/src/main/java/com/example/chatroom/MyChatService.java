@@ -1,119 +1,252 @@
 package com.example.chatroom;
 
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
+import android.os.Binder;
 import android.os.IBinder;
 import android.util.Log;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Owns the server connection for a logged-in user. It is started once at login so the
+ * connection outlives individual activities, and activities bind to it (see
+ * {@link ChatServiceConnection}) to send and subscribe. Incoming messages are published to the
+ * {@link MessageBus} on the socket thread; POSTING subscribers get them without any hop.
+ */
 public class MyChatService extends Service implements ServerConnectionManager.MessageListener {
 
     private static final String TAG = "MyChatService";
+    static final String HISTORY_ROOM = "lobby";
+    static final String EXTRA_USERNAME = "USERNAME";
+    private static final String ACTION_LOGOUT = "com.example.chatroom.action.LOGOUT";
+    static final int LEADERBOARD_TOP_K = 20;
+    private static final ChatMessage.Type[] LEADERBOARD_TOPICS = {
+            ChatMessage.Type.LEADERBOARD_RESET,
+            ChatMessage.Type.LEADERBOARD_DELTA,
+            ChatMessage.Type.LEADERBOARD_REMOVE
+    };
+
+    private final IBinder binder = new LocalBinder();
     private ServerConnectionManager connectionManager;
     private String username;
+    private ChatHistoryStore history;
+
+    // Main thread only.
+    private final LiveLeaderboard leaderboard = new LiveLeaderboard(LEADERBOARD_TOP_K);
+    private final List<LiveLeaderboard.Listener> leaderboardListeners = new ArrayList<>();
+    private final List<MessageBus.Subscription> leaderboardSubscriptions = new ArrayList<>();
+
+    public class LocalBinder extends Binder {
+        public MyChatService getService() {
+            return MyChatService.this;
+        }
+    }
+
+    /** Starts the service for {@code username} and connects if it is not connected yet. */
+    public static void start(Context context, String username) {
+        Intent intent = new Intent(context, MyChatService.class);
+        intent.putExtra(EXTRA_USERNAME, username);
+        context.startService(intent);
+    }
+
+    /**
+     * Logs out through a start intent rather than the binding, so it still happens when the
+     * caller finishes before its binder arrives.
+     */
+    public static void logout(Context context) {
+        Intent intent = new Intent(context, MyChatService.class);
+        intent.setAction(ACTION_LOGOUT);
+        context.startService(intent);
+    }
 
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "Service onCreate");
+        history = ChatHistoryStore.getInstance(this, HISTORY_ROOM);
+        // Loads results a previous run could not send and sends them once a network is up.
+        StatsOutbox.getInstance(this);
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "Service onStartCommand");
-        if (intent != null) {
-            username = intent.getStringExtra("USERNAME");
-            Log.d(TAG, "Service received username: " + username);
-            if (username != null) {
-                connectionManager = ServerConnectionManager.getInstance(username);
-                if (connectionManager.messageListeners.isEmpty()) {
-                    connectionManager.addMessageListener(this);
-                    Log.d(TAG, "onStartCommand: Added listener (MyChatService). Total Listeners: " + connectionManager.messageListeners.size());
-                } else {
-                    Log.w(TAG, "onStartCommand: Listener (MyChatService) already registered. Count: " + connectionManager.messageListeners.size());
-                }
-                if (!connectionManager.isConnected()) {
-                    connectionManager.connectAndListen();
-                }
-            } else {
-                Log.w(TAG, "No username provided to the service.");
-                stopSelf();
-            }
-        } else {
+        if (intent == null) {
             Log.w(TAG, "Service started with a null intent.");
             stopSelf();
+        } else if (ACTION_LOGOUT.equals(intent.getAction())) {
+            logout();
+            return START_NOT_STICKY;
+        } else if (!ensureConnected(intent.getStringExtra(EXTRA_USERNAME))) {
+            Log.w(TAG, "No username provided to the service.");
+            stopSelf();
         }
         return START_STICKY;
     }
 
+    @Override
+    public IBinder onBind(Intent intent) {
+        // Binding with a username also brings the connection back after the process was restarted.
+        ensureConnected(intent.getStringExtra(EXTRA_USERNAME));
+        return binder;
+    }
+
+    private boolean ensureConnected(String requestedUsername) {
+        if (requestedUsername == null) {
+            return connectionManager != null;
+        }
+        username = requestedUsername;
+        Log.d(TAG, "Service received username: " + username);
+        connectionManager = ServerConnectionManager.getInstance(username);
+        if (connectionManager.messageListeners.isEmpty()) {
+            connectionManager.addMessageListener(this);
+            Log.d(TAG, "Added listener (MyChatService). Total Listeners: " + connectionManager.messageListeners.size());
+        }
+        if (!connectionManager.isConnected()) {
+            connectionManager.connectAndListen();
+        }
+        return true;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean isConnected() {
+        return connectionManager != null && connectionManager.isConnected();
+    }
+
+    public void sendMessage(String message) {
+        if (connectionManager == null) {
+            Log.w(TAG, "Dropping message sent before the service connected: " + message);
+            return;
+        }
+        connectionManager.sendMessage(message);
+    }
+
+    public MessageBus.Subscription subscribe(ChatMessage.Type type, MessageBus.ThreadMode threadMode,
+                                             MessageBus.Subscriber subscriber) {
+        return MessageBus.getInstance().subscribe(type, threadMode, subscriber);
+    }
+
+    public MessageBus.Subscription subscribe(ChatMessage.Type type, String gameId, MessageBus.ThreadMode threadMode,
+                                             MessageBus.Subscriber subscriber) {
+        return MessageBus.getInstance().subscribe(type, gameId, threadMode, subscriber);
+    }
+
+    public void registerGameSession(GameSession session) {
+        if (connectionManager != null) {
+            connectionManager.registerGameSession(session);
+        }
+    }
+
+    public void unregisterGameSession(GameSession session) {
+        if (connectionManager != null) {
+            connectionManager.unregisterGameSession(session);
+        }
+    }
+
+    public void requestResync(GameSession session) {
+        if (connectionManager != null) {
+            connectionManager.requestResync(session);
+        }
+    }
+
+    /**
+     * Starts receiving pushed leaderboard changes; call on the main thread. The first listener
+     * subscribes with the server and the last one to leave unsubscribes, so nothing is pushed
+     * while no screen shows the leaderboard. Servers without push support never call back.
+     */
+    public void addLeaderboardListener(LiveLeaderboard.Listener listener) {
+        leaderboardListeners.add(listener);
+        if (leaderboardListeners.size() > 1) {
+            if (leaderboard.isSynced()) {
+                listener.onLeaderboardChanged(leaderboard);
+            }
+            return;
+        }
+        for (ChatMessage.Type type : LEADERBOARD_TOPICS) {
+            leaderboardSubscriptions.add(subscribe(type, MessageBus.ThreadMode.MAIN, this::applyLeaderboardMessage));
+        }
+        if (connectionManager != null) {
+            connectionManager.subscribeLeaderboard(LEADERBOARD_TOP_K);
+        }
+    }
+
+    public void removeLeaderboardListener(LiveLeaderboard.Listener listener) {
+        if (!leaderboardListeners.remove(listener) || !leaderboardListeners.isEmpty()) {
+            return;
+        }
+        for (MessageBus.Subscription subscription : leaderboardSubscriptions) {
+            subscription.cancel();
+        }
+        leaderboardSubscriptions.clear();
+        leaderboard.clear();
+        if (connectionManager != null) {
+            connectionManager.unsubscribeLeaderboard();
+        }
+    }
+
+    private void applyLeaderboardMessage(ChatMessage message) {
+        switch (leaderboard.apply(message)) {
+            case APPLIED:
+                for (LiveLeaderboard.Listener listener : new ArrayList<>(leaderboardListeners)) {
+                    listener.onLeaderboardChanged(leaderboard);
+                }
+                break;
+            case GAP:
+                Log.w(TAG, "Missed a leaderboard update before " + message + ", asking for a snapshot");
+                if (connectionManager != null) {
+                    connectionManager.subscribeLeaderboard(LEADERBOARD_TOP_K);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Says goodbye to the server, closes the connection and stops the service. */
+    private void logout() {
+        closeConnection();
+        stopSelf();
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
         Log.d(TAG, "Service onDestroy");
+        closeConnection();
+    }
+
+    private void closeConnection() {
         if (connectionManager != null) {
-            connectionManager.sendMessage("DISCONNECT:" + username);
+            // disconnect() queues the DISCONNECT line behind anything still waiting to go out.
             connectionManager.disconnect();
             connectionManager.removeMessageListener(this);
+            connectionManager = null;
         }
     }
 
     @Override
-    public IBinder onBind(Intent intent) {
-        return null;
+    public void onMessageReceived(ChatMessage message) {
+        Log.d(TAG, "MyChatService - Received " + message.getType() + " message: " + message);
+        if (message.getType() == ChatMessage.Type.MALFORMED) {
+            Log.w(TAG, "MyChatService - Dropping malformed message: " + message);
+            return;
+        }
+        switch (message.getType()) {
+            case CHAT:
+            case JOINED:
+            case TEXT:
+                // Queued for the history writer and search indexer; neither touches disk here.
+                history.append(message.getRaw());
+                break;
+            default:
+                break;
+        }
+        MessageBus.getInstance().publish(message);
     }
-
-    @Override
-    public void onMessageReceived(String message) {
-        Log.d(TAG, "MyChatService - Received message: " + message);
-
-        if (message.startsWith("MOVE:") || message.startsWith("GAME_OVER:")) {
-            Intent gameIntent;
-            gameIntent = new Intent("tictactoe_move");
-            gameIntent.putExtra("message", message);
-            LocalBroadcastManager.getInstance(this).sendBroadcast(gameIntent);
-        }
-        else if (message.startsWith("CHAT:")) {
-            Log.d(TAG, "MyChatService - Handling CHAT message: " + message);
-            Intent chatIntent = new Intent("chat_message");
-            chatIntent.putExtra("message", message);
-            LocalBroadcastManager.getInstance(this).sendBroadcast(chatIntent);
-        }
-        else if (message.startsWith("JOINED:")) {
-            Log.d(TAG, "MyChatService - Handling JOINED message: " + message);
-            Intent joinedIntent = new Intent("chat_message");
-            joinedIntent.putExtra("message", message);
-            LocalBroadcastManager.getInstance(this).sendBroadcast(joinedIntent);
-        }
-        else if (message.startsWith("NEW_TICTACTOE:") || message.startsWith("NEW_FOURINAROW:")) {
-            Log.d(TAG, "MyChatService - Handling game invite message: " + message);
-            Intent gameInviteIntent = new Intent("chat_message");
-            gameInviteIntent.putExtra("message", message);
-            LocalBroadcastManager.getInstance(this).sendBroadcast(gameInviteIntent);
-        }
-        else if (message.startsWith("JOIN_TICTACTOE:") || message.startsWith("JOIN_FOURINAROW:")) {
-            Log.d(TAG, "MyChatService - Handling game join message: " + message);
-            Intent gameJoinIntent = new Intent("chat_message");
-            gameJoinIntent.putExtra("message", message);
-            LocalBroadcastManager.getInstance(this).sendBroadcast(gameJoinIntent);
-        }
-        else if (message.startsWith("START_TICTACTOE:") || message.startsWith("START_FOURINAROW:")) {
-            Log.d(TAG, "MyChatService - Handling game start message: " + message);
-            Intent gameStartIntent = new Intent("chat_message");
-            gameStartIntent.putExtra("message", message);
-            LocalBroadcastManager.getInstance(this).sendBroadcast(gameStartIntent);
-        }
-        else if (message.startsWith("EXIT_TICTACTOE:") || message.startsWith("EXIT_FOURINAROW:")) {
-            Log.d(TAG, "MyChatService - Handling game exit message: " + message);
-            Intent gameExitIntent = new Intent("chat_message");
-            gameExitIntent.putExtra("message", message);
-            LocalBroadcastManager.getInstance(this).sendBroadcast(gameExitIntent);
-        }
-        else {
-            Log.d(TAG, "MyChatService - Sending chat message to activity: " + message);
-            Intent chatIntent = new Intent("chat_message");
-            chatIntent.putExtra("message", message);
-            LocalBroadcastManager.getInstance(this).sendBroadcast(chatIntent);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,245 @@
+package com.example.chatroom;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NioTransport implements Transport {
+
+    private static final String TAG = "NioTransport";
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private final OutboundQueue outboundQueue;
+    private final Callback callback;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final WireProtocol protocol;
+    private final WireCodec.Listener inboundListener;
+    private final List<OutboundQueue.Entry> inFlight = new ArrayList<>(MAX_BATCH_SIZE);
+    // A message too large for the whole write buffer, streamed through it in pieces.
+    private ByteBuffer pendingBytes;
+    // Polled from the queue but did not fit behind what the write buffer already holds.
+    private OutboundQueue.Entry deferred;
+    private Selector selector;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private volatile boolean writeRequested = false;
+    private volatile boolean draining = false;
+    private volatile boolean closed = false;
+
+    public NioTransport(OutboundQueue outboundQueue, WireProtocol protocol, Callback callback) {
+        this.outboundQueue = outboundQueue;
+        this.protocol = protocol;
+        this.callback = callback;
+        this.inboundListener = callback::onMessageReceived;
+    }
+
+    @Override
+    public void start(String host, int port, String handshake) {
+        Thread ioThread = new Thread(() -> run(host, port, handshake), TAG);
+        ioThread.start();
+    }
+
+    private void run(String host, int port, String handshake) {
+        Exception cause = null;
+        try {
+            Log.d(TAG, "Connecting to server...");
+            selector = Selector.open();
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.socket().setKeepAlive(true);
+            boolean connected = channel.connect(new InetSocketAddress(host, port));
+            key = channel.register(selector, connected ? 0 : SelectionKey.OP_CONNECT);
+            encodeMessage(handshake);
+            if (connected) {
+                onConnected();
+            }
+
+            while (!closed) {
+                selector.select();
+                if (closed) {
+                    break;
+                }
+                if (writeRequested && channel.isConnected()) {
+                    writeRequested = false;
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+                if (key.isValid() && key.isConnectable() && channel.finishConnect()) {
+                    onConnected();
+                }
+                if (key.isValid() && key.isReadable() && !readAvailable()) {
+                    Log.d(TAG, "Disconnected from server.  Stopping I/O loop.");
+                    break;
+                }
+                if (key.isValid() && key.isWritable()) {
+                    writePending();
+                }
+                selector.selectedKeys().clear();
+                if (draining && isWriteIdle()) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                Log.e(TAG, "I/O error on server connection: " + e.getMessage(), e);
+                cause = e;
+            }
+        } finally {
+            boolean wasOpen = !closed;
+            closed = true;
+            closeChannel();
+            requeueUnsent();
+            if (wasOpen) {
+                callback.onClosed(cause);
+            }
+        }
+    }
+
+    private void onConnected() {
+        Log.d(TAG, "Connected to server!");
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        callback.onConnected();
+    }
+
+    private boolean readAvailable() throws IOException {
+        int read;
+        while ((read = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            while (protocol.decodeNext(readBuffer, inboundListener)) {
+                // Dispatch every complete message in the buffer.
+            }
+            readBuffer.compact();
+        }
+        return read >= 0;
+    }
+
+    private void writePending() throws IOException {
+        while (true) {
+            if (writeBuffer.position() == 0 && pendingBytes == null) {
+                fillWriteBuffer();
+                if (writeBuffer.position() == 0) {
+                    break;
+                }
+            }
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+            boolean flushed = !writeBuffer.hasRemaining();
+            writeBuffer.compact();
+            if (!flushed) {
+                return;
+            }
+            if (pendingBytes != null) {
+                continuePendingBytes();
+            } else if (!inFlight.isEmpty()) {
+                outboundQueue.recordSent(inFlight, System.nanoTime());
+                inFlight.clear();
+            }
+        }
+        if (!writeRequested) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void fillWriteBuffer() {
+        while (inFlight.size() < MAX_BATCH_SIZE && pendingBytes == null) {
+            OutboundQueue.Entry entry = deferred != null ? deferred : outboundQueue.poll();
+            if (entry == null) {
+                break;
+            }
+            deferred = null;
+            if (!encodeMessage(entry.line)) {
+                // Send what is buffered first; the entry goes into the emptied buffer next round.
+                deferred = entry;
+                break;
+            }
+            inFlight.add(entry);
+        }
+    }
+
+    /**
+     * Encodes straight into the direct write buffer. Returns false if the message does not fit
+     * behind what the buffer already holds.
+     */
+    private boolean encodeMessage(String message) {
+        if (protocol.encode(message, writeBuffer)) {
+            return true;
+        }
+        if (writeBuffer.position() > 0) {
+            return false;
+        }
+        // Larger than the whole buffer: the only case that still goes through a heap array.
+        pendingBytes = ByteBuffer.wrap(protocol.encode(message));
+        continuePendingBytes();
+        return true;
+    }
+
+    private void continuePendingBytes() {
+        int count = Math.min(writeBuffer.remaining(), pendingBytes.remaining());
+        writeBuffer.put(pendingBytes.array(), pendingBytes.position(), count);
+        pendingBytes.position(pendingBytes.position() + count);
+        if (!pendingBytes.hasRemaining()) {
+            pendingBytes = null;
+        }
+    }
+
+    /** Hands messages taken from the queue but not fully written back to the next connection. */
+    private void requeueUnsent() {
+        if (deferred != null) {
+            inFlight.add(deferred);
+            deferred = null;
+        }
+        if (!inFlight.isEmpty()) {
+            outboundQueue.requeueFirst(inFlight);
+            inFlight.clear();
+        }
+    }
+
+    private boolean isWriteIdle() {
+        return writeBuffer.position() == 0 && pendingBytes == null && deferred == null && outboundQueue.isEmpty();
+    }
+
+    @Override
+    public void onMessageQueued() {
+        writeRequested = true;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void closeAfterDrain() {
+        draining = true;
+        onMessageQueued();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (selector != null) {
+                selector.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing connection: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.chatroom;
+
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OutboundQueue {
+
+    public static final int DEFAULT_CAPACITY = 512;
+    private static final String TAG = "OutboundQueue";
+
+    private final BlockingDeque<Entry> queue;
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public static final class Entry {
+        final String line;
+        final long enqueuedAtNanos;
+
+        Entry(String line, long enqueuedAtNanos) {
+            this.line = line;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+
+    public static final class Stats {
+        public final int depth;
+        public final long enqueued;
+        public final long sent;
+        public final long dropped;
+        public final long averageLatencyMicros;
+        public final long maxLatencyMicros;
+
+        Stats(int depth, long enqueued, long sent, long dropped, long averageLatencyMicros, long maxLatencyMicros) {
+            this.depth = depth;
+            this.enqueued = enqueued;
+            this.sent = sent;
+            this.dropped = dropped;
+            this.averageLatencyMicros = averageLatencyMicros;
+            this.maxLatencyMicros = maxLatencyMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "depth=" + depth + ", enqueued=" + enqueued + ", sent=" + sent + ", dropped=" + dropped +
+                    ", avgLatency=" + averageLatencyMicros + "us, maxLatency=" + maxLatencyMicros + "us";
+        }
+    }
+
+    public OutboundQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public OutboundQueue(int capacity) {
+        this.queue = new LinkedBlockingDeque<>(capacity);
+    }
+
+    public boolean offer(String line) {
+        if (queue.offer(new Entry(line, System.nanoTime()))) {
+            enqueuedCount.incrementAndGet();
+            return true;
+        }
+        droppedCount.incrementAndGet();
+        return false;
+    }
+
+    public Entry take() throws InterruptedException {
+        return queue.take();
+    }
+
+    public Entry poll() {
+        return queue.poll();
+    }
+
+    public int drainTo(List<Entry> batch, int maxEntries) {
+        return queue.drainTo(batch, maxEntries);
+    }
+
+    /**
+     * Puts entries a writer took but could not send back at the head of the queue, in their
+     * original order, so the next connection sends them first. They are older than anything
+     * queued since, so if the queue filled up meanwhile the newest entries make room.
+     */
+    public void requeueFirst(List<Entry> entries) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            while (!queue.offerFirst(entries.get(i))) {
+                if (queue.pollLast() != null) {
+                    droppedCount.incrementAndGet();
+                    Log.w(TAG, "Queue full, dropped the newest message to requeue an unsent one");
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        queue.clear();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public int getDepth() {
+        return queue.size();
+    }
+
+    public void recordSent(List<Entry> batch, long sentAtNanos) {
+        long total = 0;
+        long max = 0;
+        for (Entry entry : batch) {
+            long latency = sentAtNanos - entry.enqueuedAtNanos;
+            total += latency;
+            if (latency > max) {
+                max = latency;
+            }
+        }
+        sentCount.addAndGet(batch.size());
+        totalLatencyNanos.addAndGet(total);
+        long currentMax;
+        while (max > (currentMax = maxLatencyNanos.get())) {
+            if (maxLatencyNanos.compareAndSet(currentMax, max)) {
+                break;
+            }
+        }
+    }
+
+    public Stats getStats() {
+        long sent = sentCount.get();
+        long average = sent == 0 ? 0 : totalLatencyNanos.get() / sent;
+        return new Stats(queue.size(), enqueuedCount.get(), sent, droppedCount.get(),
+                average / 1000, maxLatencyNanos.get() / 1000);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.chatroom;
+
+import android.util.Log;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ReconnectSupervisor {
+
+    private static final String TAG = "ReconnectSupervisor";
+    private static final long DEFAULT_BASE_DELAY_MS = 200;
+    private static final long DEFAULT_MAX_DELAY_MS = 30_000;
+
+    private final Runnable reconnectAction;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Random random = new Random();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, TAG));
+    private ScheduledFuture<?> pendingAttempt;
+    private int attempt = 0;
+
+    public ReconnectSupervisor(Runnable reconnectAction) {
+        this(reconnectAction, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+    }
+
+    public ReconnectSupervisor(Runnable reconnectAction, long baseDelayMs, long maxDelayMs) {
+        this.reconnectAction = reconnectAction;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    public synchronized void scheduleReconnect() {
+        if (pendingAttempt != null && !pendingAttempt.isDone()) {
+            return;
+        }
+        long delay = nextDelayMillis(attempt++);
+        Log.d(TAG, "Reconnect attempt " + attempt + " in " + delay + " ms");
+        pendingAttempt = scheduler.schedule(reconnectAction, delay, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void onConnected() {
+        attempt = 0;
+    }
+
+    public synchronized void cancel() {
+        if (pendingAttempt != null) {
+            pendingAttempt.cancel(false);
+            pendingAttempt = null;
+        }
+        attempt = 0;
+    }
+
+    public synchronized boolean isReconnecting() {
+        return pendingAttempt != null && !pendingAttempt.isDone();
+    }
+
+    // Exponential backoff with "equal jitter": half of the window is fixed, the other half is random.
+    long nextDelayMillis(int attempt) {
+        long window = baseDelayMs << Math.min(attempt, 20);
+        if (window <= 0 || window > maxDelayMs) {
+            window = maxDelayMs;
+        }
+        long half = window / 2;
+        return half + (long) (random.nextDouble() * (window - half));
+    }
+}
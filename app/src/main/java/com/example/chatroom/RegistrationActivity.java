@@ -9,13 +9,7 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
-import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
-
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,7 +21,8 @@ public class RegistrationActivity extends AppCompatActivity {
     private Button registerButton;
     private Button backButton;
 
-    private static final String REGISTER_URL = "http:/51.21.214.199/register.php";
+    private static final String TAG = "RegistrationActivity";
+    private static final String REGISTER_URL = "http://51.21.214.199/register.php";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -71,8 +66,11 @@ public class RegistrationActivity extends AppCompatActivity {
             return;
         }
 
-        StringRequest stringRequest = new StringRequest(Request.Method.POST, REGISTER_URL,
-                new Response.Listener<String>() {
+        Map<String, String> params = new HashMap<>();
+        params.put("up_ime", username);
+        params.put("password", password);
+        ApiClient.getInstance().postForm(REGISTER_URL, params, TAG,
+                new ApiClient.Listener() {
                     @Override
                     public void onResponse(String response) {
                         try {
@@ -91,22 +89,17 @@ public class RegistrationActivity extends AppCompatActivity {
                         }
                     }
                 },
-                new Response.ErrorListener() {
+                new ApiClient.ErrorListener() {
                     @Override
-                    public void onErrorResponse(VolleyError error) {
+                    public void onError(IOException error) {
                         Toast.makeText(RegistrationActivity.this, "Registration failed: " + error.getMessage(), Toast.LENGTH_LONG).show();
                     }
-                }) {
-            @Override
-            protected Map<String, String> getParams() {
-                Map<String, String> params = new HashMap<>();
-                params.put("up_ime", username);
-                params.put("password", password);
-                return params;
-            }
-        };
+                });
+    }
 
-        RequestQueue requestQueue = Volley.newRequestQueue(this);
-        requestQueue.add(stringRequest);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        ApiClient.getInstance().cancelAll(TAG);
     }
 }
\ No newline at end of file
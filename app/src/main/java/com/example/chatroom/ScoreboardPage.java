@@ -0,0 +1,155 @@
+package com.example.chatroom;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One page of {@code get_scoreboard.php?offset=&limit=}. The response is read with a streaming
+ * {@link JsonReader}, so no JSON tree is built. Reading stops once {@code limit} rows are in,
+ * which also bounds memory when a server ignores the paging parameters and returns every player.
+ */
+final class ScoreboardPage {
+
+    static final class Row {
+        final int rank;
+        final String username;
+        final int totalWins;
+
+        Row(int rank, String username, int totalWins) {
+            this.rank = rank;
+            this.username = username;
+            this.totalWins = totalWins;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Row)) {
+                return false;
+            }
+            Row other = (Row) o;
+            return rank == other.rank && totalWins == other.totalWins && username.equals(other.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rank, username, totalWins);
+        }
+    }
+
+    final int offset;
+    final List<Row> rows;
+    final boolean hasMore;
+    /** The server's message when it reported {@code success: false}, otherwise null. */
+    final String error;
+
+    private ScoreboardPage(int offset, List<Row> rows, boolean hasMore, String error) {
+        this.offset = offset;
+        this.rows = rows;
+        this.hasMore = hasMore;
+        this.error = error;
+    }
+
+    static String url(String baseUrl, int offset, int limit) {
+        return baseUrl + "?offset=" + offset + "&limit=" + limit;
+    }
+
+    static ScoreboardPage parse(Reader body, int offset, int limit) throws IOException {
+        List<Row> rows = new ArrayList<>(limit);
+        Boolean success = null;
+        Boolean hasMore = null;
+        String message = null;
+        boolean truncated = false;
+        try (JsonReader reader = new JsonReader(body)) {
+            reader.beginObject();
+            while (!truncated && reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "success":
+                        success = reader.nextBoolean();
+                        break;
+                    case "message":
+                        message = nextStringOrNull(reader);
+                        break;
+                    case "has_more":
+                        hasMore = reader.nextBoolean();
+                        break;
+                    case "scoreboard":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            if (rows.size() == limit) {
+                                truncated = true;
+                                break;
+                            }
+                            rows.add(readRow(reader, offset + rows.size() + 1));
+                        }
+                        if (!truncated) {
+                            reader.endArray();
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed scoreboard response", e);
+        }
+
+        if (Boolean.FALSE.equals(success)) {
+            return new ScoreboardPage(offset, Collections.emptyList(), false,
+                    message != null ? message : "Unknown error");
+        }
+        // Without has_more, a full page means there may be another one.
+        boolean more = truncated || (hasMore != null ? hasMore : rows.size() == limit);
+        return new ScoreboardPage(offset, Collections.unmodifiableList(rows), more, null);
+    }
+
+    private static Row readRow(JsonReader reader, int rank) throws IOException {
+        String username = "Unknown";
+        int totalWins = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("up_ime")) {
+                username = reader.nextString();
+            } else if (name.equals("total_wins")) {
+                totalWins = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Row(rank, username, totalWins);
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ScoreboardPage)) {
+            return false;
+        }
+        ScoreboardPage other = (ScoreboardPage) o;
+        return offset == other.offset && hasMore == other.hasMore && rows.equals(other.rows)
+                && Objects.equals(error, other.error);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(offset, rows, hasMore, error);
+    }
+}
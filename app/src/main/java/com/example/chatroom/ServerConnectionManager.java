@@ -4,162 +4,338 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
-import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ServerConnectionManager {
 
-    private static final String SERVER_IP = "51.21.214.199";
-    private static final int SERVER_PORT = 12345;
+    private static final String SERVER_IP = BuildConfig.CHAT_SERVER_HOST;
+    private static final int SERVER_PORT = BuildConfig.CHAT_SERVER_PORT;
     private static final String TAG = "ServerConnectionManager";
 
+    private static final TransportMode DEFAULT_TRANSPORT_MODE = TransportMode.BLOCKING;
+
     private static ServerConnectionManager instance;
-    private Socket socket;
-    private PrintWriter writer;
-    private BufferedReader reader;
+    // Replaced rather than cleared when a session ends: a transport that is still draining or
+    // stopping keeps the old queue, so it can neither take nor requeue the next session's messages.
+    private volatile OutboundQueue outboundQueue = new OutboundQueue();
+    private final TransportMode transportMode;
+    private final ReconnectSupervisor reconnectSupervisor = new ReconnectSupervisor(this::reconnect);
+    private final HeartbeatMonitor heartbeat = new HeartbeatMonitor(new HeartbeatCallback());
+    private Transport transport;
+    private volatile boolean binaryFramingEnabled = true;
+    private volatile boolean autoReconnectEnabled = true;
+    private volatile boolean connectionWanted = false;
+    private volatile boolean resyncSupported = false;
+    private volatile boolean leaderboardSupported = false;
+    // Size of the pushed leaderboard we want; 0 when nobody is watching it.
+    private volatile int leaderboardTopK = 0;
+    private final List<GameSession> gameSessions = new CopyOnWriteArrayList<>();
     private String username;
     private Handler handler;
-    private boolean isConnected = false;
-    private Thread messageListenerThread;
+    private volatile boolean isConnected = false;
     List<MessageListener> messageListeners = new ArrayList<>();
 
     public interface MessageListener {
-        void onMessageReceived(String message);
+        void onMessageReceived(ChatMessage message);
+    }
+
+    public enum TransportMode {
+        BLOCKING,
+        NIO
     }
 
-    private ServerConnectionManager(String username) {
+    private ServerConnectionManager(String username, TransportMode transportMode) {
         this.username = username;
+        this.transportMode = transportMode;
         this.handler = new Handler(Looper.getMainLooper());
     }
 
     public static ServerConnectionManager getInstance(String username) {
         if (instance == null || !instance.username.equals(username)) {
-            instance = new ServerConnectionManager(username);
+            instance = new ServerConnectionManager(username, DEFAULT_TRANSPORT_MODE);
+        }
+        return instance;
+    }
+
+    public static ServerConnectionManager getInstance(String username, TransportMode transportMode) {
+        if (instance == null || !instance.username.equals(username) || instance.transportMode != transportMode) {
+            if (instance != null) {
+                instance.disconnect();
+            }
+            instance = new ServerConnectionManager(username, transportMode);
         }
         return instance;
     }
 
+    public TransportMode getTransportMode() {
+        return transportMode;
+    }
+
+    public void setBinaryFramingEnabled(boolean enabled) {
+        binaryFramingEnabled = enabled;
+    }
+
+    public void setAutoReconnectEnabled(boolean enabled) {
+        autoReconnectEnabled = enabled;
+    }
+
+    public void setHeartbeatInterval(long intervalMs) {
+        heartbeat.setInterval(intervalMs);
+    }
+
+    public void setMaxMissedPongs(int maxMissedPongs) {
+        heartbeat.setMaxMissedPongs(maxMissedPongs);
+    }
+
+    public LatencyHistogram.Snapshot getLatencyStats() {
+        return heartbeat.getLatencyStats();
+    }
+
+    public void registerGameSession(GameSession session) {
+        session.setResyncSupported(resyncSupported);
+        gameSessions.add(session);
+    }
+
+    public void unregisterGameSession(GameSession session) {
+        gameSessions.remove(session);
+    }
+
+    private void setResyncSupported(boolean supported) {
+        resyncSupported = supported;
+        for (GameSession session : gameSessions) {
+            session.setResyncSupported(supported);
+        }
+    }
+
+    public void requestResync(GameSession session) {
+        if (!resyncSupported) {
+            Log.w(TAG, "Server does not support resync, game " + session.getGameId() + " may diverge.");
+            return;
+        }
+        for (String message : session.resyncMessages()) {
+            sendMessage(message);
+        }
+    }
+
+    /**
+     * Asks the server to push the top {@code topK} players and every change to them. Sending it
+     * again requests a fresh snapshot. It is also re-sent after a reconnect.
+     */
+    public void subscribeLeaderboard(int topK) {
+        leaderboardTopK = topK;
+        if (leaderboardSupported) {
+            sendMessage("SUBSCRIBE_LEADERBOARD:" + topK);
+        }
+    }
+
+    public void unsubscribeLeaderboard() {
+        if (leaderboardTopK > 0 && leaderboardSupported) {
+            sendMessage("UNSUBSCRIBE_LEADERBOARD");
+        }
+        leaderboardTopK = 0;
+    }
+
+    public boolean isLeaderboardPushSupported() {
+        return leaderboardSupported;
+    }
+
     public boolean isConnected() {
         return isConnected;
     }
 
-    public void connectAndListen() {
-        if (isConnected) {
+    public boolean isReconnecting() {
+        return reconnectSupervisor.isReconnecting();
+    }
+
+    public synchronized void connectAndListen() {
+        connectionWanted = true;
+        reconnectSupervisor.cancel();
+        openTransport();
+    }
+
+    private synchronized void reconnect() {
+        if (connectionWanted) {
+            Log.d(TAG, "Reconnecting with " + outboundQueue.getDepth() + " spooled message(s)");
+            openTransport();
+        }
+    }
+
+    private void openTransport() {
+        if (isConnected || transport != null) {
             return;
         }
-        new Thread(() -> {
-            try {
-                Log.d(TAG, "Connecting to server...");
-                socket = new Socket(SERVER_IP, SERVER_PORT);
-                writer = new PrintWriter(socket.getOutputStream(), true);
-                reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-                if (socket.isConnected() && writer != null && reader != null) {
-                    writer.println(username);
-                    Log.d(TAG, "Sent username: " + username);
-                    isConnected = true;
-                    Log.d(TAG, "Connected to server!");
-                    startListeningForMessages();
-                } else {
-                    Log.e(TAG, "Failed to establish connection to server.");
-                    isConnected = false;
-                    closeConnection();
-                }
-
-            } catch (IOException e) {
-                Log.e(TAG, "Error connecting to server: " + e.getMessage(), e);
-                isConnected = false;
-                closeConnection();
-            }
-        }).start();
+        // The username handshake is always written before anything spooled in the outbound queue.
+        setResyncSupported(false);
+        leaderboardSupported = false;
+        transport = createTransport();
+        transport.start(SERVER_IP, SERVER_PORT, username);
+    }
+
+    private Transport createTransport() {
+        TransportCallback callback = new TransportCallback();
+        WireProtocol protocol = new WireProtocol();
+        OutboundQueue queue = outboundQueue;
+        if (transportMode == TransportMode.NIO) {
+            callback.owner = new NioTransport(queue, protocol, callback);
+        } else {
+            callback.owner = new BlockingTransport(queue, protocol, callback);
+        }
+        return callback.owner;
     }
 
-    private void startListeningForMessages() {
-        messageListenerThread = new Thread(() -> {
-            try {
-                String message;
-                while (isConnected && (message = reader.readLine()) != null) {
+    private class TransportCallback implements Transport.Callback {
+        Transport owner;
+
+        @Override
+        public void onConnected() {
+            isConnected = true;
+            reconnectSupervisor.onConnected();
+            Log.d(TAG, "Connected to server! (" + transportMode + "), flushing "
+                    + outboundQueue.getDepth() + " queued message(s)");
+            owner.onMessageQueued();
+        }
+
+        @Override
+        public void onMessageReceived(ChatMessage message) {
+            switch (message.getType()) {
+                case PING:
+                    sendMessage("PONG:" + message.getSequence());
+                    return;
+                case PONG:
+                    heartbeat.onPong(message.getSequence());
+                    return;
+                case MOVE_ACK:
+                    for (GameSession session : gameSessions) {
+                        if (message.isForGame(session.getGameId())) {
+                            session.onAck(message.getSequence());
+                        }
+                    }
+                    return;
+                case PROTOCOL:
+                    Log.d(TAG, "Received message: " + message);
+                    if (binaryFramingEnabled && WireProtocol.isBinaryOffer(message)) {
+                        Log.d(TAG, "Server offered binary framing, accepting.");
+                        sendMessage(WireProtocol.ACCEPT);
+                    }
+                    if (WireProtocol.offers(message, WireProtocol.HEARTBEAT_V1)) {
+                        Log.d(TAG, "Server supports heartbeats, starting ping/pong.");
+                        heartbeat.start();
+                    }
+                    if (WireProtocol.offers(message, WireProtocol.RESYNC_V1)) {
+                        setResyncSupported(true);
+                        // Games that were running across a reconnect fetch the moves they missed.
+                        for (GameSession session : gameSessions) {
+                            requestResync(session);
+                        }
+                    }
+                    if (WireProtocol.offers(message, WireProtocol.LEADERBOARD_V1)) {
+                        leaderboardSupported = true;
+                        if (leaderboardTopK > 0) {
+                            subscribeLeaderboard(leaderboardTopK);
+                        }
+                    }
+                    return;
+                default:
                     Log.d(TAG, "Received message: " + message);
                     notifyMessageListeners(message);
-                }
-                Log.d(TAG, "Disconnected from server.  Stopping message listener.");
-            } catch (SocketException e) {
-                Log.e(TAG, "SocketException while listening for messages: " + e.getMessage(), e);
-                handleDisconnect();
-            } catch (IOException e) {
-                if (isConnected) {
-                    Log.e(TAG, "Error reading from server: " + e.getMessage(), e);
-                    handleDisconnect();
-                }
-
-            } finally {
-                disconnect();
             }
-        });
-        messageListenerThread.start();
+        }
+
+        @Override
+        public void onClosed(Exception cause) {
+            handleDisconnect(owner);
+        }
     }
 
-    private void handleDisconnect() {
-        if (isConnected) {
-            isConnected = false;
+    private class HeartbeatCallback implements HeartbeatMonitor.Callback {
+        @Override
+        public void sendPing(String ping) {
+            if (isConnected) {
+                sendMessage(ping);
+            }
+        }
+
+        @Override
+        public void onConnectionDead(int missedPongs) {
+            closeDeadTransport();
+        }
+    }
+
+    private synchronized void closeDeadTransport() {
+        Transport dead = transport;
+        if (dead == null) {
+            return;
+        }
+        // Closing a transport ourselves does not report back through onClosed, so hand it over directly.
+        dead.close();
+        handleDisconnect(dead);
+    }
+
+    private synchronized void handleDisconnect(Transport closedTransport) {
+        if (transport != closedTransport) {
+            return;
+        }
+        heartbeat.stop();
+        isConnected = false;
+        transport = null;
+        if (connectionWanted && autoReconnectEnabled) {
+            Log.d(TAG, "Connection lost, keeping " + outboundQueue.getDepth() + " message(s) spooled.");
+            reconnectSupervisor.scheduleReconnect();
+        } else {
+            connectionWanted = false;
+            discardQueue();
             Log.d(TAG, "Disconnected from server.");
-            closeConnection();
         }
     }
 
     public void sendMessage(String message) {
-        if (isConnected && writer != null) {
-            new Thread(() -> {
-                writer.println(message);
-                Log.d(TAG, "Sent message: " + message);
-            }).start();
-        } else {
+        if (!connectionWanted) {
             Log.w(TAG, "Not connected.  Message not sent: " + message);
+            return;
+        }
+        OutboundQueue queue = outboundQueue;
+        if (!queue.offer(message)) {
+            Log.w(TAG, "Outbound queue full.  Message not sent: " + message);
+            return;
+        }
+        Transport current = transport;
+        if (isConnected && current != null) {
+            current.onMessageQueued();
+            Log.d(TAG, "Queued message: " + message + " (queue depth: " + queue.getDepth() + ")");
+        } else {
+            Log.d(TAG, "Spooled message while reconnecting: " + message + " (spool depth: " + queue.getDepth() + ")");
         }
     }
 
-    public void disconnect() {
+    public OutboundQueue.Stats getOutboundStats() {
+        return outboundQueue.getStats();
+    }
+
+    public synchronized void disconnect() {
+        connectionWanted = false;
+        reconnectSupervisor.cancel();
+        heartbeat.stop();
+        if (transport == null) {
+            discardQueue();
+            return;
+        }
         if (isConnected) {
             isConnected = false;
-            try {
-                if (writer != null) {
-                    writer.println("DISCONNECT:" + username);
-                    writer.close();
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error sending disconnect message", e);
-            }
-            closeConnection();
+            outboundQueue.offer("DISCONNECT:" + username);
+            Log.d(TAG, "Outbound stats on disconnect: " + outboundQueue.getStats());
+            // The old transport drains its own queue; a connectAndListen() right away gets a new one.
+            transport.closeAfterDrain();
+        } else {
+            transport.close();
         }
+        discardQueue();
+        transport = null;
     }
 
-    private void closeConnection() {
-        try {
-            if (writer != null) {
-                writer.close();
-                writer = null;
-            }
-            if (reader != null) {
-                reader.close();
-                reader = null;
-            }
-            if (socket != null) {
-                socket.close();
-                socket = null;
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Error closing connection: " + e.getMessage(), e);
-        } finally {
-            writer = null;
-            reader = null;
-            socket = null;
-        }
+    private void discardQueue() {
+        outboundQueue = new OutboundQueue();
     }
 
     public void addMessageListener(MessageListener listener) {
@@ -179,7 +355,7 @@ public class ServerConnectionManager {
                 ". Total listeners: " + messageListeners.size());
     }
 
-    private void notifyMessageListeners(String message) {
+    private void notifyMessageListeners(ChatMessage message) {
         Log.d(TAG, "notifyMessageListeners: Notifying " + messageListeners.size() + " listeners for message: " + message);
         for (MessageListener listener : messageListeners) {
             listener.onMessageReceived(message);
@@ -0,0 +1,282 @@
+package com.example.chatroom;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable queue of finished-game results for {@code update_stats.php}. A result is saved to
+ * {@code stats_outbox.json} before anything is sent, and it stays there until the server
+ * acknowledges it. Results go out one per request, in the original
+ * {@code username}/{@code game_type}/{@code result} form plus an {@code id}, until a reply
+ * advertises {@code "batch": true}. After that, results sent close together go out as one request.
+ *
+ * <p>Every result gets a random id when it is recorded, and retries reuse that id, so a server
+ * that knows about ids can drop duplicates and apply each game exactly once. A failed send is
+ * retried with backoff, and right away when the device gets a network back.
+ *
+ * <p>The batch request posts {@code results}, a JSON array of
+ * {@code {"id", "username", "game_type", "result"}} objects. The reply is
+ * {@code {"success": true, "batch": true, "accepted": [ids]}}. The ids in {@code accepted} include
+ * ones the server had already applied. Only ids listed in {@code accepted} count as sent; a batch
+ * reply without that field acknowledges nothing and turns batching off again.
+ */
+public class StatsOutbox {
+
+    private static final String TAG = "StatsOutbox";
+    private static final String UPDATE_STATS_URL = "http://51.21.214.199/update_stats.php";
+    private static final int MAX_BATCH_SIZE = 50;
+    private static final long BATCH_DELAY_MS = 2_000;
+    private static final long RETRY_BASE_DELAY_MS = 5_000;
+    private static final long RETRY_MAX_DELAY_MS = 10 * 60_000;
+
+    private static StatsOutbox instance;
+
+    interface Sender {
+        String send(Map<String, String> params) throws IOException;
+    }
+
+    static final class Result {
+        final String id;
+        final String username;
+        final String gameType;
+        final String result;
+
+        Result(String id, String username, String gameType, String result) {
+            this.id = id;
+            this.username = username;
+            this.gameType = gameType;
+            this.result = result;
+        }
+
+        JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                    .put("id", id)
+                    .put("username", username)
+                    .put("game_type", gameType)
+                    .put("result", result);
+        }
+
+        static Result fromJson(JSONObject json) throws JSONException {
+            return new Result(json.getString("id"), json.getString("username"),
+                    json.getString("game_type"), json.getString("result"));
+        }
+    }
+
+    private final File file;
+    private final Sender sender;
+    private final Runnable onApplied;
+    private final ScheduledExecutorService io = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, TAG);
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ReconnectSupervisor retry;
+
+    // Only touched on the io thread.
+    private final LinkedHashMap<String, Result> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean batchSupported;
+
+    public static synchronized StatsOutbox getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new StatsOutbox(new File(appContext.getFilesDir(), "stats_outbox.json"),
+                    params -> ApiClient.getInstance().postFormBlocking(UPDATE_STATS_URL, params),
+                    () -> {
+                        ApiClient api = ApiClient.getInstance();
+                        api.invalidate(ChatActivity.STATS_URL);
+                        api.invalidate(ChatActivity.SCOREBOARD_URL);
+                    });
+            instance.watchConnectivity(appContext);
+        }
+        return instance;
+    }
+
+    /** {@code onApplied} runs on the io thread whenever the server has taken new results. */
+    StatsOutbox(File file, Sender sender, Runnable onApplied) {
+        this.file = file;
+        this.sender = sender;
+        this.onApplied = onApplied;
+        this.retry = new ReconnectSupervisor(() -> io.execute(this::flush), RETRY_BASE_DELAY_MS, RETRY_MAX_DELAY_MS);
+        io.execute(this::load);
+    }
+
+    /** Records the outcome of one finished game; it is sent with the next batch. */
+    public void record(String username, String gameType, String result) {
+        Result entry = new Result(UUID.randomUUID().toString(), username, gameType, result);
+        io.execute(() -> {
+            pending.put(entry.id, entry);
+            save();
+            Log.d(TAG, "Recorded " + gameType + " " + result + "; " + pending.size() + " pending");
+            scheduleFlush();
+        });
+    }
+
+    /** Sends whatever is pending now, skipping any backoff in progress. */
+    public void flushNow() {
+        retry.cancel();
+        io.execute(this::flush);
+    }
+
+    private void watchConnectivity(Context context) {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return;
+        }
+        // Also called once right after registering if a network is up, which sends leftovers.
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                flushNow();
+            }
+        });
+    }
+
+    private void scheduleFlush() {
+        // While a retry is pending the network is probably down; that retry sends these too.
+        if (retry.isReconnecting() || (scheduledFlush != null && !scheduledFlush.isDone())) {
+            return;
+        }
+        scheduledFlush = io.schedule(this::flush, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        boolean batch = batchSupported;
+        List<String> sentIds = new ArrayList<>();
+        Map<String, String> params = new HashMap<>();
+        if (batch) {
+            JSONArray results = new JSONArray();
+            try {
+                for (Result entry : pending.values()) {
+                    if (sentIds.size() == MAX_BATCH_SIZE) {
+                        break;
+                    }
+                    results.put(entry.toJson());
+                    sentIds.add(entry.id);
+                }
+            } catch (JSONException e) {
+                Log.e(TAG, "Failed to encode stats batch", e);
+                return;
+            }
+            params.put("results", results.toString());
+        } else {
+            Result entry = pending.values().iterator().next();
+            params.put("id", entry.id);
+            params.put("username", entry.username);
+            params.put("game_type", entry.gameType);
+            params.put("result", entry.result);
+            sentIds.add(entry.id);
+        }
+
+        int removed = 0;
+        try {
+            JSONObject response = new JSONObject(sender.send(params));
+            batchSupported = response.optBoolean("batch", false);
+            if (!response.getBoolean("success")) {
+                throw new IOException("Stats update rejected: " + response.optString("message"));
+            }
+            if (!batch) {
+                removed += pending.remove(sentIds.get(0)) != null ? 1 : 0;
+            } else {
+                JSONArray accepted = response.optJSONArray("accepted");
+                if (accepted == null) {
+                    // Not a batch-aware reply, so nothing says these results were applied.
+                    Log.w(TAG, "Batch reply without accepted ids; sending results one at a time");
+                    batchSupported = false;
+                } else {
+                    for (int i = 0; i < accepted.length(); i++) {
+                        removed += pending.remove(accepted.getString(i)) != null ? 1 : 0;
+                    }
+                }
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to send " + sentIds.size() + " stats results; will retry", e);
+            retry.scheduleReconnect();
+            return;
+        }
+
+        retry.onConnected();
+        save();
+        if (removed > 0) {
+            onApplied.run();
+        }
+        Log.d(TAG, "Server accepted " + removed + " of " + sentIds.size() + " stats results");
+        if (removed == 0 && batch == batchSupported) {
+            // Nothing from this request was taken; back off instead of resending it in a loop.
+            retry.scheduleReconnect();
+        } else if (!pending.isEmpty()) {
+            io.execute(this::flush);
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                read += n;
+            }
+            JSONArray saved = new JSONArray(new String(bytes, StandardCharsets.UTF_8));
+            for (int i = 0; i < saved.length(); i++) {
+                Result entry = Result.fromJson(saved.getJSONObject(i));
+                pending.put(entry.id, entry);
+            }
+            Log.d(TAG, "Loaded " + pending.size() + " unsent stats results");
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Discarding unreadable stats outbox", e);
+            pending.clear();
+        }
+        scheduleFlush();
+    }
+
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            JSONArray saved = new JSONArray();
+            for (Result entry : pending.values()) {
+                saved.put(entry.toJson());
+            }
+            out.write(saved.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to save stats outbox", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Failed to replace " + file);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.chatroom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class TextCodec implements WireCodec {
+
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final MessageDecoder decoder = new MessageDecoder();
+    private byte[] line = new byte[256];
+    private int length = 0;
+
+    @Override
+    public byte[] encode(String message) {
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = Arrays.copyOf(text, text.length + 1);
+        encoded[text.length] = '\n';
+        return encoded;
+    }
+
+    @Override
+    public boolean encode(String message, ByteBuffer out) {
+        int length = utf8Length(message);
+        if (out.remaining() < length + 1) {
+            return false;
+        }
+        putUtf8(out, message);
+        out.put((byte) '\n');
+        return true;
+    }
+
+    /** Length of {@code s} in UTF-8; unpaired surrogates count as the one-byte '?' getBytes uses. */
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /** Writes {@code s} as UTF-8 without an intermediate array; the caller checked the space. */
+    static void putUtf8(ByteBuffer out, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                out.put((byte) (0xF0 | (codePoint >> 18)));
+                out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    @Override
+    public boolean decodeNext(ByteBuffer in, Listener listener) throws IOException {
+        int start = in.position();
+        int limit = in.limit();
+        // UTF-8 never uses 0x0A inside a multi-byte sequence, so scanning raw bytes is safe.
+        for (int i = start; i < limit; i++) {
+            if (in.get(i) == '\n') {
+                append(in, i - start);
+                in.get();
+                int end = length;
+                if (end > 0 && line[end - 1] == '\r') {
+                    end--;
+                }
+                String message = new String(line, 0, end, StandardCharsets.UTF_8);
+                length = 0;
+                listener.onMessage(decoder.decode(message));
+                return true;
+            }
+        }
+        append(in, limit - start);
+        return false;
+    }
+
+    private void append(ByteBuffer in, int count) throws IOException {
+        if (length + count > MAX_LINE_LENGTH) {
+            throw new IOException("Line exceeds " + MAX_LINE_LENGTH + " bytes");
+        }
+        if (length + count > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+        }
+        in.get(line, length, count);
+        length += count;
+    }
+}
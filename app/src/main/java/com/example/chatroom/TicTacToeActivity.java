@@ -1,9 +1,6 @@
 package com.example.chatroom;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -14,23 +11,17 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
-
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TicTacToeActivity extends AppCompatActivity implements TicTacToeView.OnGameEventListener {
 
     private static final String TAG = "TicTacToeActivity";
     private TicTacToeView ticTacToeView;
+    private TicTacToeBoard board;
     private TextView playerTurnTextView;
     private TextView gameResultTextView;
     private Button resetButton;
@@ -41,50 +32,59 @@ public class TicTacToeActivity extends AppCompatActivity implements TicTacToeVie
     private String username;
     private int myPlayerNumber;
     private boolean isMyTurn = false;
-    private ServerConnectionManager connectionManager;
+    private ChatServiceConnection chatService;
     private boolean opponentRequestedReset = false;
     private int initialPlayer = 1;
+    private GameSession session;
+
+    // Offline games against TicTacToeSolver; no server traffic and no stats.
+    private boolean vsComputer;
+    private ExecutorService computerExecutor;
+    private int computerGeneration = 0;
 
     private Handler handler = new Handler(Looper.getMainLooper());
 
-    private final BroadcastReceiver moveReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String message = intent.getStringExtra("message");
-            Log.d(TAG, "moveReceiver received message: " + message);
-
-            if (message != null) {
-                if (message.startsWith("MOVE:")) {
-                    String[] parts = message.split(":");
-                    if (parts.length == 5 && parts[1].equals(gameId)) {
-                        try {
-                            int row = Integer.parseInt(parts[2]);
-                            int col = Integer.parseInt(parts[3]);
-                            int player = Integer.parseInt(parts[4]);
-
-                            handler.post(() -> {
-                                if (ticTacToeView.markCell(row, col, player)) {
-                                    checkGameEndConditions(player);
-                                    isMyTurn = (player != myPlayerNumber);
-                                    updateTurnDisplay();
-                                }
-                            });
-                        } catch (NumberFormatException e) {
-                            Log.e(TAG, "Error parsing move", e);
-                        }
-                    }
-                } else if (message.startsWith("RESET_GAME_CONFIRMED:")) {
-                    handleResetConfirmed(intent);
-                } else if (message.startsWith("EXIT_TICTACTOE:")) {
-                    String[] parts = message.split(":");
-                    if (parts.length == 2 && parts[1].equals(gameId)) {
-                        Toast.makeText(TicTacToeActivity.this, "The opponent has left the game.", Toast.LENGTH_LONG).show();
-                        finish();
-                    }
+    private final List<MessageBus.Subscription> subscriptions = new ArrayList<>();
+
+    private void subscribeToGame() {
+        unsubscribeFromGame();
+        chatService.whenConnected(service -> {
+            subscriptions.add(service.subscribe(ChatMessage.Type.MOVE, gameId, MessageBus.ThreadMode.MAIN, message -> {
+                if (!session.receive(message, this::handleMove)) {
+                    service.requestResync(session);
                 }
-            }
+            }));
+            subscriptions.add(service.subscribe(ChatMessage.Type.RESET, gameId, MessageBus.ThreadMode.MAIN, message -> {
+                if (message.getResetPhase() == ChatMessage.ResetPhase.CONFIRMED) {
+                    handleResetConfirmed(message);
+                }
+            }));
+            subscriptions.add(service.subscribe(ChatMessage.Type.EXIT, gameId, MessageBus.ThreadMode.MAIN, message -> {
+                Toast.makeText(TicTacToeActivity.this, "The opponent has left the game.", Toast.LENGTH_LONG).show();
+                finish();
+            }));
+        });
+    }
+
+    private void unsubscribeFromGame() {
+        for (MessageBus.Subscription subscription : subscriptions) {
+            subscription.cancel();
+        }
+        subscriptions.clear();
+    }
+
+    private void handleMove(ChatMessage message) {
+        Log.d(TAG, "Received move: " + message);
+        applyOpponentMove(message.getRow(), message.getCol(), message.getPlayer());
+    }
+
+    private void applyOpponentMove(int row, int col, int player) {
+        if (ticTacToeView.markCell(row, col, player)) {
+            checkGameEndConditions(player);
+            isMyTurn = (player != myPlayerNumber);
+            updateTurnDisplay();
         }
-    };
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -100,10 +100,19 @@ public class TicTacToeActivity extends AppCompatActivity implements TicTacToeVie
         ticTacToeView.setOnGameEventListener(this);
 
         Intent intent = getIntent();
+        board = new TicTacToeBoard(intent.getIntExtra("BOARD_SIZE", 3), intent.getIntExtra("WIN_LENGTH", 3));
+        ticTacToeView.setBoard(board);
         gameId = intent.getStringExtra("GAME_ID");
         player1Username = intent.getStringExtra("PLAYER1");
         player2Username = intent.getStringExtra("PLAYER2");
         username = intent.getStringExtra("USERNAME");
+        vsComputer = intent.getBooleanExtra("VS_COMPUTER", false);
+        if (vsComputer) {
+            player1Username = username;
+            player2Username = "Computer";
+            computerExecutor = Executors.newSingleThreadExecutor();
+            TicTacToeSolver.getInstance().warmUp();
+        }
 
         if (username != null) {
             myPlayerNumber = username.equals(player1Username) ? 1 : 2;
@@ -115,16 +124,19 @@ public class TicTacToeActivity extends AppCompatActivity implements TicTacToeVie
             return;
         }
 
-        connectionManager = ServerConnectionManager.getInstance(username);
-
-        IntentFilter moveFilter = new IntentFilter();
-        moveFilter.addAction("tictactoe_move");
-        moveFilter.addAction("chat_message");
+        if (!vsComputer) {
+            chatService = new ChatServiceConnection(this, username);
+            chatService.bind();
+            session = new GameSession(ChatMessage.Game.TIC_TAC_TOE, gameId);
+            chatService.whenConnected(service -> service.registerGameSession(session));
 
-        LocalBroadcastManager.getInstance(this).registerReceiver(moveReceiver, moveFilter);
+            subscribeToGame();
+        }
 
         resetButton.setOnClickListener(v -> {
-            if (opponentRequestedReset) {
+            if (vsComputer) {
+                resetComputerGame();
+            } else if (opponentRequestedReset) {
                 sendMessage("RESET_GAME_REQUEST:" + gameId);
                 opponentRequestedReset = false;
             } else {
@@ -144,20 +156,51 @@ public class TicTacToeActivity extends AppCompatActivity implements TicTacToeVie
         if (isMyTurn && TextUtils.isEmpty(gameResultTextView.getText())) {
             boolean marked = ticTacToeView.markCell(row, col, myPlayerNumber);
             if (marked) {
-                String moveMessage = "MOVE:" + gameId + ":" + row + ":" + col + ":" + myPlayerNumber;
-                sendMessage(moveMessage);
+                if (!vsComputer) {
+                    sendMessage(session.nextMove(row, col, myPlayerNumber));
+                }
                 checkGameEndConditions(myPlayerNumber);
                 isMyTurn = false;
                 updateTurnDisplay();
+                if (vsComputer && board.getWinner() == 0 && !board.isFull()) {
+                    requestComputerMove();
+                }
             }
         }
     }
 
+    private void requestComputerMove() {
+        int generation = computerGeneration;
+        int computerPlayer = 3 - myPlayerNumber;
+        computerExecutor.execute(() -> {
+            int cell = TicTacToeSolver.getInstance().chooseMove(board, computerPlayer);
+            handler.post(() -> {
+                if (generation != computerGeneration || isFinishing() || cell < 0) {
+                    return;
+                }
+                applyOpponentMove(cell / board.getSize(), cell % board.getSize(), computerPlayer);
+            });
+        });
+    }
+
+    private void resetComputerGame() {
+        computerGeneration++;
+        ticTacToeView.resetBoard();
+        gameResultTextView.setText("");
+        initialPlayer = (initialPlayer == 1) ? 2 : 1;
+        isMyTurn = (myPlayerNumber == initialPlayer);
+        updateTurnDisplay();
+        if (!isMyTurn) {
+            requestComputerMove();
+        }
+    }
+
     @Override
     public void onGameWon(int player) {
         handler.post(() -> {
             if (TextUtils.isEmpty(gameResultTextView.getText())) {
-                String resultText = player == myPlayerNumber ? "You Win!" : "Opponent Wins!";
+                String resultText = player == myPlayerNumber ? "You Win!"
+                        : vsComputer ? "Computer Wins!" : "Opponent Wins!";
                 gameResultTextView.setText(resultText);
                 sendMessage("GAME_OVER:" + gameId + ":" + player);
                 isMyTurn = false;
@@ -187,67 +230,23 @@ public class TicTacToeActivity extends AppCompatActivity implements TicTacToeVie
     }
 
     private void updateStats(String gameType, String result) {
-        StringRequest stringRequest = new StringRequest(Request.Method.POST, "http://51.21.214.199/update_stats.php",
-                response -> {
-                    try {
-                        JSONObject jsonResponse = new JSONObject(response);
-                        if (jsonResponse.getBoolean("success")) {
-                            Log.d(TAG, "Stats updated successfully");
-                        }
-                    } catch (JSONException e) {
-                        Log.e(TAG, "Error parsing stats update response", e);
-                    }
-                },
-                error -> Log.e(TAG, "Error updating stats", error)) {
-            @Override
-            protected Map<String, String> getParams() {
-                Map<String, String> params = new HashMap<>();
-                params.put("username", username);
-                params.put("game_type", gameType);
-                params.put("result", result);
-                return params;
-            }
-        };
-
-        RequestQueue requestQueue = Volley.newRequestQueue(this);
-        requestQueue.add(stringRequest);
+        if (vsComputer) {
+            return;
+        }
+        StatsOutbox.getInstance(this).record(username, gameType, result);
     }
 
     private void checkGameEndConditions(int lastPlayer) {
-        int[][] board = ticTacToeView.getBoardState();
-
-        if (checkWin(board, lastPlayer)) {
+        if (board.isWin(lastPlayer)) {
             onGameWon(lastPlayer);
-        } else if (isBoardFull(board)) {
+        } else if (board.isFull()) {
             onGameDraw();
         }
     }
 
-    private boolean checkWin(int[][] board, int player) {
-        for (int i = 0; i < 3; i++) {
-            if (board[i][0] == player && board[i][1] == player && board[i][2] == player) return true;
-        }
-        for (int j = 0; j < 3; j++) {
-            if (board[0][j] == player && board[1][j] == player && board[2][j] == player) return true;
-        }
-        if (board[0][0] == player && board[1][1] == player && board[2][2] == player) return true;
-        if (board[0][2] == player && board[1][1] == player && board[2][0] == player) return true;
-
-        return false;
-    }
-
-    private boolean isBoardFull(int[][] board) {
-        for (int[] row : board) {
-            for (int cell : row) {
-                if (cell == 0) return false;
-            }
-        }
-        return true;
-    }
-
     private void sendMessage(String message) {
-        if (connectionManager != null) {
-            connectionManager.sendMessage(message);
+        if (chatService != null) {
+            chatService.sendMessage(message);
         }
     }
 
@@ -264,26 +263,29 @@ public class TicTacToeActivity extends AppCompatActivity implements TicTacToeVie
         });
     }
 
-    private void handleResetConfirmed(Intent intent) {
-        String message = intent.getStringExtra("message");
-        if (message != null && message.startsWith("RESET_GAME_CONFIRMED:")) {
-            String[] parts = message.split(":");
-            if (parts.length >= 2) {
-                gameId = parts[1];
-                ticTacToeView.resetBoard();
-                gameResultTextView.setText("");
-                opponentRequestedReset = false;
-                initialPlayer = (initialPlayer == 1) ? 2 : 1;
-                isMyTurn = (myPlayerNumber == initialPlayer);
-                updateTurnDisplay();
-                Toast.makeText(this, "Game reset! " + (isMyTurn ? "Your turn" : "Opponent's turn"), Toast.LENGTH_SHORT).show();
-            }
-        }
+    private void handleResetConfirmed(ChatMessage message) {
+        // RESET is subscribed under gameId and the server confirms with the same id.
+        session.reset(gameId);
+        ticTacToeView.resetBoard();
+        gameResultTextView.setText("");
+        opponentRequestedReset = false;
+        initialPlayer = (initialPlayer == 1) ? 2 : 1;
+        isMyTurn = (myPlayerNumber == initialPlayer);
+        updateTurnDisplay();
+        Toast.makeText(this, "Game reset! " + (isMyTurn ? "Your turn" : "Opponent's turn"), Toast.LENGTH_SHORT).show();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(moveReceiver);
+        unsubscribeFromGame();
+        if (chatService != null) {
+            chatService.whenConnected(service -> service.unregisterGameSession(session));
+            chatService.unbind();
+        }
+        if (computerExecutor != null) {
+            computerGeneration++;
+            computerExecutor.shutdownNow();
+        }
     }
 }
\ No newline at end of file
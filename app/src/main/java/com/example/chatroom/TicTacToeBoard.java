@@ -0,0 +1,154 @@
+package com.example.chatroom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * N x N tic-tac-toe position with a k-in-a-row win condition, one bitmask per player with cell
+ * {@code row * N + col} at bit {@code row * N + col}. Every winning line is precomputed as a mask
+ * once per (N, k) and indexed by the cells it covers, so a move only tests the lines through it.
+ */
+public class TicTacToeBoard {
+
+    public static final int MAX_SIZE = 8;
+
+    private static final Map<Integer, Lines> LINES = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int winLength;
+    private final Lines lines;
+    private final long[] stones = new long[2];
+    private int moveCount = 0;
+    private int winner = 0;
+
+    static final class Lines {
+        final long[] masks;
+        final int[][] byCell;
+
+        Lines(int size, int winLength) {
+            List<Long> all = new ArrayList<>();
+            int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+            for (int[] d : directions) {
+                for (int row = 0; row < size; row++) {
+                    for (int col = 0; col < size; col++) {
+                        int endRow = row + d[0] * (winLength - 1);
+                        int endCol = col + d[1] * (winLength - 1);
+                        if (endRow >= size || endCol < 0 || endCol >= size) {
+                            continue;
+                        }
+                        long mask = 0;
+                        for (int i = 0; i < winLength; i++) {
+                            mask |= 1L << ((row + d[0] * i) * size + col + d[1] * i);
+                        }
+                        all.add(mask);
+                    }
+                }
+            }
+            masks = new long[all.size()];
+            for (int i = 0; i < masks.length; i++) {
+                masks[i] = all.get(i);
+            }
+            byCell = new int[size * size][];
+            for (int cell = 0; cell < byCell.length; cell++) {
+                int count = 0;
+                for (long mask : masks) {
+                    if ((mask & (1L << cell)) != 0) count++;
+                }
+                byCell[cell] = new int[count];
+                count = 0;
+                for (int i = 0; i < masks.length; i++) {
+                    if ((masks[i] & (1L << cell)) != 0) byCell[cell][count++] = i;
+                }
+            }
+        }
+    }
+
+    public TicTacToeBoard() {
+        this(3, 3);
+    }
+
+    public TicTacToeBoard(int size, int winLength) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Board size must be between 1 and " + MAX_SIZE + ": " + size);
+        }
+        if (winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("Win length must be between 1 and " + size + ": " + winLength);
+        }
+        this.size = size;
+        this.winLength = winLength;
+        this.lines = LINES.computeIfAbsent(size * (MAX_SIZE + 1) + winLength, key -> new Lines(size, winLength));
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public int get(int row, int col) {
+        long bit = 1L << (row * size + col);
+        if ((stones[0] & bit) != 0) {
+            return 1;
+        }
+        return (stones[1] & bit) != 0 ? 2 : 0;
+    }
+
+    public boolean isEmpty(int row, int col) {
+        return row >= 0 && row < size && col >= 0 && col < size
+                && ((stones[0] | stones[1]) & (1L << (row * size + col))) == 0;
+    }
+
+    public boolean place(int row, int col, int player) {
+        if (player < 1 || player > 2 || winner != 0 || !isEmpty(row, col)) {
+            return false;
+        }
+        int cell = row * size + col;
+        long own = stones[player - 1] | (1L << cell);
+        stones[player - 1] = own;
+        moveCount++;
+        for (int line : lines.byCell[cell]) {
+            long mask = lines.masks[line];
+            if ((own & mask) == mask) {
+                winner = player;
+                break;
+            }
+        }
+        return true;
+    }
+
+    public boolean isWin(int player) {
+        return winner == player;
+    }
+
+    /** 1 or 2 once a player has completed a line, otherwise 0. */
+    public int getWinner() {
+        return winner;
+    }
+
+    public boolean isFull() {
+        return moveCount == size * size;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    long stones(int player) {
+        return stones[player - 1];
+    }
+
+    Lines lines() {
+        return lines;
+    }
+
+    public void reset() {
+        stones[0] = 0;
+        stones[1] = 0;
+        moveCount = 0;
+        winner = 0;
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.chatroom;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tic Tac Toe opponent. On 3x3 it answers from a table holding the perfect-play move of every
+ * reachable position, built once on a background thread. Positions are stored relative to the
+ * side to move (1 = own mark, 2 = opponent's mark, base 3) and only in their smallest form under
+ * the 8 board symmetries, which leaves a 19683-byte array per field to keep resident. Larger
+ * boards fall back to a memoized alpha-beta search limited in depth and time.
+ */
+public class TicTacToeSolver {
+
+    private static final String TAG = "TicTacToeSolver";
+
+    private static final int CELLS_3X3 = 9;
+    private static final int STATES_3X3 = 19683;
+    private static final int[][] SYMMETRIES = symmetries();
+    private static final int[][] INVERSE_SYMMETRIES = inverse(SYMMETRIES);
+
+    private static final int WIN_SCORE = 1_000_000;
+    private static final long SEARCH_BUDGET_MS = 400;
+    private static final int MAX_SEARCH_DEPTH = 10;
+
+    private static TicTacToeSolver instance;
+
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, TAG);
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<Table> table;
+    private Search search;
+
+    private static final class Table {
+        // Indexed by canonical code; move is in the canonical frame, -1 for positions never reached.
+        final byte[] moves = new byte[STATES_3X3];
+        final byte[] scores = new byte[STATES_3X3];
+        final long[] lineMasks = new TicTacToeBoard(3, 3).lines().masks;
+    }
+
+    public static synchronized TicTacToeSolver getInstance() {
+        if (instance == null) {
+            instance = new TicTacToeSolver();
+        }
+        return instance;
+    }
+
+    /** Starts building the 3x3 table in the background if that has not happened yet. */
+    public synchronized void warmUp() {
+        if (table == null) {
+            table = builder.submit(TicTacToeSolver::buildTable);
+        }
+    }
+
+    /** Cell ({@code row * size + col}) for {@code player} to mark next, or -1 if the board is full. Blocking. */
+    public int chooseMove(TicTacToeBoard board, int player) {
+        long mine = board.stones(player);
+        long theirs = board.stones(3 - player);
+        if (board.getSize() == 3 && board.getWinLength() == 3) {
+            return lookup(awaitTable(), (int) mine, (int) theirs);
+        }
+        synchronized (this) {
+            // The memo stays valid across moves of the same board shape, so the search is kept.
+            if (search == null || search.linesByCell != board.lines().byCell) {
+                search = new Search(board);
+            }
+            return search.chooseMove(mine, theirs);
+        }
+    }
+
+    private Table awaitTable() {
+        warmUp();
+        try {
+            return table.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the Tic Tac Toe table", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not build the Tic Tac Toe table", e.getCause());
+        }
+    }
+
+    private static Table buildTable() {
+        long start = System.nanoTime();
+        Table table = new Table();
+        Arrays.fill(table.moves, (byte) -1);
+        solve(table, 0, 0);
+        int stored = 0;
+        for (byte move : table.moves) {
+            if (move >= 0) stored++;
+        }
+        Log.d(TAG, "Built table with " + stored + " canonical positions in "
+                + (System.nanoTime() - start) / 1_000 + "us");
+        return table;
+    }
+
+    /** Perfect-play score for the side to move: positive wins, sooner wins score higher. */
+    private static int solve(Table table, int mine, int theirs) {
+        int[] transform = new int[1];
+        int canonical = canonicalCode(mine, theirs, transform);
+        if (table.moves[canonical] >= 0) {
+            return table.scores[canonical];
+        }
+        int empty = ~(mine | theirs) & ((1 << CELLS_3X3) - 1);
+        int marks = Integer.bitCount(mine | theirs);
+        int bestScore = Integer.MIN_VALUE;
+        int bestCell = -1;
+        for (int cell = 0; cell < CELLS_3X3; cell++) {
+            if ((empty & (1 << cell)) == 0) {
+                continue;
+            }
+            int next = mine | (1 << cell);
+            int score;
+            if (completesLine(table.lineMasks, next)) {
+                score = CELLS_3X3 + 1 - marks;
+            } else if (marks + 1 == CELLS_3X3) {
+                score = 0;
+            } else {
+                score = -solve(table, theirs, next);
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestCell = cell;
+            }
+        }
+        table.moves[canonical] = (byte) SYMMETRIES[transform[0]][bestCell];
+        table.scores[canonical] = (byte) bestScore;
+        return bestScore;
+    }
+
+    private static int lookup(Table table, int mine, int theirs) {
+        if (Integer.bitCount(mine | theirs) == CELLS_3X3) {
+            return -1;
+        }
+        int[] transform = new int[1];
+        int canonical = canonicalCode(mine, theirs, transform);
+        if (table.moves[canonical] < 0) {
+            // Only positions that already contain a line are missing, and those are not played on.
+            return Integer.numberOfTrailingZeros(~(mine | theirs));
+        }
+        return INVERSE_SYMMETRIES[transform[0]][table.moves[canonical]];
+    }
+
+    private static boolean completesLine(long[] lineMasks, long stones) {
+        for (long mask : lineMasks) {
+            if ((stones & mask) == mask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Smallest base-3 code of the position under all symmetries; stores the winning transform. */
+    private static int canonicalCode(int mine, int theirs, int[] transformOut) {
+        int best = Integer.MAX_VALUE;
+        for (int t = 0; t < SYMMETRIES.length; t++) {
+            int code = 0;
+            for (int cell = CELLS_3X3 - 1; cell >= 0; cell--) {
+                int source = INVERSE_SYMMETRIES[t][cell];
+                int value = (mine & (1 << source)) != 0 ? 1 : (theirs & (1 << source)) != 0 ? 2 : 0;
+                code = code * 3 + value;
+            }
+            if (code < best) {
+                best = code;
+                if (transformOut != null) {
+                    transformOut[0] = t;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** SYMMETRIES[t][cell] is where {@code cell} lands under transform t. */
+    private static int[][] symmetries() {
+        int[][] result = new int[8][CELLS_3X3];
+        for (int cell = 0; cell < CELLS_3X3; cell++) {
+            int r = cell / 3;
+            int c = cell % 3;
+            int[][] images = {
+                    {r, c}, {c, 2 - r}, {2 - r, 2 - c}, {2 - c, r},
+                    {r, 2 - c}, {2 - r, c}, {c, r}, {2 - c, 2 - r}
+            };
+            for (int t = 0; t < images.length; t++) {
+                result[t][cell] = images[t][0] * 3 + images[t][1];
+            }
+        }
+        return result;
+    }
+
+    private static int[][] inverse(int[][] maps) {
+        int[][] result = new int[maps.length][CELLS_3X3];
+        for (int t = 0; t < maps.length; t++) {
+            for (int cell = 0; cell < CELLS_3X3; cell++) {
+                result[t][maps[t][cell]] = cell;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Depth-limited negamax with alpha-beta and a position memo for boards beyond 3x3. Leaves are
+     * scored by open lines: lines still free of the opponent count for a player, weighted by how
+     * many of the player's marks they already hold.
+     */
+    private static final class Search {
+        private static final int MEMO_SIZE = 1 << 16;
+        private static final int EXACT = 0;
+        private static final int LOWER = 1;
+        private static final int UPPER = 2;
+
+        private final int cells;
+        private final long[] lineMasks;
+        private final int[][] linesByCell;
+        private final int[] cellOrder;
+        private final long[] memoMine = new long[MEMO_SIZE];
+        private final long[] memoTheirs = new long[MEMO_SIZE];
+        private final int[] memoScore = new int[MEMO_SIZE];
+        private final int[] memoInfo = new int[MEMO_SIZE];
+        private long deadline;
+        private boolean stopped;
+        private long nodes;
+
+        Search(TicTacToeBoard board) {
+            TicTacToeBoard.Lines lines = board.lines();
+            cells = board.getSize() * board.getSize();
+            lineMasks = lines.masks;
+            linesByCell = lines.byCell;
+            // Cells on more lines are tried first; the centre of the board tends to come out on top.
+            Integer[] order = new Integer[cells];
+            for (int i = 0; i < cells; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> linesByCell[b].length - linesByCell[a].length);
+            cellOrder = new int[cells];
+            for (int i = 0; i < cells; i++) cellOrder[i] = order[i];
+        }
+
+        int chooseMove(long mine, long theirs) {
+            long start = System.nanoTime();
+            deadline = start + SEARCH_BUDGET_MS * 1_000_000L;
+            stopped = false;
+            nodes = 0;
+            long empty = ~(mine | theirs) & (cells == 64 ? -1L : (1L << cells) - 1);
+            if (empty == 0) {
+                return -1;
+            }
+            int bestCell = Long.numberOfTrailingZeros(empty);
+            for (int i = 0; i < cells; i++) {
+                if ((empty & (1L << cellOrder[i])) != 0) {
+                    bestCell = cellOrder[i];
+                    break;
+                }
+            }
+            int remaining = Long.bitCount(empty);
+            int depth;
+            for (depth = 1; depth <= Math.min(MAX_SEARCH_DEPTH, remaining); depth++) {
+                int iterationBest = -1;
+                int alpha = -WIN_SCORE - 1;
+                for (int i = -1; i < cells; i++) {
+                    int cell = i < 0 ? bestCell : cellOrder[i];
+                    if ((i >= 0 && cell == bestCell) || (empty & (1L << cell)) == 0) {
+                        continue;
+                    }
+                    int score = scoreMove(mine, theirs, cell, depth, alpha, WIN_SCORE + 1);
+                    if (stopped) {
+                        break;
+                    }
+                    if (score > alpha) {
+                        alpha = score;
+                        iterationBest = cell;
+                    }
+                }
+                if (stopped) {
+                    break;
+                }
+                bestCell = iterationBest;
+                if (Math.abs(alpha) >= WIN_SCORE - cells) {
+                    break;
+                }
+            }
+            Log.d(TAG, "Searched " + nodes + " nodes to depth " + (depth - 1) + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + "ms");
+            return bestCell;
+        }
+
+        private int scoreMove(long mine, long theirs, int cell, int depth, int alpha, int beta) {
+            long next = mine | (1L << cell);
+            if (wins(next, cell)) {
+                return WIN_SCORE - Long.bitCount(mine | theirs);
+            }
+            if (Long.bitCount(next | theirs) == cells) {
+                return 0;
+            }
+            return -negamax(theirs, next, depth - 1, -beta, -alpha);
+        }
+
+        private int negamax(long mine, long theirs, int depth, int alpha, int beta) {
+            if ((++nodes & 1023) == 0 && System.nanoTime() > deadline) {
+                stopped = true;
+            }
+            if (stopped) {
+                return 0;
+            }
+            if (depth == 0) {
+                return evaluate(mine, theirs);
+            }
+            int slot = (int) ((mine * 0x9E3779B97F4A7C15L + theirs) >>> 48) & (MEMO_SIZE - 1);
+            if (memoMine[slot] == mine && memoTheirs[slot] == theirs && (memoInfo[slot] >> 2) >= depth) {
+                int score = memoScore[slot];
+                int flag = memoInfo[slot] & 3;
+                if (flag == EXACT
+                        || (flag == LOWER && score >= beta)
+                        || (flag == UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+            int originalAlpha = alpha;
+            int best = -WIN_SCORE - 1;
+            long occupied = mine | theirs;
+            for (int i = 0; i < cells && best < beta; i++) {
+                int cell = cellOrder[i];
+                if ((occupied & (1L << cell)) != 0) {
+                    continue;
+                }
+                int score = scoreMove(mine, theirs, cell, depth, alpha, beta);
+                if (stopped) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    alpha = Math.max(alpha, score);
+                }
+            }
+            memoMine[slot] = mine;
+            memoTheirs[slot] = theirs;
+            memoScore[slot] = best;
+            int flag = best <= originalAlpha ? UPPER : best >= beta ? LOWER : EXACT;
+            memoInfo[slot] = (depth << 2) | flag;
+            return best;
+        }
+
+        private boolean wins(long stones, int cell) {
+            for (int line : linesByCell[cell]) {
+                long mask = lineMasks[line];
+                if ((stones & mask) == mask) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int evaluate(long mine, long theirs) {
+            int score = 0;
+            for (long mask : lineMasks) {
+                if ((theirs & mask) == 0) {
+                    score += 1 << (2 * Long.bitCount(mine & mask));
+                } else if ((mine & mask) == 0) {
+                    score -= 1 << (2 * Long.bitCount(theirs & mask));
+                }
+            }
+            return score;
+        }
+    }
+}
@@ -14,8 +14,8 @@ public class TicTacToeView extends View {
     private static final int GRID_LINE_WIDTH = 6;
     private static final float MARK_SIZE_PERCENTAGE = 0.25f;
 
-    private int boardSize = 3;
-    private int[][] board;
+    private TicTacToeBoard board = new TicTacToeBoard();
+    private int boardSize = board.getSize();
     private Paint gridPaint;
     private Paint oPaint;
     private Paint xPaint;
@@ -49,7 +49,6 @@ public class TicTacToeView extends View {
     }
 
     private void init() {
-        board = new int[boardSize][boardSize];
         gridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         gridPaint.setColor(Color.LTGRAY);
         gridPaint.setStyle(Paint.Style.STROKE);
@@ -86,13 +85,14 @@ public class TicTacToeView extends View {
 
         for (int i = 0; i < boardSize; i++) {
             for (int j = 0; j < boardSize; j++) {
-                if (board[i][j] == 1) {
+                int cell = board.get(i, j);
+                if (cell == 1) {
                     float centerX = j * cellSize + cellSize / 2f;
                     float centerY = i * cellSize + cellSize / 2f;
                     float offset = cellSize * MARK_SIZE_PERCENTAGE;
                     canvas.drawLine(centerX - offset, centerY - offset, centerX + offset, centerY + offset, xPaint);
                     canvas.drawLine(centerX + offset, centerY - offset, centerX - offset, centerY + offset, xPaint);
-                } else if (board[i][j] == 2) {
+                } else if (cell == 2) {
                     float centerX = j * cellSize + cellSize / 2f;
                     float centerY = i * cellSize + cellSize / 2f;
                     float radius = cellSize / 2f - cellSize * MARK_SIZE_PERCENTAGE;
@@ -108,9 +108,9 @@ public class TicTacToeView extends View {
             int x = (int) event.getX();
             int y = (int) event.getY();
 
-            int cellSize = getWidth() / boardSize;
-            int col = x / cellSize;
-            int row = y / cellSize;
+            float cellSize = getWidth() / (float) boardSize;
+            int col = (int) (x / cellSize);
+            int row = (int) (y / cellSize);
 
             if (row < boardSize && col < boardSize) {
                 if (gameEventListener != null) {
@@ -126,11 +126,10 @@ public class TicTacToeView extends View {
         Log.d("TicTacToeView", "markCell(" + row + ", " + col + ", " + player + ") called");
         Log.d("TicTacToeView", "  row = " + row + ", col = " + col + ", player = " + player);
         Log.d("TicTacToeView", "  boardSize = " + boardSize);
-        if (row < 0 || row >= boardSize || col < 0 || col >= boardSize || board[row][col] != 0) {
+        if (!board.place(row, col, player)) {
             Log.d("TicTacToeView", "  Invalid move or cell already occupied");
             return false;
         }
-        board[row][col] = player;
         Log.d("TicTacToeView", "  Board updated: board[" + row + "][" + col + "] = " + player);
         invalidate();
         Log.d("TicTacToeView", "  View invalidated");
@@ -138,20 +137,18 @@ public class TicTacToeView extends View {
     }
 
     public void resetBoard() {
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                board[i][j] = 0;
-            }
-        }
+        board.reset();
         invalidate();
     }
 
-    public int[][] getBoardState() {
-        int[][] currentState = new int[boardSize][boardSize];
-        for (int i = 0; i < boardSize; i++) {
-            System.arraycopy(board[i], 0, currentState[i], 0, boardSize);
-        }
-        return currentState;
+    public void setBoard(TicTacToeBoard board) {
+        this.board = board;
+        this.boardSize = board.getSize();
+        invalidate();
+    }
+
+    public TicTacToeBoard getBoard() {
+        return board;
     }
 
 }
\ No newline at end of file
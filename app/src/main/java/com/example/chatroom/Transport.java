@@ -0,0 +1,20 @@
+package com.example.chatroom;
+
+public interface Transport {
+
+    interface Callback {
+        void onConnected();
+
+        void onMessageReceived(ChatMessage message);
+
+        void onClosed(Exception cause);
+    }
+
+    void start(String host, int port, String handshake);
+
+    void onMessageQueued();
+
+    void closeAfterDrain();
+
+    void close();
+}
@@ -0,0 +1,21 @@
+package com.example.chatroom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface WireCodec {
+
+    interface Listener {
+        void onMessage(ChatMessage message);
+    }
+
+    byte[] encode(String message);
+
+    /**
+     * Encodes {@code message} straight into {@code out} if all of it fits in the remaining space.
+     * Returns false and leaves {@code out} untouched otherwise.
+     */
+    boolean encode(String message, ByteBuffer out);
+
+    boolean decodeNext(ByteBuffer in, Listener listener) throws IOException;
+}
@@ -0,0 +1,87 @@
+package com.example.chatroom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Per-connection framing state. Connections start on newline-terminated text. A server that
+ * understands binary frames sends {@code PROTOCOL_OFFER:BINARY:1}; the client answers with
+ * {@code PROTOCOL_ACCEPT:BINARY:1} and switches its outbound stream right after that line, and
+ * the server echoes the accept line as its last text line before switching its own stream.
+ * Servers that never offer keep talking text. The offer line may list further capabilities, such
+ * as {@code HEARTBEAT:1} for servers that answer {@code PING:<id>} with {@code PONG:<id>}, and
+ * {@code RESYNC:1} for servers that acknowledge sequenced moves and replay missed ones.
+ *
+ * <p>{@code LEADERBOARD:1} servers accept {@code SUBSCRIBE_LEADERBOARD:<k>} and push the top
+ * {@code k} players. A subscription starts with {@code LB_RESET:<version>}. Every later change
+ * comes as {@code LB_DELTA:<version>:<user>:<wins>} when a player enters the top {@code k} or
+ * changes wins, or as {@code LB_REMOVE:<version>:<user>} when a player drops out. The server
+ * sends these after each game over. Versions count up by one per line, so a client that sees a
+ * gap subscribes again for a fresh snapshot. {@code UNSUBSCRIBE_LEADERBOARD} stops the pushes.
+ */
+public class WireProtocol {
+
+    public static final String BINARY_V1 = "BINARY:1";
+    public static final String OFFER_PREFIX = "PROTOCOL_OFFER:";
+    public static final String HEARTBEAT_V1 = "HEARTBEAT:1";
+    public static final String RESYNC_V1 = "RESYNC:1";
+    public static final String LEADERBOARD_V1 = "LEADERBOARD:1";
+    public static final String ACCEPT = "PROTOCOL_ACCEPT:" + BINARY_V1;
+
+    private final TextCodec textCodec = new TextCodec();
+    private final BinaryFrameCodec binaryCodec = new BinaryFrameCodec();
+    private volatile boolean binaryOutbound = false;
+    private volatile boolean binaryInbound = false;
+
+    public static boolean isBinaryOffer(ChatMessage message) {
+        return offers(message, BINARY_V1);
+    }
+
+    public static boolean offers(ChatMessage message, String capability) {
+        String raw = message.getRaw();
+        return message.getType() == ChatMessage.Type.PROTOCOL && raw.startsWith(OFFER_PREFIX)
+                && raw.indexOf(capability, OFFER_PREFIX.length()) >= 0;
+    }
+
+    public boolean isBinary() {
+        return binaryInbound && binaryOutbound;
+    }
+
+    public byte[] encode(String message) {
+        if (binaryOutbound) {
+            return binaryCodec.encode(message);
+        }
+        byte[] encoded = textCodec.encode(message);
+        if (ACCEPT.equals(message)) {
+            binaryOutbound = true;
+        }
+        return encoded;
+    }
+
+    /** Like {@link #encode(String)}, but into {@code out}; false if the message does not fit. */
+    public boolean encode(String message, ByteBuffer out) {
+        if (binaryOutbound) {
+            return binaryCodec.encode(message, out);
+        }
+        if (!textCodec.encode(message, out)) {
+            return false;
+        }
+        if (ACCEPT.equals(message)) {
+            binaryOutbound = true;
+        }
+        return true;
+    }
+
+    public boolean decodeNext(ByteBuffer in, WireCodec.Listener listener) throws IOException {
+        if (binaryInbound) {
+            return binaryCodec.decodeNext(in, listener);
+        }
+        return textCodec.decodeNext(in, message -> {
+            if (message.getType() == ChatMessage.Type.PROTOCOL && ACCEPT.equals(message.getRaw())) {
+                binaryInbound = true;
+            } else {
+                listener.onMessage(message);
+            }
+        });
+    }
+}
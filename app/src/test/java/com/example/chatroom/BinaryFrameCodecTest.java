@@ -0,0 +1,191 @@
+package com.example.chatroom;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryFrameCodecTest {
+
+    private static List<ChatMessage> decode(byte[] bytes, int chunk) throws IOException {
+        BinaryFrameCodec codec = new BinaryFrameCodec();
+        List<ChatMessage> messages = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        for (int offset = 0; offset < bytes.length; offset += chunk) {
+            buffer.put(bytes, offset, Math.min(chunk, bytes.length - offset));
+            buffer.flip();
+            while (codec.decodeNext(buffer, messages::add)) {
+                // Drain every complete frame.
+            }
+            buffer.compact();
+        }
+        return messages;
+    }
+
+    private static ChatMessage roundTrip(String message) throws IOException {
+        List<ChatMessage> messages = decode(new BinaryFrameCodec().encode(message), 1);
+        assertEquals(1, messages.size());
+        return messages.get(0);
+    }
+
+    private static void assertRejected(byte[] frame) {
+        try {
+            decode(frame, frame.length);
+            fail("Expected the frame to be rejected");
+        } catch (IOException expected) {
+            // Rejected as it should be.
+        }
+    }
+
+    @Test
+    public void move_withAndWithoutSequence() throws IOException {
+        ChatMessage move = roundTrip("MOVE:123:2:1:1");
+        assertEquals(ChatMessage.Type.MOVE, move.getType());
+        assertEquals(ChatMessage.Game.TIC_TAC_TOE, move.getGame());
+        assertEquals("123", move.getGameId());
+        assertEquals(2, move.getRow());
+        assertEquals(1, move.getCol());
+        assertEquals(1, move.getPlayer());
+        assertEquals(-1, move.getSequence());
+        assertEquals("MOVE:123:2:1:1", move.getRaw());
+
+        ChatMessage sequenced = roundTrip("MOVE:123:2:1:1:99999");
+        assertEquals(99999, sequenced.getSequence());
+        assertEquals("MOVE:123:2:1:1:99999", sequenced.getRaw());
+    }
+
+    @Test
+    public void move4_withAndWithoutSequence() throws IOException {
+        ChatMessage move = roundTrip("MOVE4:5000000000:5:6:2");
+        assertEquals(ChatMessage.Game.FOUR_IN_A_ROW, move.getGame());
+        assertEquals("5000000000", move.getGameId());
+        assertEquals(-1, move.getSequence());
+        assertEquals("MOVE4:5000000000:5:6:2", move.getRaw());
+
+        assertEquals("MOVE4:7:0:0:1:0", roundTrip("MOVE4:7:0:0:1:0").getRaw());
+    }
+
+    @Test
+    public void gameOver_roundTrips() throws IOException {
+        ChatMessage over = roundTrip("GAME_OVER4:77:2");
+        assertEquals(ChatMessage.Type.GAME_OVER, over.getType());
+        assertEquals(2, over.getWinner());
+        assertEquals("GAME_OVER:77:0", roundTrip("GAME_OVER:77:0").getRaw());
+    }
+
+    @Test
+    public void leadingZeros_fallBackToText() throws IOException {
+        for (String message : new String[]{"MOVE:007:1:2:1", "MOVE:7:01:2:1", "GAME_OVER:0042:1"}) {
+            assertEquals(message, BinaryFrameCodec.TYPE_TEXT, new BinaryFrameCodec().encode(message)[0]);
+            assertEquals(message, roundTrip(message).getRaw());
+        }
+        // A lone zero is not a leading zero.
+        assertEquals(BinaryFrameCodec.TYPE_MOVE, new BinaryFrameCodec().encode("MOVE:0:0:0:1")[0]);
+    }
+
+    @Test
+    public void nonNumericOrOversizedFields_fallBackToText() throws IOException {
+        String[] messages = {"MOVE:abc:1:2:1", "MOVE:1:2:3", "MOVE:1:2:3:1:2:3", "MOVE:1:3000000000:0:1"};
+        for (String message : messages) {
+            assertEquals(message, BinaryFrameCodec.TYPE_TEXT, new BinaryFrameCodec().encode(message)[0]);
+        }
+        assertEquals(ChatMessage.Type.MALFORMED, roundTrip("MOVE:1:3000000000:0:1").getType());
+    }
+
+    @Test
+    public void chatText_keepsColonsAndNewlines() throws IOException {
+        String message = "CHAT:alice: a:b\nsecond line:";
+        ChatMessage chat = roundTrip(message);
+        assertEquals(ChatMessage.Type.CHAT, chat.getType());
+        assertEquals(message, chat.getRaw());
+    }
+
+    @Test
+    public void framesSplitAcrossReads() throws IOException {
+        BinaryFrameCodec codec = new BinaryFrameCodec();
+        String longChat = "CHAT:bob: " + "x".repeat(1000);
+        byte[] a = codec.encode("MOVE:1:2:3:1:4");
+        byte[] b = codec.encode(longChat);
+        byte[] c = codec.encode("GAME_OVER:1:1");
+        byte[] all = new byte[a.length + b.length + c.length];
+        System.arraycopy(a, 0, all, 0, a.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        System.arraycopy(c, 0, all, a.length + b.length, c.length);
+        for (int chunk : new int[]{1, 2, 3, 7, 500, all.length}) {
+            List<ChatMessage> messages = decode(all, chunk);
+            assertEquals(3, messages.size());
+            assertEquals("MOVE:1:2:3:1:4", messages.get(0).getRaw());
+            assertEquals(longChat, messages.get(1).getRaw());
+            assertEquals("GAME_OVER:1:1", messages.get(2).getRaw());
+        }
+    }
+
+    @Test
+    public void oversizedFrame_isRejected() {
+        byte[] header = new byte[8];
+        header[0] = BinaryFrameCodec.TYPE_TEXT;
+        int length = BinaryFrameCodec.writeVarint(header, 1, 64 * 1024 + 1);
+        byte[] frame = new byte[length];
+        System.arraycopy(header, 0, frame, 0, length);
+        assertRejected(frame);
+    }
+
+    @Test
+    public void maximumFrame_isAccepted() throws IOException {
+        String message = "x".repeat(64 * 1024);
+        List<ChatMessage> messages = decode(new BinaryFrameCodec().encode(message), 4096);
+        assertEquals(message, messages.get(0).getRaw());
+    }
+
+    @Test
+    public void malformedFrames_areRejected() {
+        // Length varint that never ends.
+        assertRejected(new byte[]{BinaryFrameCodec.TYPE_TEXT, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80});
+        // Unknown frame type.
+        assertRejected(new byte[]{0x7F, 1, 0});
+        // Move frame missing its player field.
+        assertRejected(new byte[]{BinaryFrameCodec.TYPE_MOVE, 3, 1, 2, 3});
+        // Move frame with a field after the sequence number.
+        assertRejected(new byte[]{BinaryFrameCodec.TYPE_MOVE, 6, 1, 2, 3, 1, 5, 9});
+    }
+
+    @Test
+    public void outOfRangeVarints_areRejected() {
+        // A row of 2^32 would turn negative when cast to int.
+        byte[] row = new byte[10];
+        int rowLength = BinaryFrameCodec.writeVarint(row, 0, 1L << 32);
+        byte[] frame = new byte[2 + 1 + rowLength + 2];
+        frame[0] = BinaryFrameCodec.TYPE_MOVE;
+        frame[1] = (byte) (1 + rowLength + 2);
+        frame[2] = 1;
+        System.arraycopy(row, 0, frame, 3, rowLength);
+        frame[3 + rowLength] = 0;
+        frame[4 + rowLength] = 1;
+        assertRejected(frame);
+
+        // A ten-byte game id that overflows into the sign bit.
+        byte[] gameOver = {BinaryFrameCodec.TYPE_GAME_OVER, 11,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01, 1};
+        assertRejected(gameOver);
+    }
+
+    @Test
+    public void varint_roundTripsBoundaries() throws IOException {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE};
+        for (long value : values) {
+            byte[] out = new byte[10];
+            int length = BinaryFrameCodec.writeVarint(out, 0, value);
+            assertEquals(length, BinaryFrameCodec.varintLength(value));
+            int[] cursor = {0};
+            assertEquals(value, BinaryFrameCodec.readVarint(out, cursor, length));
+            assertTrue(cursor[0] == length);
+        }
+    }
+}
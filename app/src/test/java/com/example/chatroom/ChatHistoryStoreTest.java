@@ -0,0 +1,81 @@
+package com.example.chatroom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChatHistoryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ChatHistoryStore open() throws IOException {
+        return new ChatHistoryStore(folder.getRoot(), "room", Runnable::run);
+    }
+
+    private static ChatHistoryStore.Page newestPage(ChatHistoryStore store, int limit) throws Exception {
+        CompletableFuture<ChatHistoryStore.Page> page = new CompletableFuture<>();
+        store.loadPage(Long.MAX_VALUE, limit, page::complete);
+        return page.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void appendedLines_surviveReopen() throws Exception {
+        ChatHistoryStore store = open();
+        for (String line : Arrays.asList("CHAT:a: one", "CHAT:b: two", "CHAT:a: three")) {
+            store.append(line);
+        }
+        assertEquals(Arrays.asList("CHAT:b: two", "CHAT:a: three"), newestPage(store, 2).lines);
+
+        ChatHistoryStore.Page page = newestPage(open(), 10);
+        assertEquals(0, page.firstIndex);
+        assertTrue(page.isOldest());
+        assertEquals(Arrays.asList("CHAT:a: one", "CHAT:b: two", "CHAT:a: three"), page.lines);
+    }
+
+    @Test
+    public void oversizedLine_isTruncatedOnACodePointBoundary() throws Exception {
+        ChatHistoryStore store = open();
+        store.append("😀".repeat(40_000));
+        List<String> lines = newestPage(store, 1).lines;
+        String line = lines.get(0);
+        assertEquals(1, lines.size());
+        assertTrue(line.length() < 40_000 * 2);
+        assertFalse(Character.isHighSurrogate(line.charAt(line.length() - 1)));
+        assertEquals("😀".repeat(line.length() / 2), line);
+    }
+
+    @Test
+    public void search_matchesMessageTextOnly() throws Exception {
+        ChatHistoryStore store = open();
+        store.append("CHAT:alice: see you at 10:30");
+        store.append("JOINED:bob");
+        store.append("CHAT:bob: hi alice");
+        CompletableFuture<List<ChatHistoryStore.SearchHit>> hits = new CompletableFuture<>();
+        store.search("alice", 10, hits::complete);
+        List<ChatHistoryStore.SearchHit> results = hits.get(10, TimeUnit.SECONDS);
+        assertEquals(1, results.size());
+        assertEquals("CHAT:bob: hi alice", results.get(0).line);
+
+        CompletableFuture<List<ChatHistoryStore.SearchHit>> commands = new CompletableFuture<>();
+        store.search("chat bob", 10, commands::complete);
+        assertTrue(commands.get(10, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    public void searchableText_dropsCommandAndSender() {
+        assertEquals(" a:b", ChatHistoryStore.searchableText("CHAT:alice: a:b"));
+        assertEquals("", ChatHistoryStore.searchableText("JOINED:alice"));
+        assertEquals("Welcome to the room", ChatHistoryStore.searchableText("Welcome to the room"));
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.chatroom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChatSearchIndexTest {
+
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "game", "games", "gambit", "x1"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file() {
+        return new File(folder.getRoot(), "room.sidx");
+    }
+
+    private File segments() {
+        return new File(folder.getRoot(), "room.sidx.seg");
+    }
+
+    @Test
+    public void tokenize_lowerCasesAndSplitsOnNonLetters() {
+        assertEquals(Arrays.asList("hello", "world", "r2d2", "ça"), ChatSearchIndex.tokenize("Hello, WORLD! r2d2 a ça"));
+        assertEquals(Arrays.asList("x".repeat(32)), ChatSearchIndex.tokenize("x".repeat(40)));
+        assertTrue(ChatSearchIndex.tokenize(" :: - ").isEmpty());
+    }
+
+    @Test
+    public void query_matchesAllTermsNewestFirst() {
+        ChatSearchIndex index = new ChatSearchIndex(file());
+        index.add(0, "good game");
+        index.add(1, "good luck");
+        index.add(2, "a game of chess");
+        index.add(3, "Good GAME again");
+        assertArrayEquals(new int[]{3, 0}, index.query("good game ", 10));
+        assertArrayEquals(new int[]{3}, index.query("good game ", 1));
+        assertArrayEquals(new int[0], index.query("chess luck ", 10));
+        assertArrayEquals(new int[0], index.query("missing ", 10));
+        assertArrayEquals(new int[0], index.query(" ", 10));
+    }
+
+    @Test
+    public void query_matchesLastTermAsPrefixWhileTyping() {
+        ChatSearchIndex index = new ChatSearchIndex(file());
+        index.add(0, "game on");
+        index.add(1, "games tonight");
+        index.add(2, "gambit declined");
+        index.add(3, "gamma rays");
+        assertArrayEquals(new int[]{3, 2, 1, 0}, index.query("ga", 10));
+        assertArrayEquals(new int[]{1, 0}, index.query("game", 10));
+        // A trailing separator ends the word, so only the exact term matches.
+        assertArrayEquals(new int[]{0}, index.query("game ", 10));
+        assertArrayEquals(new int[]{1}, index.query("tonight gam", 10));
+    }
+
+    @Test
+    public void saveAndLoad_roundTripsThroughSnapshotAndSegments() {
+        ChatSearchIndex index = new ChatSearchIndex(file());
+        Random random = new Random(3);
+        for (int line = 0; line < 5000; line++) {
+            index.add(line, randomLine(random));
+            index.saveIfDirty();
+        }
+        index.save();
+        assertTrue(segments().exists());
+
+        ChatSearchIndex loaded = new ChatSearchIndex(file());
+        loaded.load();
+        assertEquals(5000, loaded.getIndexedUpTo());
+        assertSameResults(index, loaded);
+    }
+
+    @Test
+    public void save_appendsSegmentsUntilTheyOutgrowTheSnapshot() {
+        ChatSearchIndex index = new ChatSearchIndex(file());
+        Random random = new Random(5);
+        int line = 0;
+        for (; line < 256; line++) {
+            index.add(line, randomLine(random));
+        }
+        index.save();
+        long snapshot = file().length();
+        assertTrue(snapshot > 0);
+        assertEquals(0, segments().length());
+
+        long merges = 0;
+        long previousSnapshot = file().lastModified() + file().length();
+        for (int save = 0; save < 400; save++) {
+            for (int i = 0; i < 256; i++, line++) {
+                index.add(line, randomLine(random));
+            }
+            index.save();
+            long current = file().lastModified() + file().length();
+            if (current != previousSnapshot) {
+                merges++;
+                previousSnapshot = current;
+            }
+        }
+        // Merges only happen when the segments outgrow the snapshot, so they grow further apart.
+        assertTrue("merges=" + merges, merges > 0 && merges < 40);
+
+        ChatSearchIndex loaded = new ChatSearchIndex(file());
+        loaded.load();
+        assertEquals(line, loaded.getIndexedUpTo());
+        assertSameResults(index, loaded);
+    }
+
+    @Test
+    public void load_cutsOffATornSegment() throws IOException {
+        ChatSearchIndex index = new ChatSearchIndex(file());
+        index.add(0, "first message");
+        index.save();
+        index.add(1, "second message");
+        index.save();
+        long complete = segments().length();
+        index.add(2, "third message");
+        index.save();
+        try (RandomAccessFile torn = new RandomAccessFile(segments(), "rw")) {
+            torn.setLength(torn.length() - 3);
+        }
+
+        ChatSearchIndex loaded = new ChatSearchIndex(file());
+        loaded.load();
+        assertEquals(2, loaded.getIndexedUpTo());
+        assertEquals(complete, segments().length());
+        assertArrayEquals(new int[]{1, 0}, loaded.query("message ", 10));
+
+        // The lost line is indexed again, as the history store does from its log, and saved after the cut.
+        loaded.add(2, "third message");
+        loaded.save();
+        ChatSearchIndex reloaded = new ChatSearchIndex(file());
+        reloaded.load();
+        assertArrayEquals(new int[]{2, 1, 0}, reloaded.query("message ", 10));
+    }
+
+    @Test
+    public void load_discardsUnreadableSnapshot() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file())) {
+            out.write(new byte[]{1, 2, 3, 4, 5});
+        }
+        ChatSearchIndex index = new ChatSearchIndex(file());
+        index.load();
+        assertEquals(0, index.getIndexedUpTo());
+        index.add(0, "fresh start");
+        index.save();
+
+        ChatSearchIndex loaded = new ChatSearchIndex(file());
+        loaded.load();
+        assertArrayEquals(new int[]{0}, loaded.query("fresh", 10));
+    }
+
+    private static String randomLine(Random random) {
+        StringBuilder line = new StringBuilder();
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return line.toString();
+    }
+
+    private static void assertSameResults(ChatSearchIndex expected, ChatSearchIndex actual) {
+        for (String word : WORDS) {
+            assertArrayEquals(word, expected.query(word + " ", Integer.MAX_VALUE), actual.query(word + " ", Integer.MAX_VALUE));
+            assertArrayEquals(word, expected.query(word.substring(0, 2), Integer.MAX_VALUE),
+                    actual.query(word.substring(0, 2), Integer.MAX_VALUE));
+        }
+        assertArrayEquals(expected.query("alpha beta ", 100), actual.query("alpha beta ", 100));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.chatroom;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChatTimelineTest {
+
+    private static final int MAX = ChatTimeline.MAX_ITEMS;
+
+    // Row count as the RecyclerView would track it from the notifications alone.
+    private int notifiedSize = 0;
+
+    private final ChatTimeline timeline = new ChatTimeline(new ChatTimeline.Listener() {
+        @Override
+        public void onInserted(int start, int count) {
+            assertTrue(start >= 0 && start <= notifiedSize);
+            notifiedSize += count;
+        }
+
+        @Override
+        public void onRemoved(int start, int count) {
+            assertTrue(start >= 0 && start + count <= notifiedSize);
+            notifiedSize -= count;
+        }
+
+        @Override
+        public void onChanged(int position) {
+        }
+    });
+
+    private static List<String> lines(int from, int to) {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            lines.add("CHAT:a: " + i);
+        }
+        return lines;
+    }
+
+    @After
+    public void notificationsMatchTheRows() {
+        assertEquals(timeline.size(), notifiedSize);
+    }
+
+    private String text(int position) {
+        return timeline.get(position).getText();
+    }
+
+    @Test
+    public void liveAppends_dropTheOldestRows() {
+        timeline.addChats(lines(0, MAX));
+        timeline.addChats(lines(MAX, MAX + 10));
+        assertEquals(MAX, timeline.size());
+        assertEquals("CHAT:a: 10", text(0));
+        assertEquals(10, timeline.takeTrimmedChatLines());
+        assertTrue(timeline.isFollowingTail());
+    }
+
+    @Test
+    public void prependingPastTheCap_dropsTheNewestRows() {
+        timeline.addChats(lines(1000, 1000 + MAX));
+        timeline.prependChats(lines(900, 1000));
+        assertEquals(MAX, timeline.size());
+        assertEquals("CHAT:a: 900", text(0));
+        assertEquals("CHAT:a: " + (900 + MAX - 1), text(MAX - 1));
+        assertFalse(timeline.isFollowingTail());
+        assertEquals(0, timeline.takeTrimmedChatLines());
+    }
+
+    @Test
+    public void appendAfterPagingBack_keepsTheRowsBeingRead() {
+        timeline.addChats(lines(1000, 1000 + MAX));
+        timeline.prependChats(lines(900, 1000));
+        timeline.addChats(lines(5000, 5010));
+        assertEquals(MAX, timeline.size());
+        assertEquals("CHAT:a: 900", text(0));
+        assertEquals("CHAT:a: " + (900 + MAX - 1), text(MAX - 1));
+        assertEquals(10, timeline.getSkippedLiveChats());
+
+        timeline.putInvite(ChatMessage.Game.TIC_TAC_TOE, "7", "bob");
+        assertEquals(MAX, timeline.size());
+        assertEquals("CHAT:a: 900", text(0));
+        assertEquals(ChatTimelineItem.Kind.INVITE, timeline.get(MAX - 1).getKind());
+    }
+
+    @Test
+    public void pagingForwardToTheTail_followsLiveLinesAgain() {
+        timeline.addChats(lines(1000, 1000 + MAX));
+        timeline.prependChats(lines(900, 1000));
+        timeline.appendNewerChats(lines(900 + MAX, 1000 + MAX), true);
+        assertEquals(MAX, timeline.size());
+        assertEquals(100, timeline.takeTrimmedChatLines());
+        assertTrue(timeline.isFollowingTail());
+
+        timeline.addChats(lines(1000 + MAX, 1001 + MAX));
+        assertEquals("CHAT:a: " + (1000 + MAX), text(MAX - 1));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.chatroom;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectFourAITest {
+
+    // Deep enough for every position below, with a budget that a slow machine still completes.
+    private static final int DEPTH = 8;
+    private static final long BUDGET_MILLIS = 20_000;
+
+    private final ConnectFourAI ai = new ConnectFourAI(1 << 16, 2);
+
+    @After
+    public void shutdown() {
+        ai.shutdown();
+    }
+
+    private ConnectFourAI.Result search(String moves) {
+        ConnectFourBoard board = ConnectFourBenchmark.position(moves);
+        return ai.chooseMove(board, board.getMoveCount() % 2 == 0 ? 1 : 2, DEPTH, BUDGET_MILLIS);
+    }
+
+    private static void assertColumnIn(ConnectFourAI.Result result, int... columns) {
+        for (int column : columns) {
+            if (result.column == column) {
+                return;
+            }
+        }
+        throw new AssertionError("Unexpected column " + result.column + ": " + result);
+    }
+
+    @Test
+    public void takesImmediateWin() {
+        // Player 1 has 0, 1, 2 on the bottom row; player 2 stacked on them.
+        assertEquals(3, search("001122").column);
+    }
+
+    @Test
+    public void blocksImmediateLoss() {
+        // Player 1 threatens 3 on the bottom row; player 2 must take it.
+        assertEquals(3, search("06162").column);
+    }
+
+    @Test
+    public void findsForcedWin() {
+        // Player 1 holds 2 and 3 on the bottom row with 0, 1, 4 and 5 open: either 1 or 4 makes
+        // two threats at once.
+        ConnectFourAI.Result result = search("2636");
+        assertColumnIn(result, 1, 4);
+        assertTrue(result.toString(), result.score > 0 && result.depth > 0);
+        assertTrue(result.toString(), result.score >= ConnectFourAI.WIN_SCORE - 2 * 42);
+    }
+
+    @Test
+    public void blocksForcedLoss() {
+        // Player 1 holds 2 and 3 on the bottom row; unless player 2 takes 1 or 4 now, player 1
+        // makes a double threat next move.
+        ConnectFourAI.Result result = search("263");
+        assertColumnIn(result, 1, 4);
+        assertTrue(result.toString(), result.score > -(ConnectFourAI.WIN_SCORE - 2 * 42));
+    }
+
+    @Test
+    public void benchmarkPositions_areLegal() {
+        for (ConnectFourAI.Level level : ConnectFourAI.Level.values()) {
+            ConnectFourAI.Result result = ai.chooseMove(ConnectFourBenchmark.position("33322441560015"), 1,
+                    level.maxDepth, 50);
+            assertTrue(ConnectFourBenchmark.position("33322441560015").canPlay(result.column));
+        }
+    }
+}
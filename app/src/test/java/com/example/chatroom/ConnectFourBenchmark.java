@@ -0,0 +1,89 @@
+package com.example.chatroom;
+
+/**
+ * Search speed of {@link ConnectFourAI} on a fixed set of positions, reported as nodes per second
+ * for each difficulty level. Every search gets the same thread count and time budget so runs are
+ * comparable between changes. It runs on the host JVM from the unit-test classpath through the
+ * app's {@code benchmark} task.
+ *
+ * <p>Usage: {@code ConnectFourBenchmark [--threads N] [--budget-ms N] [--rounds N]}
+ */
+public final class ConnectFourBenchmark {
+
+    // Moves as column digits from the empty board: opening, early middle game, crowded middle game.
+    private static final String[] POSITIONS = {
+            "",
+            "3324",
+            "33224415",
+            "3332244156",
+            "33322441560015",
+    };
+
+    public static void main(String[] args) {
+        int threads = 4;
+        long budgetMillis = 1000;
+        int rounds = 3;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--budget-ms":
+                    budgetMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        System.out.printf("%d positions, %d threads, %d ms per search, %d rounds%n",
+                POSITIONS.length, threads, budgetMillis, rounds);
+
+        // Warm up so the JIT has compiled the search before we measure.
+        run(ConnectFourAI.Level.HARD, threads, budgetMillis, 1, false);
+        for (ConnectFourAI.Level level : ConnectFourAI.Level.values()) {
+            run(level, threads, budgetMillis, rounds, true);
+        }
+    }
+
+    private static void run(ConnectFourAI.Level level, int threads, long budgetMillis, int rounds, boolean report) {
+        long nodes = 0;
+        long nanos = 0;
+        int depths = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (String moves : POSITIONS) {
+                // A fresh searcher per position, so no search is helped by another's table.
+                ConnectFourAI ai = new ConnectFourAI(1 << 18, threads);
+                try {
+                    ConnectFourBoard board = position(moves);
+                    int player = board.getMoveCount() % 2 == 0 ? 1 : 2;
+                    ConnectFourAI.Result result = ai.chooseMove(board, player, level.maxDepth, budgetMillis);
+                    nodes += result.nodes;
+                    nanos += result.elapsedNanos;
+                    depths += result.depth;
+                } finally {
+                    ai.shutdown();
+                }
+            }
+        }
+        if (!report) {
+            return;
+        }
+        int searches = rounds * POSITIONS.length;
+        System.out.printf("%-6s %,14d nodes/s, mean depth %.1f, %,d ms per search%n", level,
+                nanos > 0 ? nodes * 1_000_000_000L / nanos : 0, depths / (double) searches,
+                nanos / searches / 1_000_000);
+    }
+
+    static ConnectFourBoard position(String moves) {
+        ConnectFourBoard board = new ConnectFourBoard();
+        for (int i = 0; i < moves.length(); i++) {
+            if (board.play(moves.charAt(i) - '0', 1 + i % 2) < 0) {
+                throw new IllegalArgumentException("Illegal move " + i + " in " + moves);
+            }
+        }
+        return board;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.chatroom;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectFourBoardTest {
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    /** Checks every cell and direction for four of {@code player}'s chips in a row. */
+    private static boolean bruteForceWin(int[][] cells, int player) {
+        for (int row = 0; row < ConnectFourBoard.ROWS; row++) {
+            for (int col = 0; col < ConnectFourBoard.COLS; col++) {
+                for (int[] direction : DIRECTIONS) {
+                    int count = 0;
+                    int r = row;
+                    int c = col;
+                    while (count < 4 && r >= 0 && r < ConnectFourBoard.ROWS && c >= 0 && c < ConnectFourBoard.COLS
+                            && cells[r][c] == player) {
+                        count++;
+                        r += direction[0];
+                        c += direction[1];
+                    }
+                    if (count == 4) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void winAndDraw_matchBruteForceScan() {
+        Random random = new Random(42);
+        int draws = 0;
+        for (int game = 0; game < 20000; game++) {
+            ConnectFourBoard board = new ConnectFourBoard();
+            int[][] cells = new int[ConnectFourBoard.ROWS][ConnectFourBoard.COLS];
+            int player = 1;
+            // Keep playing past a win so positions with several lines are covered too.
+            while (!board.isFull()) {
+                int col = random.nextInt(ConnectFourBoard.COLS);
+                if (!board.canPlay(col)) {
+                    continue;
+                }
+                int row = board.play(col, player);
+                cells[row][col] = player;
+                for (int p = 1; p <= 2; p++) {
+                    assertEquals(bruteForceWin(cells, p), board.isWin(p));
+                }
+                player = 3 - player;
+            }
+            if (!bruteForceWin(cells, 1) && !bruteForceWin(cells, 2)) {
+                draws++;
+            }
+            assertEquals(ConnectFourBoard.ROWS * ConnectFourBoard.COLS, board.getMoveCount());
+            for (int row = 0; row < ConnectFourBoard.ROWS; row++) {
+                for (int col = 0; col < ConnectFourBoard.COLS; col++) {
+                    assertEquals(cells[row][col], board.get(row, col));
+                }
+            }
+        }
+        assertTrue(draws > 0);
+    }
+
+    @Test
+    public void drawnBoard_isFullWithoutWinner() {
+        // Columns filled in pairs of alternating colours; no line of four anywhere.
+        int[] order = {0, 1, 0, 1, 1, 0, 1, 0, 0, 1, 0, 1,
+                2, 3, 2, 3, 3, 2, 3, 2, 2, 3, 2, 3,
+                4, 5, 4, 5, 5, 4, 5, 4, 4, 5, 4, 5,
+                6, 6, 6, 6, 6, 6};
+        ConnectFourBoard board = new ConnectFourBoard();
+        int player = 1;
+        for (int col : order) {
+            board.play(col, player);
+            player = 3 - player;
+        }
+        assertTrue(board.isFull());
+        assertFalse(board.isWin(1));
+        assertFalse(board.isWin(2));
+    }
+
+    @Test
+    public void fullColumn_rejectsMoves() {
+        ConnectFourBoard board = new ConnectFourBoard();
+        for (int i = 0; i < ConnectFourBoard.ROWS; i++) {
+            assertTrue(board.place(ConnectFourBoard.ROWS - 1 - i, 3, 1 + i % 2));
+        }
+        assertFalse(board.canPlay(3));
+        assertEquals(-1, board.nextRow(3));
+        assertEquals(-1, board.play(3, 1));
+        assertFalse(board.place(-1, 3, 1));
+        assertFalse(board.place(0, 3, 1));
+        assertEquals(ConnectFourBoard.ROWS, board.getMoveCount());
+    }
+
+    @Test
+    public void outOfRangeColumn_isRejected() {
+        ConnectFourBoard board = new ConnectFourBoard();
+        for (int col : new int[]{-1, ConnectFourBoard.COLS, Integer.MAX_VALUE}) {
+            assertFalse(board.canPlay(col));
+            assertEquals(-1, board.play(col, 1));
+            assertFalse(board.place(-1, col, 1));
+            assertFalse(board.place(ConnectFourBoard.ROWS - 1, col, 1));
+        }
+        assertEquals(0, board.getMoveCount());
+    }
+
+    @Test
+    public void place_acceptsOnlyTheLandingCell() {
+        ConnectFourBoard board = new ConnectFourBoard();
+        assertFalse(board.place(0, 2, 1));
+        assertFalse(board.place(ConnectFourBoard.ROWS - 1, 2, 3));
+        assertTrue(board.place(ConnectFourBoard.ROWS - 1, 2, 1));
+        assertEquals(1, board.get(ConnectFourBoard.ROWS - 1, 2));
+        assertEquals(ConnectFourBoard.ROWS - 2, board.nextRow(2));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.chatroom;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GameSessionTest {
+
+    private final List<Long> applied = new ArrayList<>();
+
+    private static ChatMessage move(long seq) {
+        return ChatMessage.move(ChatMessage.Game.TIC_TAC_TOE, "7", 0, 0, 1, seq);
+    }
+
+    private boolean receive(GameSession session, long seq) {
+        return session.receive(move(seq), move -> applied.add(move.getSequence()));
+    }
+
+    private static GameSession session(boolean resyncSupported) {
+        GameSession session = new GameSession(ChatMessage.Game.TIC_TAC_TOE, "7");
+        session.setResyncSupported(resyncSupported);
+        return session;
+    }
+
+    @Test
+    public void inOrderMoves_areApplied() {
+        GameSession session = session(true);
+        for (long seq = 1; seq <= 3; seq++) {
+            assertTrue(receive(session, seq));
+        }
+        assertEquals(Arrays.asList(1L, 2L, 3L), applied);
+        assertEquals(3, session.getLastApplied());
+        assertEquals("MOVE:7:1:1:1:4", session.nextMove(1, 1, 1));
+    }
+
+    @Test
+    public void duplicates_areDropped() {
+        GameSession session = session(true);
+        receive(session, 1);
+        receive(session, 2);
+        assertTrue(receive(session, 1));
+        assertTrue(receive(session, 2));
+        assertEquals(Arrays.asList(1L, 2L), applied);
+    }
+
+    @Test
+    public void gapWithResync_holdsMovesBackUntilFilled() {
+        GameSession session = session(true);
+        receive(session, 1);
+        assertFalse(receive(session, 3));
+        assertFalse(receive(session, 4));
+        assertEquals(Arrays.asList(1L), applied);
+        assertEquals(Arrays.asList("RESYNC:7:1"), session.resyncMessages());
+
+        assertTrue(receive(session, 2));
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), applied);
+    }
+
+    @Test
+    public void gapWithoutResync_appliesLaterMovesInOrder() {
+        GameSession session = session(false);
+        receive(session, 1);
+        assertTrue(receive(session, 3));
+        assertTrue(receive(session, 4));
+        assertTrue(receive(session, 2));
+        assertEquals(Arrays.asList(1L, 3L, 4L), applied);
+        assertEquals(4, session.getLastApplied());
+    }
+
+    @Test
+    public void losingResync_releasesHeldBackMoves() {
+        GameSession session = session(true);
+        receive(session, 1);
+        receive(session, 4);
+        receive(session, 3);
+        session.setResyncSupported(false);
+        assertTrue(receive(session, 5));
+        assertEquals(Arrays.asList(1L, 3L, 4L, 5L), applied);
+    }
+
+    @Test
+    public void unsequencedMoves_areAppliedAsTheyCome() {
+        GameSession session = session(true);
+        receive(session, -1);
+        receive(session, -1);
+        assertEquals(2, session.getLastApplied());
+        assertEquals(Arrays.asList(-1L, -1L), applied);
+    }
+
+    @Test
+    public void reset_startsTheNewRoundFromOne() {
+        GameSession session = session(true);
+        receive(session, 1);
+        receive(session, 3);
+        session.nextMove(0, 0, 1);
+        session.reset("8");
+        assertEquals("8", session.getGameId());
+        assertEquals(0, session.getLastApplied());
+        assertEquals(Arrays.asList("RESYNC:8:0"), session.resyncMessages());
+
+        applied.clear();
+        assertTrue(receive(session, 1));
+        assertEquals(Arrays.asList(1L), applied);
+    }
+
+    @Test
+    public void ownMoves_areResentUntilAcked() {
+        GameSession session = session(true);
+        String first = session.nextMove(0, 0, 1);
+        receive(session, 2);
+        String third = session.nextMove(1, 1, 1);
+        assertEquals(Arrays.asList("RESYNC:7:3", first, third), session.resyncMessages());
+        session.onAck(1);
+        assertEquals(Arrays.asList("RESYNC:7:3", third), session.resyncMessages());
+        session.onAck(3);
+        assertEquals(Arrays.asList("RESYNC:7:3"), session.resyncMessages());
+    }
+
+    @Test
+    public void ownMoves_areNotTrackedWithoutAcks() {
+        GameSession session = session(false);
+        for (int i = 0; i < 1000; i++) {
+            session.nextMove(0, 0, 1);
+        }
+        assertEquals(1, session.resyncMessages().size());
+    }
+
+    @Test
+    public void ownMoves_withoutResync_useTheFiveFieldForm() {
+        GameSession session = session(false);
+        assertEquals("MOVE:7:0:0:1", session.nextMove(0, 0, 1));
+        GameSession fourInARow = new GameSession(ChatMessage.Game.FOUR_IN_A_ROW, "9");
+        assertEquals("MOVE4:9:3:2:2", fourInARow.nextMove(3, 2, 2));
+    }
+
+    @Test
+    public void unackedMoves_areCapped() {
+        GameSession session = session(true);
+        for (int i = 0; i < 1000; i++) {
+            session.nextMove(0, 0, 1);
+        }
+        List<String> messages = session.resyncMessages();
+        assertEquals(65, messages.size());
+        assertEquals("MOVE:7:0:0:1:1000", messages.get(messages.size() - 1));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.chatroom;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class MessageWriterTest {
+
+    private static List<String> drain(OutboundQueue queue) {
+        List<String> lines = new ArrayList<>();
+        for (OutboundQueue.Entry entry; (entry = queue.poll()) != null; ) {
+            lines.add(entry.line);
+        }
+        return lines;
+    }
+
+    @Test
+    public void failedWrite_putsTheBatchBackAtTheHead() {
+        OutboundQueue queue = new OutboundQueue();
+        queue.offer("MOVE:7:0:0:1:1");
+        queue.offer("hello");
+        OutputStream deadSocket = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        new MessageWriter(queue, deadSocket, new WireProtocol(), failure::set).run();
+
+        assertNotNull(failure.get());
+        queue.offer("queued after the failure");
+        assertEquals(Arrays.asList("MOVE:7:0:0:1:1", "hello", "queued after the failure"), drain(queue));
+    }
+
+    @Test
+    public void requeueFirst_makesRoomByDroppingTheNewest() {
+        OutboundQueue queue = new OutboundQueue(3);
+        queue.offer("a");
+        queue.offer("b");
+        List<OutboundQueue.Entry> batch = new ArrayList<>();
+        queue.drainTo(batch, 2);
+        queue.offer("c");
+        queue.offer("d");
+        queue.offer("e");
+
+        queue.requeueFirst(batch);
+        assertEquals(Arrays.asList("a", "b", "c"), drain(queue));
+        assertEquals(2, queue.getStats().dropped);
+    }
+}
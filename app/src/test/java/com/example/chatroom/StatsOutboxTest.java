@@ -0,0 +1,191 @@
+package com.example.chatroom;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class StatsOutboxTest {
+
+    private static final String OK = "{\"success\": true}";
+    private static final String OK_BATCH = "{\"success\": true, \"batch\": true}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<Map<String, String>> requests = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+    private final StatsOutbox.Sender sender = params -> {
+        requests.add(new HashMap<>(params));
+        try {
+            String reply = replies.poll(10, TimeUnit.SECONDS);
+            if (reply == null) {
+                throw new IOException("No reply scripted");
+            }
+            return reply;
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    };
+
+    private File file() {
+        return new File(folder.getRoot(), "stats_outbox.json");
+    }
+
+    private StatsOutbox outbox() {
+        return new StatsOutbox(file(), sender, () -> { });
+    }
+
+    private Map<String, String> nextRequest() throws InterruptedException {
+        Map<String, String> request = requests.poll(10, TimeUnit.SECONDS);
+        assertNotNull("Expected another request", request);
+        return request;
+    }
+
+    private void assertNoMoreRequests() throws InterruptedException {
+        assertNull(requests.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    private static List<String> batchIds(Map<String, String> request) throws Exception {
+        JSONArray results = new JSONArray(request.get("results"));
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < results.length(); i++) {
+            ids.add(results.getJSONObject(i).getString("id"));
+        }
+        return ids;
+    }
+
+    private static JSONArray accepted(List<String> ids) {
+        JSONArray accepted = new JSONArray();
+        for (String id : ids) {
+            accepted.put(id);
+        }
+        return accepted;
+    }
+
+    private int savedCount() throws Exception {
+        byte[] bytes = Files.readAllBytes(file().toPath());
+        return new JSONArray(new String(bytes, StandardCharsets.UTF_8)).length();
+    }
+
+    @Test
+    public void sendsOneResultPerRequest_withoutBatchSupport() throws Exception {
+        replies.add(OK);
+        replies.add(OK);
+        StatsOutbox outbox = outbox();
+        outbox.record("alice", "tictactoe", "win");
+        outbox.record("bob", "fourinarow", "loss");
+        outbox.flushNow();
+
+        Map<String, String> first = nextRequest();
+        assertFalse(first.containsKey("results"));
+        assertEquals("alice", first.get("username"));
+        assertEquals("tictactoe", first.get("game_type"));
+        assertEquals("win", first.get("result"));
+        assertNotNull(first.get("id"));
+        Map<String, String> second = nextRequest();
+        assertEquals("bob", second.get("username"));
+        assertNoMoreRequests();
+        assertEquals(0, savedCount());
+    }
+
+    @Test
+    public void switchesToBatches_onceTheServerAdvertisesThem() throws Exception {
+        StatsOutbox outbox = outbox();
+        for (int i = 0; i < 3; i++) {
+            outbox.record("user" + i, "tictactoe", "draw");
+        }
+        replies.add(OK_BATCH);
+        outbox.flushNow();
+        Map<String, String> single = nextRequest();
+        assertEquals("user0", single.get("username"));
+
+        Map<String, String> batch = nextRequest();
+        List<String> ids = batchIds(batch);
+        assertEquals(2, ids.size());
+        replies.add(new JSONObject().put("success", true).put("batch", true)
+                .put("accepted", accepted(ids)).toString());
+        assertNoMoreRequests();
+        assertEquals(0, savedCount());
+    }
+
+    @Test
+    public void batchReplyWithoutAccepted_acknowledgesNothing() throws Exception {
+        StatsOutbox outbox = outbox();
+        for (int i = 0; i < 3; i++) {
+            outbox.record("user" + i, "fourinarow", "win");
+        }
+        replies.add(OK_BATCH);
+        outbox.flushNow();
+        nextRequest();
+
+        List<String> batch = batchIds(nextRequest());
+        // A server that ignores the results parameter answers like the single form.
+        replies.add(OK);
+        replies.add(OK);
+        replies.add(OK);
+        Map<String, String> retried = nextRequest();
+        assertFalse("Fell back to single results", retried.containsKey("results"));
+        assertEquals(batch.get(0), retried.get("id"));
+        assertEquals(batch.get(1), nextRequest().get("id"));
+        assertNoMoreRequests();
+        assertEquals(0, savedCount());
+    }
+
+    @Test
+    public void partiallyAcceptedBatch_resendsTheRest() throws Exception {
+        StatsOutbox outbox = outbox();
+        for (int i = 0; i < 3; i++) {
+            outbox.record("user" + i, "tictactoe", "loss");
+        }
+        replies.add(OK_BATCH);
+        outbox.flushNow();
+        nextRequest();
+
+        List<String> ids = batchIds(nextRequest());
+        replies.add(new JSONObject().put("success", true).put("batch", true)
+                .put("accepted", accepted(List.of(ids.get(1)))).toString());
+        List<String> resent = batchIds(nextRequest());
+        assertEquals(List.of(ids.get(0)), resent);
+        replies.add(new JSONObject().put("success", true).put("batch", true)
+                .put("accepted", accepted(resent)).toString());
+        assertNoMoreRequests();
+        assertEquals(0, savedCount());
+    }
+
+    @Test
+    public void rejectedResult_staysQueuedAcrossRestarts() throws Exception {
+        StatsOutbox outbox = outbox();
+        outbox.record("alice", "tictactoe", "win");
+        replies.add("{\"success\": false, \"message\": \"Database error\"}");
+        outbox.flushNow();
+        String id = nextRequest().get("id");
+        assertNoMoreRequests();
+        assertEquals(1, savedCount());
+
+        replies.add(OK);
+        StatsOutbox restarted = outbox();
+        restarted.flushNow();
+        assertEquals(id, nextRequest().get("id"));
+        assertNoMoreRequests();
+        assertEquals(0, savedCount());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.chatroom;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TextCodecTest {
+
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private static List<ChatMessage> decode(TextCodec codec, byte[] bytes, int chunk) throws IOException {
+        List<ChatMessage> messages = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(chunk, 16));
+        for (int offset = 0; offset < bytes.length; offset += chunk) {
+            buffer.put(bytes, offset, Math.min(chunk, bytes.length - offset));
+            buffer.flip();
+            while (codec.decodeNext(buffer, messages::add)) {
+                // Drain every complete line.
+            }
+            buffer.compact();
+        }
+        return messages;
+    }
+
+    @Test
+    public void chatText_keepsColons() throws IOException {
+        TextCodec codec = new TextCodec();
+        List<ChatMessage> messages = decode(codec, codec.encode("CHAT:alice: 10:30 at a:b"), 3);
+        assertEquals(1, messages.size());
+        assertEquals(ChatMessage.Type.CHAT, messages.get(0).getType());
+        assertEquals("CHAT:alice: 10:30 at a:b", messages.get(0).getRaw());
+    }
+
+    @Test
+    public void newlineInText_endsTheLine() throws IOException {
+        // Text framing cannot carry a newline; it splits into two lines, which is why chat
+        // containing one needs the binary framing.
+        TextCodec codec = new TextCodec();
+        List<ChatMessage> messages = decode(codec, codec.encode("CHAT:alice: one\ntwo"), 64);
+        assertEquals(2, messages.size());
+        assertEquals("CHAT:alice: one", messages.get(0).getRaw());
+        assertEquals("two", messages.get(1).getRaw());
+    }
+
+    @Test
+    public void crlfAndMultiByteText_splitAcrossReads() throws IOException {
+        byte[] bytes = "héllo 😀\r\nMOVE:1:2:0:1\n".getBytes(StandardCharsets.UTF_8);
+        for (int chunk = 1; chunk <= bytes.length; chunk++) {
+            List<ChatMessage> messages = decode(new TextCodec(), bytes, chunk);
+            assertEquals(2, messages.size());
+            assertEquals("héllo 😀", messages.get(0).getRaw());
+            assertEquals(ChatMessage.Type.MOVE, messages.get(1).getType());
+        }
+    }
+
+    @Test
+    public void lineAtCap_isAccepted() throws IOException {
+        byte[] line = new byte[MAX_LINE_LENGTH + 1];
+        Arrays.fill(line, (byte) 'a');
+        line[MAX_LINE_LENGTH] = '\n';
+        List<ChatMessage> messages = decode(new TextCodec(), line, 4096);
+        assertEquals(MAX_LINE_LENGTH, messages.get(0).getRaw().length());
+    }
+
+    @Test
+    public void lineOverCap_isRejected() {
+        byte[] line = new byte[MAX_LINE_LENGTH + 2];
+        Arrays.fill(line, (byte) 'a');
+        line[MAX_LINE_LENGTH + 1] = '\n';
+        try {
+            decode(new TextCodec(), line, 4096);
+            fail("Expected an over-long line to be rejected");
+        } catch (IOException expected) {
+            // Rejected as it should be.
+        }
+    }
+}
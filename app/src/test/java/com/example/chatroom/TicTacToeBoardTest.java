@@ -0,0 +1,89 @@
+package com.example.chatroom;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TicTacToeBoardTest {
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    /** Walks every cell in every direction looking for {@code k} of {@code player}'s stones in a row. */
+    private static boolean bruteForceWin(int[][] cells, int k, int player) {
+        int n = cells.length;
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) {
+                for (int[] direction : DIRECTIONS) {
+                    int count = 0;
+                    int r = row;
+                    int c = col;
+                    while (count < k && r >= 0 && r < n && c >= 0 && c < n && cells[r][c] == player) {
+                        count++;
+                        r += direction[0];
+                        c += direction[1];
+                    }
+                    if (count == k) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void winDetection_matchesBruteForceScan() {
+        Random random = new Random(7);
+        for (int n = 3; n <= TicTacToeBoard.MAX_SIZE; n++) {
+            for (int k = 3; k <= n; k++) {
+                int wins = 0;
+                for (int game = 0; game < 300; game++) {
+                    wins += playRandomGame(random, n, k) ? 1 : 0;
+                }
+                assertTrue("no wins for n=" + n + " k=" + k, wins > 0);
+            }
+        }
+    }
+
+    /** Plays random moves until someone wins or the board fills; returns whether someone won. */
+    private static boolean playRandomGame(Random random, int n, int k) {
+        TicTacToeBoard board = new TicTacToeBoard(n, k);
+        int[][] cells = new int[n][n];
+        int player = 1;
+        while (!board.isFull()) {
+            int row = random.nextInt(n);
+            int col = random.nextInt(n);
+            if (!board.isEmpty(row, col)) {
+                continue;
+            }
+            assertTrue(board.place(row, col, player));
+            cells[row][col] = player;
+            String where = "n=" + n + " k=" + k + " move " + board.getMoveCount();
+            assertEquals(where, bruteForceWin(cells, k, 1), board.isWin(1));
+            assertEquals(where, bruteForceWin(cells, k, 2), board.isWin(2));
+            if (board.getWinner() != 0) {
+                assertEquals(player, board.getWinner());
+                // The game is over; no more stones go down.
+                assertFalse(board.place(row, col, 3 - player));
+                return true;
+            }
+            player = 3 - player;
+        }
+        return false;
+    }
+
+    @Test
+    public void lineMasks_coverEveryLine() {
+        for (int n = 3; n <= TicTacToeBoard.MAX_SIZE; n++) {
+            for (int k = 3; k <= n; k++) {
+                // Rows and columns: n * (n - k + 1) each; both diagonals: (n - k + 1)^2 each.
+                int expected = 2 * n * (n - k + 1) + 2 * (n - k + 1) * (n - k + 1);
+                assertEquals("n=" + n + " k=" + k, expected, new TicTacToeBoard(n, k).lines().masks.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.chatroom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TicTacToeSolverTest {
+
+    private final TicTacToeSolver solver = TicTacToeSolver.getInstance();
+
+    @Test
+    public void neverLosesAsFirstPlayer() {
+        assertTrue(playAllReplies(new TicTacToeBoard(), 1, 1) > 0);
+    }
+
+    @Test
+    public void neverLosesAsSecondPlayer() {
+        assertTrue(playAllReplies(new TicTacToeBoard(), 2, 1) > 0);
+    }
+
+    @Test
+    public void selfPlay_isDraw() {
+        TicTacToeBoard board = new TicTacToeBoard();
+        int player = 1;
+        while (!board.isFull() && board.getWinner() == 0) {
+            int cell = solver.chooseMove(board, player);
+            assertTrue(board.place(cell / 3, cell % 3, player));
+            player = 3 - player;
+        }
+        assertTrue(board.isFull());
+        assertEquals(0, board.getWinner());
+    }
+
+    @Test
+    public void fullBoard_hasNoMove() {
+        TicTacToeBoard board = new TicTacToeBoard();
+        // X O X / X O O / O X X: a draw with every cell taken.
+        int[] marks = {1, 2, 1, 1, 2, 2, 2, 1, 1};
+        for (int cell = 0; cell < marks.length; cell++) {
+            board.place(cell / 3, cell % 3, marks[cell]);
+        }
+        assertEquals(-1, solver.chooseMove(board, 1));
+    }
+
+    /**
+     * Lets the solver play {@code solverPlayer} against every possible sequence of opponent
+     * moves from {@code board}, with {@code toMove} to play. Returns the number of finished games.
+     */
+    private int playAllReplies(TicTacToeBoard board, int solverPlayer, int toMove) {
+        if (board.getWinner() != 0 || board.isFull()) {
+            assertNotEquals("Solver lost", 3 - solverPlayer, board.getWinner());
+            return 1;
+        }
+        if (toMove == solverPlayer) {
+            int cell = solver.chooseMove(board, solverPlayer);
+            TicTacToeBoard next = copy(board);
+            assertTrue("Illegal move " + cell, next.place(cell / 3, cell % 3, solverPlayer));
+            return playAllReplies(next, solverPlayer, 3 - toMove);
+        }
+        int games = 0;
+        for (int cell = 0; cell < 9; cell++) {
+            if (board.isEmpty(cell / 3, cell % 3)) {
+                TicTacToeBoard next = copy(board);
+                next.place(cell / 3, cell % 3, toMove);
+                games += playAllReplies(next, solverPlayer, 3 - toMove);
+            }
+        }
+        return games;
+    }
+
+    private static TicTacToeBoard copy(TicTacToeBoard board) {
+        TicTacToeBoard copy = new TicTacToeBoard();
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                if (board.get(row, col) != 0) {
+                    copy.place(row, col, board.get(row, col));
+                }
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.chatroom;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Encoding straight into a (direct) buffer, as {@link NioTransport} does, must produce the same
+ * bytes as the array-returning encoders.
+ */
+public class WireProtocolEncodeTest {
+
+    private static final String[] MESSAGES = {
+            "hello",
+            "CHAT:alice: a:b",
+            "MOVE:12:1:2:1",
+            "MOVE4:12:5:6:2:300",
+            "GAME_OVER:12:0",
+            "MOVE:007:1:2:1",
+            "héllo € 😀",
+            "lone \ud83d surrogate",
+    };
+
+    private static byte[] encodeIntoBuffer(WireProtocol protocol, String message) {
+        ByteBuffer out = ByteBuffer.allocateDirect(1024);
+        assertTrue(protocol.encode(message, out));
+        out.flip();
+        byte[] bytes = new byte[out.remaining()];
+        out.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void textEncodeIntoBuffer_matchesArrayEncode() {
+        for (String message : MESSAGES) {
+            assertArrayEquals(message, new TextCodec().encode(message),
+                    encodeIntoBuffer(new WireProtocol(), message));
+        }
+    }
+
+    @Test
+    public void binaryEncodeIntoBuffer_matchesArrayEncode() {
+        WireProtocol buffered = new WireProtocol();
+        WireProtocol array = new WireProtocol();
+        encodeIntoBuffer(buffered, WireProtocol.ACCEPT);
+        array.encode(WireProtocol.ACCEPT);
+        for (String message : MESSAGES) {
+            assertArrayEquals(message, array.encode(message), encodeIntoBuffer(buffered, message));
+        }
+    }
+
+    @Test
+    public void encodeIntoBuffer_leavesBufferUntouchedWhenFull() {
+        String message = "CHAT:alice: " + "x".repeat(100);
+        int length = new TextCodec().encode(message).length;
+        ByteBuffer out = ByteBuffer.allocate(length - 1);
+        out.put((byte) 7);
+        assertFalse(new WireProtocol().encode(message, out));
+        assertEquals(1, out.position());
+
+        ByteBuffer exact = ByteBuffer.allocate(length);
+        assertTrue(new WireProtocol().encode(message, exact));
+        assertEquals(0, exact.remaining());
+    }
+
+    @Test
+    public void acceptSwitchesOnlyOnceEncoded() {
+        WireProtocol protocol = new WireProtocol();
+        assertFalse(protocol.encode(WireProtocol.ACCEPT, ByteBuffer.allocate(4)));
+        // The failed attempt must not switch framing; the retry still goes out as text.
+        byte[] accept = encodeIntoBuffer(protocol, WireProtocol.ACCEPT);
+        assertEquals('\n', accept[accept.length - 1]);
+        byte[] next = encodeIntoBuffer(protocol, "hi");
+        assertEquals(BinaryFrameCodec.TYPE_TEXT, next[0]);
+        assertArrayEquals(Arrays.copyOfRange(next, 2, next.length), "hi".getBytes());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.chatroom;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WireProtocolTest {
+
+    /** Feeds {@code bytes} to {@code protocol} in reads of at most {@code chunk} bytes. */
+    static List<ChatMessage> decode(WireProtocol protocol, byte[] bytes, int chunk) throws IOException {
+        List<ChatMessage> messages = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        for (int offset = 0; offset < bytes.length; offset += chunk) {
+            buffer.put(bytes, offset, Math.min(chunk, bytes.length - offset));
+            buffer.flip();
+            while (protocol.decodeNext(buffer, messages::add)) {
+                // Drain every complete message.
+            }
+            buffer.compact();
+        }
+        return messages;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] serverStream() {
+        // What a binary-capable server sends: its offer and the echoed accept as text, then frames.
+        TextCodec text = new TextCodec();
+        BinaryFrameCodec binary = new BinaryFrameCodec();
+        return concat(
+                text.encode("PROTOCOL_OFFER:BINARY:1"),
+                text.encode("JOINED:bob"),
+                text.encode(WireProtocol.ACCEPT),
+                binary.encode("CHAT:bob: hi"),
+                binary.encode("MOVE4:42:5:3:2:7"),
+                binary.encode("GAME_OVER4:42:2"));
+    }
+
+    private static void assertServerStream(List<ChatMessage> messages) {
+        assertEquals(5, messages.size());
+        assertTrue(WireProtocol.isBinaryOffer(messages.get(0)));
+        assertEquals("JOINED:bob", messages.get(1).getRaw());
+        assertEquals(ChatMessage.Type.CHAT, messages.get(2).getType());
+        assertEquals("CHAT:bob: hi", messages.get(2).getRaw());
+        assertEquals("MOVE4:42:5:3:2:7", messages.get(3).getRaw());
+        assertEquals(ChatMessage.Game.FOUR_IN_A_ROW, messages.get(3).getGame());
+        assertEquals("GAME_OVER4:42:2", messages.get(4).getRaw());
+    }
+
+    @Test
+    public void switchToBinary_insideOneReadBuffer() throws IOException {
+        WireProtocol protocol = new WireProtocol();
+        byte[] stream = serverStream();
+        assertServerStream(decode(protocol, stream, stream.length));
+    }
+
+    @Test
+    public void switchToBinary_withEveryReadSplit() throws IOException {
+        byte[] stream = serverStream();
+        for (int chunk = 1; chunk < 16; chunk++) {
+            assertServerStream(decode(new WireProtocol(), stream, chunk));
+        }
+    }
+
+    @Test
+    public void outboundSwitchesAfterAccept() {
+        WireProtocol protocol = new WireProtocol();
+        byte[] before = protocol.encode("MOVE:1:2:3:1");
+        assertEquals('\n', before[before.length - 1]);
+        assertFalse(protocol.isBinary());
+        protocol.encode(WireProtocol.ACCEPT);
+        assertEquals(BinaryFrameCodec.TYPE_MOVE, protocol.encode("MOVE:1:2:3:1")[0]);
+    }
+}
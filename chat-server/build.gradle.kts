@@ -0,0 +1,26 @@
+plugins {
+    application
+}
+
+java {
+    // Virtual threads need Java 21; the app and the stats server stay on Java 11.
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
+
+application {
+    mainClass.set("com.example.chatroom.server.ChatServer")
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+tasks.register<JavaExec>("soak") {
+    group = "verification"
+    description = "Opens many idle client connections against a running chat server and times a broadcast."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.chatroom.server.ConnectionSoak")
+    args = (project.findProperty("soakArgs") as String?)?.split(" ") ?: emptyList()
+}
@@ -0,0 +1,74 @@
+package com.example.chatroom.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ring of the most recent lines sent to every client. A broadcast is stored once, and each
+ * connection's writer keeps a cursor into the log instead of holding its own copy, so a burst of
+ * announcements to tens of thousands of clients costs one slot per line, and a writer that wakes
+ * up late sends everything it missed in one socket write. Lines are stored already encoded, with
+ * their newline, so they are not re-encoded per client. A reader that falls a whole ring behind
+ * has lost lines and must be disconnected.
+ */
+final class BroadcastLog {
+
+    static final int CAPACITY = 1 << 16;
+    private static final int MASK = CAPACITY - 1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final byte[][] ring = new byte[CAPACITY][];
+    // Sequence number the next line gets; guarded by lock.
+    private long head = 0;
+
+    /** Appends a line and returns its sequence number. */
+    long append(String line) {
+        byte[] encoded = encode(line);
+        lock.lock();
+        try {
+            ring[(int) (head & MASK)] = encoded;
+            return head++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Sequence number the next appended line will get. */
+    long head() {
+        lock.lock();
+        try {
+            return head;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies lines {@code [from, to)} into {@code out}, at most {@code out.length} of them, and
+     * returns how many were copied, or -1 if {@code from} has already been overwritten.
+     */
+    int read(long from, long to, byte[][] out) {
+        lock.lock();
+        try {
+            if (head - from > CAPACITY) {
+                return -1;
+            }
+            int count = (int) Math.min(out.length, Math.min(to, head) - from);
+            for (int i = 0; i < count; i++) {
+                out[i] = ring[(int) ((from + i) & MASK)];
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** A line as it goes on the wire: UTF-8 followed by a newline. */
+    static byte[] encode(String line) {
+        byte[] text = line.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = new byte[text.length + 1];
+        System.arraycopy(text, 0, encoded, 0, text.length);
+        encoded[text.length] = '\n';
+        return encoded;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.chatroom.server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * The single chat room and its games. Routes each line a client sends, per the protocol the app
+ * speaks:
+ * <ul>
+ *   <li>a plain line is chat, broadcast as {@code CHAT:<user>: <text>};</li>
+ *   <li>{@code NEW_TICTACTOE:<game>:<user>} and {@code NEW_FOURINAROW:...} are broadcast as
+ *   invites;</li>
+ *   <li>{@code JOIN_REQUEST:<game>:<initiator>:<joiner>} (or {@code JOIN_REQUEST4:}) seats the
+ *   joiner, who gets {@code JOIN_*}, and both players get {@code START_*:<game>:<initiator>:<joiner>};</li>
+ *   <li>{@code MOVE:}, {@code MOVE4:}, {@code GAME_OVER:} and {@code GAME_OVER4:} are relayed to
+ *   the other player. A sequenced move is answered with {@code MOVE_ACK:<game>:<seq>}, and a
+ *   resent one is acked again but not relayed twice;</li>
+ *   <li>{@code RESYNC:<game>:<lastApplied>} sends the other player's moves after
+ *   {@code lastApplied} again;</li>
+ *   <li>{@code SUBSCRIBE_LEADERBOARD:<k>} starts the {@code LB_*} pushes of the top {@code k}
+ *   winners, which the first {@code GAME_OVER} of each round updates, and
+ *   {@code UNSUBSCRIBE_LEADERBOARD} stops them;</li>
+ *   <li>{@code RESET_GAME_REQUEST:<game>} sends {@code RESET_GAME_PENDING:<game>:<user>} to the
+ *   other player, and {@code RESET_GAME_CONFIRMED:<game>} to both once both asked;</li>
+ *   <li>{@code EXIT_*:<game>} ends the game for everyone;</li>
+ *   <li>{@code DISCONNECT:<user>} closes the connection, and {@code PING:<id>} is answered with
+ *   {@code PONG:<id>}.</li>
+ * </ul>
+ * Every user who connects is announced with {@code JOINED:<user>}.
+ */
+final class ChatRoom {
+
+    private static final Logger LOG = Logger.getLogger(ChatRoom.class.getName());
+    // Capabilities from the app's WireProtocol this server implements.
+    private static final String PROTOCOL_OFFER = "PROTOCOL_OFFER:HEARTBEAT:1,RESYNC:1,LEADERBOARD:1";
+
+    // Bounds the snapshot a subscriber can ask for, well above what the app shows.
+    private static final int MAX_LEADERBOARD_TOP_K = 100;
+
+    private final Map<String, ClientConnection> users = new ConcurrentHashMap<>();
+    private final Map<String, Game> games = new ConcurrentHashMap<>();
+    private final BroadcastLog broadcastLog = new BroadcastLog();
+    private final Leaderboard leaderboard = new Leaderboard();
+
+    BroadcastLog getBroadcastLog() {
+        return broadcastLog;
+    }
+
+    void onConnected(ClientConnection connection) {
+        String username = connection.getUsername();
+        ClientConnection previous = users.put(username, connection);
+        if (previous != null) {
+            // A reconnecting client usually beats our noticing that its old socket is dead.
+            previous.close();
+        }
+        connection.send(PROTOCOL_OFFER);
+        broadcast("JOINED:" + username);
+    }
+
+    void onDisconnected(ClientConnection connection) {
+        String username = connection.getUsername();
+        if (!users.remove(username, connection)) {
+            // Replaced by a newer connection of the same user, which keeps the games.
+            return;
+        }
+        leaderboard.unsubscribe(connection);
+        for (Game game : games.values()) {
+            if (game.initiator.equals(username) || username.equals(game.getOpponent())) {
+                endGame(game);
+            }
+        }
+        broadcast(username + " has left the chat.");
+    }
+
+    void onLine(ClientConnection connection, String line) {
+        String username = connection.getUsername();
+        int colon = line.indexOf(':');
+        // UNSUBSCRIBE_LEADERBOARD is the only command without fields; other bare lines are chat.
+        String prefix = colon > 0 ? line.substring(0, colon)
+                : line.equals("UNSUBSCRIBE_LEADERBOARD") ? line : "";
+        String[] fields = colon > 0 ? line.substring(colon + 1).split(":") : new String[0];
+        switch (prefix) {
+            case "NEW_TICTACTOE":
+                invite(username, fields, Game.Kind.TIC_TAC_TOE);
+                return;
+            case "NEW_FOURINAROW":
+                invite(username, fields, Game.Kind.FOUR_IN_A_ROW);
+                return;
+            case "JOIN_REQUEST":
+            case "JOIN_REQUEST4":
+                join(username, fields, prefix.endsWith("4") ? Game.Kind.FOUR_IN_A_ROW : Game.Kind.TIC_TAC_TOE);
+                return;
+            case "MOVE":
+            case "MOVE4":
+                move(connection, fields, line);
+                return;
+            case "GAME_OVER":
+            case "GAME_OVER4":
+                gameOver(username, fields, line);
+                return;
+            case "RESYNC":
+                resync(connection, fields);
+                return;
+            case "SUBSCRIBE_LEADERBOARD":
+                subscribeLeaderboard(connection, fields);
+                return;
+            case "UNSUBSCRIBE_LEADERBOARD":
+                leaderboard.unsubscribe(connection);
+                return;
+            case "RESET_GAME_REQUEST":
+                reset(username, fields);
+                return;
+            case "EXIT_TICTACTOE":
+            case "EXIT_FOURINAROW":
+                exit(username, fields);
+                return;
+            case "DISCONNECT":
+                connection.close();
+                return;
+            case "PING":
+                connection.send("PONG:" + (fields.length > 0 ? fields[0] : ""));
+                return;
+            case "PONG":
+            case "PROTOCOL_ACCEPT":
+                // We never ping, and never offer binary framing.
+                return;
+            default:
+                if (!line.isBlank()) {
+                    broadcast("CHAT:" + username + ": " + line);
+                }
+        }
+    }
+
+    private void invite(String username, String[] fields, Game.Kind kind) {
+        if (fields.length < 1 || fields[0].isEmpty()) {
+            return;
+        }
+        Game game = new Game(fields[0], kind, username);
+        if (games.putIfAbsent(game.id, game) != null) {
+            LOG.fine("Ignoring invite for existing game " + game.id);
+            return;
+        }
+        broadcast("NEW_" + kind.name + ":" + game.id + ":" + username);
+    }
+
+    private void join(String username, String[] fields, Game.Kind kind) {
+        Game game = fields.length > 0 ? games.get(fields[0]) : null;
+        if (game == null || game.kind != kind || !game.join(username)) {
+            return;
+        }
+        String players = game.id + ":" + game.initiator + ":" + username;
+        sendTo(username, "JOIN_" + kind.name + ":" + players);
+        String start = "START_" + kind.name + ":" + players;
+        sendTo(game.initiator, start);
+        sendTo(username, start);
+    }
+
+    private void move(ClientConnection connection, String[] fields, String line) {
+        String username = connection.getUsername();
+        Game game = fields.length > 0 ? games.get(fields[0]) : null;
+        String other = game == null ? null : game.otherPlayer(username);
+        if (other == null) {
+            return;
+        }
+        // MOVE:<game>:<row>:<col>:<player>[:<seq>]; clients without sequencing are only relayed.
+        long seq = fields.length > 4 ? parseLong(fields[4]) : -1;
+        if (seq < 0) {
+            sendTo(other, line);
+            return;
+        }
+        if (game.recordMove(seq, username, line)) {
+            sendTo(other, line);
+        }
+        connection.send("MOVE_ACK:" + game.id + ":" + seq);
+    }
+
+    private void gameOver(String username, String[] fields, String line) {
+        Game game = fields.length > 0 ? games.get(fields[0]) : null;
+        String other = game == null ? null : game.otherPlayer(username);
+        if (other == null) {
+            return;
+        }
+        sendTo(other, line);
+        String winner = fields.length > 1 ? game.takeWinner(parseLong(fields[1])) : null;
+        if (winner != null) {
+            leaderboard.recordWin(winner);
+        }
+    }
+
+    private void resync(ClientConnection connection, String[] fields) {
+        String username = connection.getUsername();
+        Game game = fields.length > 0 ? games.get(fields[0]) : null;
+        long lastApplied = fields.length > 1 ? parseLong(fields[1]) : -1;
+        if (game == null || game.otherPlayer(username) == null || lastApplied < 0) {
+            return;
+        }
+        List<String> missed = game.movesAfter(lastApplied, username);
+        for (String line : missed) {
+            connection.send(line);
+        }
+    }
+
+    private void subscribeLeaderboard(ClientConnection connection, String[] fields) {
+        long topK = fields.length > 0 ? parseLong(fields[0]) : -1;
+        if (topK > 0) {
+            leaderboard.subscribe(connection, (int) Math.min(topK, MAX_LEADERBOARD_TOP_K));
+        }
+    }
+
+    private void reset(String username, String[] fields) {
+        Game game = fields.length > 0 ? games.get(fields[0]) : null;
+        String other = game == null ? null : game.otherPlayer(username);
+        if (other == null) {
+            return;
+        }
+        if (game.requestReset(username)) {
+            String confirmed = "RESET_GAME_CONFIRMED:" + game.id;
+            sendTo(username, confirmed);
+            sendTo(other, confirmed);
+        } else {
+            sendTo(other, "RESET_GAME_PENDING:" + game.id + ":" + username);
+        }
+    }
+
+    private void exit(String username, String[] fields) {
+        Game game = fields.length > 0 ? games.get(fields[0]) : null;
+        if (game != null && (game.initiator.equals(username) || username.equals(game.getOpponent()))) {
+            endGame(game);
+        }
+    }
+
+    private void endGame(Game game) {
+        if (games.remove(game.id, game)) {
+            // Everyone may show the invite or the running game in their timeline.
+            broadcast("EXIT_" + game.kind.name + ":" + game.id);
+        }
+    }
+
+    /** The non-negative number in {@code field}, or -1 if it is not one. */
+    private static long parseLong(String field) {
+        try {
+            long value = Long.parseLong(field);
+            return value < 0 ? -1 : value;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void sendTo(String username, String line) {
+        ClientConnection connection = users.get(username);
+        if (connection != null) {
+            connection.send(line);
+        }
+    }
+
+    private void broadcast(String line) {
+        broadcastLog.append(line);
+        for (ClientConnection connection : users.values()) {
+            connection.wake();
+        }
+    }
+}
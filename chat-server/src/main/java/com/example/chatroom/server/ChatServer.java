@@ -0,0 +1,88 @@
+package com.example.chatroom.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local stand-in for the chat server the app connects to on port 12345, speaking the same
+ * newline-terminated text protocol (see {@link ChatRoom}). Each connection gets a virtual thread
+ * for reading and one for writing, so an idle client costs a few kilobytes of heap rather than a
+ * platform thread stack. Tens of thousands of connections mostly need a higher open-files limit
+ * ({@code ulimit -n}) for the server process.
+ *
+ * <p>Usage: {@code ChatServer [port] [bind address]}, port 12345 on all interfaces by default.
+ * Point the app at it with {@code -PchatServerHost=10.0.2.2} (the emulator's host) or the
+ * machine's LAN address.
+ */
+public final class ChatServer {
+
+    private static final Logger LOG = Logger.getLogger(ChatServer.class.getName());
+    private static final int DEFAULT_PORT = 12345;
+    // Lets a burst of reconnecting clients queue up instead of being refused.
+    private static final int ACCEPT_BACKLOG = 4096;
+
+    private final ChatRoom room = new ChatRoom();
+    private final ThreadFactory threads = Thread.ofVirtual().name("chat-connection-", 0).factory();
+    private final ServerSocket serverSocket;
+    private volatile boolean running = true;
+
+    public ChatServer(InetAddress bindAddress, int port) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(bindAddress, port), ACCEPT_BACKLOG);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        InetAddress bindAddress = args.length > 1 ? InetAddress.getByName(args[1]) : null;
+        new ChatServer(bindAddress, port).serve();
+    }
+
+    /** Accepts connections on the calling thread until {@link #stop} is called. */
+    public void serve() {
+        LOG.info("Chat server listening on port " + getPort());
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+            } catch (IOException e) {
+                if (running) {
+                    // Usually running out of file descriptors; back off instead of spinning.
+                    LOG.log(Level.WARNING, "Accept failed", e);
+                    sleepQuietly(100);
+                }
+                continue;
+            }
+            new ClientConnection(socket, room, threads).start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Error closing server socket", e);
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
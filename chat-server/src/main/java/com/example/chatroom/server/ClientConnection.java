@@ -0,0 +1,201 @@
+package com.example.chatroom.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One client socket, served by two virtual threads: the reader runs the username handshake and
+ * hands every later line to the {@link ChatRoom}, and the writer sends what is addressed to this
+ * client. Broadcasts are read from the shared {@link BroadcastLog} at this connection's cursor;
+ * lines for this client alone are queued here, stamped with the log position at the time they
+ * were sent, so the writer keeps both in the order the room produced them.
+ *
+ * <p>Other threads never write to the socket, so a slow client never stalls a broadcast. A client
+ * that falls a whole log behind, or lets too many direct lines pile up, is disconnected. An idle
+ * connection holds no buffers; the writer allocates one per burst.
+ */
+final class ClientConnection {
+
+    private static final Logger LOG = Logger.getLogger(ClientConnection.class.getName());
+    private static final int MAX_DIRECT_LINES = 1024;
+    // Lines taken from the log per lock acquisition, and bytes per socket write.
+    private static final int BATCH_LINES = 256;
+    private static final int MAX_WRITE_BYTES = 64 * 1024;
+
+    private static final class DirectLine {
+        // Log head when the line was sent; broadcasts before it go out first.
+        final long stamp;
+        final byte[] line;
+
+        DirectLine(long stamp, byte[] line) {
+            this.stamp = stamp;
+            this.line = line;
+        }
+    }
+
+    private final Socket socket;
+    private final ChatRoom room;
+    private final BroadcastLog log;
+    private final ThreadFactory threads;
+    private final Queue<DirectLine> direct = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger directCount = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // Set when there may be work for the writer, so bursts of wake() calls unpark it only once.
+    private final AtomicBoolean signalled = new AtomicBoolean();
+    private volatile Thread writer;
+    // Next log line to send; only the writer touches it once started.
+    private long cursor;
+    private String username;
+
+    ClientConnection(Socket socket, ChatRoom room, ThreadFactory threads) {
+        this.socket = socket;
+        this.room = room;
+        this.log = room.getBroadcastLog();
+        this.threads = threads;
+    }
+
+    String getUsername() {
+        return username;
+    }
+
+    void start() {
+        threads.newThread(this::readLoop).start();
+    }
+
+    /** Queues a line for this client alone. Never blocks; an overflowing client is dropped. */
+    void send(String line) {
+        if (closed.get()) {
+            return;
+        }
+        if (directCount.incrementAndGet() > MAX_DIRECT_LINES) {
+            LOG.warning("Too many queued lines for " + username + ", disconnecting");
+            close();
+            return;
+        }
+        direct.add(new DirectLine(log.head(), BroadcastLog.encode(line)));
+        wake();
+    }
+
+    /** Tells the writer there may be new broadcasts or direct lines. */
+    void wake() {
+        Thread current = writer;
+        if (current != null && signalled.compareAndSet(false, true)) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Error closing socket", e);
+        }
+        signalled.set(false);
+        wake();
+    }
+
+    private void readLoop() {
+        try {
+            LineReader reader = new LineReader(socket.getInputStream());
+            String handshake = reader.readLine();
+            if (handshake == null || handshake.isBlank() || handshake.indexOf(':') >= 0) {
+                return;
+            }
+            username = handshake.trim();
+            cursor = log.head();
+            Thread writerThread = threads.newThread(this::writeLoop);
+            writer = writerThread;
+            writerThread.start();
+            room.onConnected(this);
+            String line;
+            while (!closed.get() && (line = reader.readLine()) != null) {
+                room.onLine(this, line);
+            }
+        } catch (IOException e) {
+            if (!closed.get()) {
+                LOG.log(Level.FINE, "Connection of " + username + " failed", e);
+            }
+        } finally {
+            close();
+            if (username != null) {
+                room.onDisconnected(this);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        byte[][] batch = new byte[BATCH_LINES][];
+        try {
+            OutputStream out = socket.getOutputStream();
+            while (!closed.get()) {
+                // Clear the flag before looking for work, so a wake() after the check unparks us.
+                signalled.set(false);
+                ByteArrayOutputStream burst = takeBurst(batch);
+                if (burst == null) {
+                    return;
+                }
+                if (burst.size() > 0) {
+                    burst.writeTo(out);
+                    out.flush();
+                } else if (!closed.get()) {
+                    LockSupport.park(this);
+                    // Let the other writers and the producer run first, so that a burst of
+                    // broadcasts goes out in one write instead of one write per line.
+                    Thread.yield();
+                }
+            }
+        } catch (IOException e) {
+            if (!closed.get()) {
+                LOG.log(Level.FINE, "Write to " + username + " failed", e);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Collects pending broadcasts and direct lines in order, up to one socket write's worth.
+     * Returns an empty burst when there is nothing to send, or null if this client fell too far
+     * behind the log.
+     */
+    private ByteArrayOutputStream takeBurst(byte[][] batch) {
+        ByteArrayOutputStream burst = new ByteArrayOutputStream(256);
+        while (burst.size() < MAX_WRITE_BYTES) {
+            DirectLine next = direct.peek();
+            long until = next != null ? next.stamp : log.head();
+            if (cursor < until) {
+                int count = log.read(cursor, until, batch);
+                if (count < 0) {
+                    LOG.warning(username + " fell more than " + BroadcastLog.CAPACITY
+                            + " broadcasts behind, disconnecting");
+                    return null;
+                }
+                for (int i = 0; i < count; i++) {
+                    burst.writeBytes(batch[i]);
+                    batch[i] = null;
+                }
+                cursor += count;
+            } else if (next != null) {
+                direct.poll();
+                directCount.decrementAndGet();
+                burst.writeBytes(next.line);
+            } else {
+                break;
+            }
+        }
+        return burst;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.chatroom.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opens many client connections that do the username handshake and then sit idle, reading and
+ * discarding what the server sends. Once all are up, one of them chats a line and the tool times
+ * how long it takes to reach every connection. Run it against a {@link ChatServer}, ideally as a
+ * separate process so each side has its own open-files limit.
+ *
+ * <p>Usage: {@code ConnectionSoak [--host H] [--port P] [--connections N] [--hold SECONDS]}
+ */
+public final class ConnectionSoak {
+
+    // The JOINED announcements of the ramp-up have drained once no line arrived for this long.
+    private static final long QUIET_MS = 1000;
+
+    private static volatile boolean closing = false;
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = 12345;
+        int connections = 10_000;
+        int holdSeconds = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--hold":
+                    holdSeconds = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        String marker = "soak-" + System.nanoTime();
+        ThreadFactory threads = Thread.ofVirtual().name("soak-", 0).factory();
+        CountDownLatch received = new CountDownLatch(connections);
+        AtomicInteger failed = new AtomicInteger();
+        LongAdder lines = new LongAdder();
+        List<Socket> sockets = new ArrayList<>(connections);
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            Socket socket = new Socket(host, port);
+            socket.getOutputStream().write(("soak" + i + "\n").getBytes(StandardCharsets.UTF_8));
+            sockets.add(socket);
+            threads.newThread(() -> {
+                try {
+                    LineReader reader = new LineReader(socket.getInputStream());
+                    String line;
+                    boolean seen = false;
+                    while ((line = reader.readLine()) != null) {
+                        lines.increment();
+                        if (!seen && line.endsWith(marker)) {
+                            seen = true;
+                            received.countDown();
+                        }
+                    }
+                    if (!closing) {
+                        failed.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    if (!closing) {
+                        failed.incrementAndGet();
+                    }
+                }
+            }).start();
+        }
+        System.out.printf("Opened %,d connections in %,d ms%n", connections,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+
+        long settled = waitForQuiet(lines);
+        System.out.printf("Received %,d lines of join announcements, quiet after %,d ms%n",
+                settled, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+        OutputStream out = sockets.get(0).getOutputStream();
+        long sent = System.nanoTime();
+        out.write((marker + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        boolean complete = received.await(60, TimeUnit.SECONDS);
+        long fanOutMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent);
+        System.out.printf("Broadcast reached %,d of %,d connections in %,d ms%s%n",
+                connections - received.getCount(), connections, fanOutMs, complete ? "" : " (timed out)");
+
+        if (holdSeconds > 0) {
+            System.out.printf("Holding connections for %d s%n", holdSeconds);
+            Thread.sleep(holdSeconds * 1000L);
+        }
+        closing = true;
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        if (failed.get() > 0) {
+            System.out.printf("%,d connection(s) were dropped by the server%n", failed.get());
+        }
+    }
+
+    private static long waitForQuiet(LongAdder lines) throws InterruptedException {
+        long last = -1;
+        long count = lines.sum();
+        while (count != last) {
+            last = count;
+            Thread.sleep(QUIET_MS);
+            count = lines.sum();
+        }
+        return count;
+    }
+}
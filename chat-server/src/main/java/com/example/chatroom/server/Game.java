@@ -0,0 +1,133 @@
+package com.example.chatroom.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One tic-tac-toe or four-in-a-row game between the inviting player and the one who joined.
+ * The server does not check moves; it keeps the players, the reset handshake and the sequenced
+ * moves of the current round, so a player who missed some can have them sent again.
+ */
+final class Game {
+
+    enum Kind {
+        TIC_TAC_TOE("TICTACTOE"),
+        FOUR_IN_A_ROW("FOURINAROW");
+
+        /** Suffix of the NEW_, JOIN_, START_ and EXIT_ prefixes. */
+        final String name;
+
+        Kind(String name) {
+            this.name = name;
+        }
+    }
+
+    // A round never has more moves than the largest board has cells; the cap only stops a
+    // misbehaving client from growing the log.
+    private static final int MAX_MOVES = 256;
+
+    private static final class Move {
+        final String player;
+        final String line;
+
+        Move(String player, String line) {
+            this.player = player;
+            this.line = line;
+        }
+    }
+
+    final String id;
+    final Kind kind;
+    final String initiator;
+    // Guarded by this.
+    private String opponent;
+    private String resetRequestedBy;
+    private final TreeMap<Long, Move> moves = new TreeMap<>();
+    private boolean roundOver;
+
+    Game(String id, Kind kind, String initiator) {
+        this.id = id;
+        this.kind = kind;
+        this.initiator = initiator;
+    }
+
+    /** Seats {@code player} as the opponent; false if the game is already full or it is their own. */
+    synchronized boolean join(String player) {
+        if (opponent != null || initiator.equals(player)) {
+            return false;
+        }
+        opponent = player;
+        return true;
+    }
+
+    synchronized String getOpponent() {
+        return opponent;
+    }
+
+    /** The other player of {@code player}, or null if they are not playing this game. */
+    synchronized String otherPlayer(String player) {
+        if (opponent == null) {
+            return null;
+        }
+        if (player.equals(initiator)) {
+            return opponent;
+        }
+        return player.equals(opponent) ? initiator : null;
+    }
+
+    /** Records a reset request and returns true once both players have asked. */
+    synchronized boolean requestReset(String player) {
+        if (resetRequestedBy != null && !resetRequestedBy.equals(player)) {
+            resetRequestedBy = null;
+            // The next round numbers its moves from one again.
+            moves.clear();
+            roundOver = false;
+            return true;
+        }
+        resetRequestedBy = player;
+        return false;
+    }
+
+    /**
+     * Records the move {@code seq} of the current round; false if it was already recorded, as when
+     * a player resends a move whose ack it missed.
+     */
+    synchronized boolean recordMove(long seq, String player, String line) {
+        if (moves.containsKey(seq)) {
+            return false;
+        }
+        moves.put(seq, new Move(player, line));
+        if (moves.size() > MAX_MOVES) {
+            moves.pollFirstEntry();
+        }
+        return true;
+    }
+
+    /** The moves of the current round after {@code seq} that {@code player} did not make. */
+    synchronized List<String> movesAfter(long seq, String player) {
+        List<String> missed = new ArrayList<>();
+        for (Map.Entry<Long, Move> entry : moves.tailMap(seq, false).entrySet()) {
+            if (!entry.getValue().player.equals(player)) {
+                missed.add(entry.getValue().line);
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * The winner of the round as reported by {@code GAME_OVER}, where player 1 is the initiator;
+     * null for a draw, or if a result was already taken for this round. Both players report it.
+     */
+    synchronized String takeWinner(long player) {
+        if (roundOver || opponent == null) {
+            return null;
+        }
+        roundOver = true;
+        if (player == 1) {
+            return initiator;
+        }
+        return player == 2 ? opponent : null;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.chatroom.server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Wins per player since the server started, pushed to subscribers as the {@code LB_*} lines of
+ * the app's WireProtocol. Each subscriber gets {@code LB_RESET:<version>} and its top {@code k}
+ * as deltas when it subscribes, and after every win only the lines that change its top {@code k}.
+ * Versions count per subscriber. Lines are queued while holding the lock, so each subscriber sees
+ * its versions in order; {@link ClientConnection#send} never blocks.
+ */
+final class Leaderboard {
+
+    private static final class Entry {
+        final String username;
+        final int wins;
+
+        Entry(String username, int wins) {
+            this.username = username;
+            this.wins = wins;
+        }
+    }
+
+    private static final Comparator<Entry> RANKING = (a, b) -> {
+        if (a.wins != b.wins) {
+            return Integer.compare(b.wins, a.wins);
+        }
+        return a.username.compareTo(b.username);
+    };
+
+    private static final class Subscriber {
+        final int topK;
+        long version;
+        // The top k this subscriber was last sent, by name.
+        Map<String, Integer> sent = new HashMap<>();
+
+        Subscriber(int topK) {
+            this.topK = topK;
+        }
+    }
+
+    // Guarded by this.
+    private final TreeSet<Entry> ranked = new TreeSet<>(RANKING);
+    private final Map<String, Entry> byName = new HashMap<>();
+    private final Map<ClientConnection, Subscriber> subscribers = new HashMap<>();
+
+    /** Starts or restarts the pushes to {@code connection} with a fresh snapshot. */
+    synchronized void subscribe(ClientConnection connection, int topK) {
+        Subscriber subscriber = new Subscriber(topK);
+        subscribers.put(connection, subscriber);
+        connection.send("LB_RESET:" + subscriber.version);
+        push(connection, subscriber);
+    }
+
+    synchronized void unsubscribe(ClientConnection connection) {
+        subscribers.remove(connection);
+    }
+
+    synchronized void recordWin(String username) {
+        Entry old = byName.get(username);
+        if (old != null) {
+            ranked.remove(old);
+        }
+        Entry entry = new Entry(username, old == null ? 1 : old.wins + 1);
+        ranked.add(entry);
+        byName.put(username, entry);
+        subscribers.forEach(this::push);
+    }
+
+    /** Sends what changed between the subscriber's last top k and the current one. */
+    private void push(ClientConnection connection, Subscriber subscriber) {
+        Map<String, Integer> top = new LinkedHashMap<>();
+        for (Entry entry : ranked) {
+            if (top.size() == subscriber.topK) {
+                break;
+            }
+            top.put(entry.username, entry.wins);
+        }
+        List<String> lines = new ArrayList<>();
+        for (String username : subscriber.sent.keySet()) {
+            if (!top.containsKey(username)) {
+                lines.add("LB_REMOVE:" + (++subscriber.version) + ":" + username);
+            }
+        }
+        top.forEach((username, wins) -> {
+            if (!wins.equals(subscriber.sent.get(username))) {
+                lines.add("LB_DELTA:" + (++subscriber.version) + ":" + username + ":" + wins);
+            }
+        });
+        subscriber.sent = top;
+        for (String line : lines) {
+            connection.send(line);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.chatroom.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads newline-terminated UTF-8 lines straight from a socket stream. Unlike a
+ * {@code BufferedReader} it starts with a small buffer, which matters when tens of thousands of
+ * idle connections each hold one.
+ */
+final class LineReader {
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final InputStream in;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    // Bytes [start, end) of the buffer have been read but not returned yet.
+    private int start = 0;
+    private int end = 0;
+
+    LineReader(InputStream in) {
+        this.in = in;
+    }
+
+    /** The next line without its {@code \n} or {@code \r\n}, or null at end of stream. */
+    String readLine() throws IOException {
+        // Bytes already searched for a newline, counted from start; fill() may move start.
+        int scanned = 0;
+        while (true) {
+            for (int i = start + scanned; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    int lineEnd = i > start && buffer[i - 1] == '\r' ? i - 1 : i;
+                    String line = new String(buffer, start, lineEnd - start, StandardCharsets.UTF_8);
+                    start = i + 1;
+                    return line;
+                }
+            }
+            scanned = end - start;
+            if (!fill()) {
+                return null;
+            }
+        }
+    }
+
+    /** Reads more bytes, compacting or growing the buffer first. False at end of stream. */
+    private boolean fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if (end == buffer.length) {
+            if (buffer.length >= MAX_LINE_LENGTH) {
+                throw new IOException("Line exceeds " + MAX_LINE_LENGTH + " bytes");
+            }
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = in.read(buffer, end, buffer.length - end);
+        if (read < 0) {
+            return false;
+        }
+        end += read;
+        return true;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.chatroom.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Drives a real server over loopback sockets, the way the app talks to it. */
+public class ChatRoomTest {
+
+    private ChatServer server;
+    private Client alice;
+    private Client bob;
+
+    private final class Client implements AutoCloseable {
+        final Socket socket;
+        final BufferedReader in;
+        final OutputStream out;
+        final String offer;
+        private long pings = 0;
+
+        Client(String username) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+            socket.setSoTimeout(5000);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = socket.getOutputStream();
+            send(username);
+            offer = next();
+            assertTrue(offer.startsWith("PROTOCOL_OFFER:"));
+        }
+
+        void send(String line) throws IOException {
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        /** The next line, skipping the announcements every client gets. */
+        String next() throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+            } while (line != null && line.startsWith("JOINED:"));
+            return line;
+        }
+
+        void expect(String... lines) throws IOException {
+            for (String line : lines) {
+                assertEquals(line, next());
+            }
+        }
+
+        /** Asserts nothing else was sent to this client before a PING round trip. */
+        void expectNothingElse() throws IOException {
+            long id = ++pings;
+            send("PING:" + id);
+            assertEquals("PONG:" + id, next());
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ChatServer(InetAddress.getLoopbackAddress(), 0);
+        Thread.ofVirtual().start(server::serve);
+        alice = new Client("alice");
+        bob = new Client("bob");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        alice.close();
+        bob.close();
+        server.stop();
+    }
+
+    private void startGame() throws IOException {
+        alice.send("NEW_TICTACTOE:7:alice");
+        alice.expect("NEW_TICTACTOE:7:alice");
+        bob.expect("NEW_TICTACTOE:7:alice");
+        bob.send("JOIN_REQUEST:7:alice:bob");
+        bob.expect("JOIN_TICTACTOE:7:alice:bob", "START_TICTACTOE:7:alice:bob");
+        alice.expect("START_TICTACTOE:7:alice:bob");
+    }
+
+    /** Sends a sequenced move and waits until it is acked and relayed. */
+    private static void move(Client from, Client to, String move) throws IOException {
+        from.send(move);
+        from.expect("MOVE_ACK:7:" + move.substring(move.lastIndexOf(':') + 1));
+        to.expect(move);
+    }
+
+    @Test
+    public void offer_listsEveryImplementedCapability() {
+        assertTrue(alice.offer.contains("HEARTBEAT:1"));
+        assertTrue(alice.offer.contains("RESYNC:1"));
+        assertTrue(alice.offer.contains("LEADERBOARD:1"));
+    }
+
+    @Test
+    public void acks_followTheMovesInOrder() throws Exception {
+        startGame();
+        for (int seq = 1; seq <= 20; seq++) {
+            alice.send("MOVE:7:0:0:1:" + seq);
+        }
+        for (int seq = 1; seq <= 20; seq++) {
+            alice.expect("MOVE_ACK:7:" + seq);
+            bob.expect("MOVE:7:0:0:1:" + seq);
+        }
+    }
+
+    @Test
+    public void resentMoves_areAckedAgainButRelayedOnce() throws Exception {
+        startGame();
+        alice.send("MOVE:7:0:0:1:1");
+        alice.send("MOVE:7:0:0:1:1");
+        alice.expect("MOVE_ACK:7:1", "MOVE_ACK:7:1");
+        alice.expectNothingElse();
+        bob.expect("MOVE:7:0:0:1:1");
+        bob.expectNothingElse();
+    }
+
+    @Test
+    public void unsequencedMoves_areRelayedWithoutAck() throws Exception {
+        startGame();
+        alice.send("MOVE:7:0:0:1");
+        bob.expect("MOVE:7:0:0:1");
+        alice.expectNothingElse();
+    }
+
+    @Test
+    public void resync_replaysTheOtherPlayersMovesAfterTheGivenSequence() throws Exception {
+        startGame();
+        move(alice, bob, "MOVE:7:0:0:1:1");
+        move(bob, alice, "MOVE:7:1:1:2:2");
+        move(alice, bob, "MOVE:7:0:1:1:3");
+        move(bob, alice, "MOVE:7:2:2:2:4");
+        move(alice, bob, "MOVE:7:0:2:1:5");
+
+        bob.send("RESYNC:7:2");
+        bob.expect("MOVE:7:0:1:1:3", "MOVE:7:0:2:1:5");
+        bob.expectNothingElse();
+        alice.send("RESYNC:7:0");
+        alice.expect("MOVE:7:1:1:2:2", "MOVE:7:2:2:2:4");
+        alice.expectNothingElse();
+        alice.send("RESYNC:7:5");
+        alice.expectNothingElse();
+    }
+
+    @Test
+    public void reset_needsBothPlayersAndStartsANewRound() throws Exception {
+        startGame();
+        move(alice, bob, "MOVE:7:0:0:1:1");
+
+        alice.send("RESET_GAME_REQUEST:7");
+        bob.expect("RESET_GAME_PENDING:7:alice");
+        // Asking twice is still one player's request.
+        alice.send("RESET_GAME_REQUEST:7");
+        bob.expect("RESET_GAME_PENDING:7:alice");
+        alice.expectNothingElse();
+        bob.expectNothingElse();
+
+        bob.send("RESET_GAME_REQUEST:7");
+        bob.expect("RESET_GAME_CONFIRMED:7");
+        alice.expect("RESET_GAME_CONFIRMED:7");
+
+        // The new round numbers its moves from one again, and the old round is not replayed.
+        bob.send("RESYNC:7:0");
+        bob.expectNothingElse();
+        move(alice, bob, "MOVE:7:1:1:1:1");
+    }
+
+    @Test
+    public void leaderboard_sendsASnapshotThenDeltas() throws Exception {
+        startGame();
+        alice.send("SUBSCRIBE_LEADERBOARD:5");
+        alice.expect("LB_RESET:0");
+        alice.expectNothingElse();
+
+        // Both players report the result; the round counts once.
+        alice.send("GAME_OVER:7:1");
+        alice.expect("LB_DELTA:1:alice:1");
+        bob.expect("GAME_OVER:7:1");
+        bob.send("GAME_OVER:7:1");
+        alice.expect("GAME_OVER:7:1");
+        alice.expectNothingElse();
+
+        bob.send("SUBSCRIBE_LEADERBOARD:1");
+        bob.expect("LB_RESET:0", "LB_DELTA:1:alice:1");
+
+        alice.send("RESET_GAME_REQUEST:7");
+        bob.expect("RESET_GAME_PENDING:7:alice");
+        bob.send("RESET_GAME_REQUEST:7");
+        bob.expect("RESET_GAME_CONFIRMED:7");
+        alice.expect("RESET_GAME_CONFIRMED:7");
+        bob.send("GAME_OVER:7:2");
+        alice.expect("GAME_OVER:7:2", "LB_DELTA:2:bob:1");
+        bob.expectNothingElse();
+
+        // A second win puts bob ahead, which changes bob's top 1.
+        alice.send("UNSUBSCRIBE_LEADERBOARD");
+        alice.send("RESET_GAME_REQUEST:7");
+        bob.expect("RESET_GAME_PENDING:7:alice");
+        bob.send("RESET_GAME_REQUEST:7");
+        bob.expect("RESET_GAME_CONFIRMED:7");
+        alice.expect("RESET_GAME_CONFIRMED:7");
+        bob.send("GAME_OVER:7:2");
+        alice.expect("GAME_OVER:7:2");
+        alice.expectNothingElse();
+        bob.expect("LB_REMOVE:2:alice", "LB_DELTA:3:bob:2");
+    }
+}
@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Chat Room"
 include(":app")
+include(":stats-server")
+include(":chat-server")
@@ -0,0 +1,25 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+application {
+    mainClass.set("com.example.chatroom.stats.StatsServer")
+}
+
+dependencies {
+    implementation(libs.org.json)
+    testImplementation(libs.junit)
+}
+
+tasks.register<JavaExec>("benchmark") {
+    group = "verification"
+    description = "Runs the mixed update/query throughput benchmark of the stats store."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.chatroom.stats.StatsBenchmark")
+    args = (project.findProperty("benchmarkArgs") as String?)?.split(" ") ?: listOf("--baseline")
+}
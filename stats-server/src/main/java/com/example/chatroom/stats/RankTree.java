@@ -0,0 +1,238 @@
+package com.example.chatroom.stats;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Order-statistics treap over user ids, ranked by score descending and then by id. Every user is
+ * its own node, and the nodes live in parallel int arrays indexed by user id, so the tree holds no
+ * objects per user. Subtree sizes make {@link #rankOf} and {@link #select} logarithmic, and a score
+ * change is a remove plus an insert of one node.
+ *
+ * <p>Not thread-safe; {@link StatsStore} guards it.
+ */
+final class RankTree {
+
+    private static final int NIL = -1;
+
+    private int[] left = new int[0];
+    private int[] right = new int[0];
+    private int[] size = new int[0];
+    private int[] priority = new int[0];
+    private int[] score = new int[0];
+    private boolean[] present = new boolean[0];
+    private final SplittableRandom random = new SplittableRandom(42);
+    private int root = NIL;
+
+    int size() {
+        return root == NIL ? 0 : size[root];
+    }
+
+    boolean contains(int id) {
+        return id < present.length && present[id];
+    }
+
+    int scoreOf(int id) {
+        return score[id];
+    }
+
+    /** Inserts {@code id} with {@code newScore}, or moves it if it is already ranked. */
+    void put(int id, int newScore) {
+        ensureCapacity(id + 1);
+        if (present[id]) {
+            if (score[id] == newScore) {
+                return;
+            }
+            root = remove(root, id);
+        }
+        score[id] = newScore;
+        left[id] = NIL;
+        right[id] = NIL;
+        size[id] = 1;
+        priority[id] = random.nextInt();
+        present[id] = true;
+        root = insert(root, id);
+    }
+
+    /** Number of users ranked ahead of {@code id}, i.e. its 0-based rank. */
+    int rankOf(int id) {
+        int rank = 0;
+        int node = root;
+        while (node != NIL) {
+            if (node == id) {
+                return rank + sizeOf(left[node]);
+            }
+            if (before(id, node)) {
+                node = left[node];
+            } else {
+                rank += sizeOf(left[node]) + 1;
+                node = right[node];
+            }
+        }
+        return -1;
+    }
+
+    /** The user at 0-based {@code rank}. */
+    int select(int rank) {
+        int node = root;
+        while (node != NIL) {
+            int leftSize = sizeOf(left[node]);
+            if (rank < leftSize) {
+                node = left[node];
+            } else if (rank == leftSize) {
+                return node;
+            } else {
+                rank -= leftSize + 1;
+                node = right[node];
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Writes up to {@code limit} user ids starting at 0-based {@code offset} into {@code out} in
+     * rank order and returns how many were written. Costs one descent plus an in-order walk.
+     */
+    int range(int offset, int limit, int[] out) {
+        if (offset >= size() || limit <= 0) {
+            return 0;
+        }
+        // Path from the root to the node at `offset`, then iterate in order with that stack.
+        int[] stack = new int[64];
+        int depth = 0;
+        int node = root;
+        int rank = offset;
+        while (node != NIL) {
+            int leftSize = sizeOf(left[node]);
+            if (rank < leftSize) {
+                stack = push(stack, depth++, node);
+                node = left[node];
+            } else if (rank == leftSize) {
+                stack = push(stack, depth++, node);
+                break;
+            } else {
+                rank -= leftSize + 1;
+                node = right[node];
+            }
+        }
+        int count = 0;
+        while (depth > 0 && count < limit) {
+            node = stack[--depth];
+            out[count++] = node;
+            for (int next = right[node]; next != NIL; next = left[next]) {
+                stack = push(stack, depth++, next);
+            }
+        }
+        return count;
+    }
+
+    private static int[] push(int[] stack, int depth, int node) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth] = node;
+        return stack;
+    }
+
+    private boolean before(int a, int b) {
+        if (score[a] != score[b]) {
+            return score[a] > score[b];
+        }
+        return a < b;
+    }
+
+    private int sizeOf(int node) {
+        return node == NIL ? 0 : size[node];
+    }
+
+    private void update(int node) {
+        size[node] = 1 + sizeOf(left[node]) + sizeOf(right[node]);
+    }
+
+    private int insert(int node, int id) {
+        if (node == NIL) {
+            return id;
+        }
+        if (priority[id] > priority[node]) {
+            // `id` becomes this subtree's root: split the subtree around it.
+            int[] parts = split(node, id);
+            left[id] = parts[0];
+            right[id] = parts[1];
+            update(id);
+            return id;
+        }
+        if (before(id, node)) {
+            left[node] = insert(left[node], id);
+        } else {
+            right[node] = insert(right[node], id);
+        }
+        update(node);
+        return node;
+    }
+
+    /** Splits {@code node}'s subtree into the users ranked before {@code id} and the rest. */
+    private int[] split(int node, int id) {
+        if (node == NIL) {
+            return new int[]{NIL, NIL};
+        }
+        if (before(node, id)) {
+            int[] parts = split(right[node], id);
+            right[node] = parts[0];
+            update(node);
+            parts[0] = node;
+            return parts;
+        }
+        int[] parts = split(left[node], id);
+        left[node] = parts[1];
+        update(node);
+        parts[1] = node;
+        return parts;
+    }
+
+    private int remove(int node, int id) {
+        if (node == NIL) {
+            return NIL;
+        }
+        if (node == id) {
+            present[id] = false;
+            return merge(left[id], right[id]);
+        }
+        if (before(id, node)) {
+            left[node] = remove(left[node], id);
+        } else {
+            right[node] = remove(right[node], id);
+        }
+        update(node);
+        return node;
+    }
+
+    private int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+        if (priority[a] > priority[b]) {
+            right[a] = merge(right[a], b);
+            update(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        update(b);
+        return b;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= present.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(16, present.length * 2));
+        left = Arrays.copyOf(left, newCapacity);
+        right = Arrays.copyOf(right, newCapacity);
+        size = Arrays.copyOf(size, newCapacity);
+        priority = Arrays.copyOf(priority, newCapacity);
+        score = Arrays.copyOf(score, newCapacity);
+        present = Arrays.copyOf(present, newCapacity);
+    }
+}
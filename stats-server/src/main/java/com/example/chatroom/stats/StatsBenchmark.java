@@ -0,0 +1,168 @@
+package com.example.chatroom.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of {@link StatsStore} under a mixed load of game results, top-N pages and
+ * rank-of-user lookups, spread over several threads. With {@code --baseline} it also runs the
+ * same single-threaded mix against a full sort per query, the way the PHP scoreboard works.
+ *
+ * <p>Usage: {@code StatsBenchmark [--users N] [--threads N] [--seconds N] [--update-ratio R]
+ * [--baseline]}
+ */
+public final class StatsBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        int users = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int seconds = 10;
+        double updateRatio = 0.5;
+        boolean baseline = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--users":
+                    users = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--update-ratio":
+                    updateRatio = Double.parseDouble(args[++i]);
+                    break;
+                case "--baseline":
+                    baseline = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        String[] names = new String[users];
+        for (int i = 0; i < users; i++) {
+            names[i] = "user" + i;
+        }
+        StatsStore store = new StatsStore();
+        SplittableRandom seed = new SplittableRandom(1);
+        for (int i = 0; i < users; i++) {
+            store.record(null, names[i], seed.nextInt(2), seed.nextInt(3));
+        }
+        System.out.printf("%d users, %d threads, %d s, %.0f%% updates%n",
+                users, threads, seconds, updateRatio * 100);
+
+        // Warm up so the JIT has compiled the hot paths before we measure.
+        run(store, names, threads, 2, updateRatio);
+        Result result = run(store, names, threads, seconds, updateRatio);
+        System.out.printf("Incremental ranking: %,.0f ops/s (%,d updates, %,d queries)%n",
+                result.opsPerSecond(), result.updates, result.queries);
+
+        if (baseline) {
+            Result naive = runFullSort(users, seconds, updateRatio);
+            System.out.printf("Full sort per query, 1 thread: %,.0f ops/s (%,d updates, %,d queries)%n",
+                    naive.opsPerSecond(), naive.updates, naive.queries);
+        }
+    }
+
+    private static final class Result {
+        final long updates;
+        final long queries;
+        final double seconds;
+
+        Result(long updates, long queries, double seconds) {
+            this.updates = updates;
+            this.queries = queries;
+            this.seconds = seconds;
+        }
+
+        double opsPerSecond() {
+            return (updates + queries) / seconds;
+        }
+    }
+
+    private static Result run(StatsStore store, String[] names, int threads, int seconds, double updateRatio)
+            throws InterruptedException {
+        LongAdder updates = new LongAdder();
+        LongAdder queries = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = new SplittableRandom(100 + t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long localUpdates = 0;
+                long localQueries = 0;
+                long sink = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    // Check the clock every few hundred operations only.
+                    for (int i = 0; i < 256; i++) {
+                        if (random.nextDouble() < updateRatio) {
+                            store.record(null, names[random.nextInt(names.length)], random.nextInt(2), random.nextInt(3));
+                            localUpdates++;
+                        } else if (random.nextBoolean()) {
+                            // Most readers look at the first pages of the scoreboard.
+                            int page = random.nextInt(100) < 90 ? 0 : random.nextInt(Math.max(1, names.length / PAGE_SIZE));
+                            sink += store.top(page * PAGE_SIZE, PAGE_SIZE).length;
+                            localQueries++;
+                        } else {
+                            sink += store.rankOf(names[random.nextInt(names.length)]);
+                            localQueries++;
+                        }
+                    }
+                }
+                updates.add(localUpdates);
+                queries.add(localQueries + (sink == Long.MIN_VALUE ? 1 : 0));
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + seconds * 1_000_000_000L;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+        return new Result(updates.sum(), queries.sum(), elapsed);
+    }
+
+    /** Counters in a plain array and a full sort of all users for every scoreboard or rank query. */
+    private static Result runFullSort(int users, int seconds, double updateRatio) {
+        int[] wins = new int[users];
+        SplittableRandom random = new SplittableRandom(7);
+        long updates = 0;
+        long queries = 0;
+        long sink = 0;
+        long begin = System.nanoTime();
+        long deadline = begin + seconds * 1_000_000_000L;
+        Integer[] order = new Integer[users];
+        while (System.nanoTime() < deadline) {
+            if (random.nextDouble() < updateRatio) {
+                wins[random.nextInt(users)] += random.nextInt(3) == 0 ? 1 : 0;
+                updates++;
+            } else {
+                for (int i = 0; i < users; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> wins[a] != wins[b] ? Integer.compare(wins[b], wins[a]) : Integer.compare(a, b));
+                sink += order[0];
+                queries++;
+            }
+        }
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+        return new Result(updates, queries + (sink == Long.MIN_VALUE ? 1 : 0), elapsed);
+    }
+}
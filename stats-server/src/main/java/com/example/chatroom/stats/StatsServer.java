@@ -0,0 +1,218 @@
+package com.example.chatroom.stats;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local stand-in for {@code update_stats.php}, {@code get_stats.php} and
+ * {@code get_scoreboard.php}, answering with the same JSON the app parses. Parameters are read from
+ * the query string and from a form-encoded body alike, as PHP's {@code $_REQUEST} does.
+ *
+ * <p>Usage: {@code StatsServer [port]}, port 8080 by default.
+ */
+public final class StatsServer {
+
+    private static final Logger LOG = Logger.getLogger(StatsServer.class.getName());
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final StatsStore store;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public StatsServer(StatsStore store, int port) throws IOException {
+        this.store = store;
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        server.setExecutor(executor);
+        server.createContext("/update_stats.php", this::handleUpdate);
+        server.createContext("/get_stats.php", this::handleStats);
+        server.createContext("/get_scoreboard.php", this::handleScoreboard);
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("Stats server listening on port " + server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        new StatsServer(new StatsStore(), port).start();
+    }
+
+    private void handleUpdate(HttpExchange exchange) throws IOException {
+        Map<String, String> params = readParams(exchange);
+        JSONObject response = new JSONObject();
+        try {
+            String batch = params.get("results");
+            if (batch != null) {
+                // Batched form sent by the app's StatsOutbox. Duplicates and malformed results are
+                // acknowledged too, so the client drops them instead of retrying forever.
+                JSONArray results = new JSONArray(batch);
+                JSONArray accepted = new JSONArray();
+                for (int i = 0; i < results.length(); i++) {
+                    JSONObject result = results.getJSONObject(i);
+                    String id = result.optString("id", null);
+                    apply(id, result.optString("username", null),
+                            result.optString("game_type", null), result.optString("result", null));
+                    if (id != null) {
+                        accepted.put(id);
+                    }
+                }
+                response.put("success", true).put("accepted", accepted);
+            } else if (apply(params.get("id"), params.get("username"), params.get("game_type"), params.get("result"))) {
+                response.put("success", true);
+            } else {
+                response.put("success", false).put("message", "Invalid parameters");
+            }
+        } catch (JSONException e) {
+            response = new JSONObject().put("success", false).put("message", "Invalid results");
+        }
+        // Tells StatsOutbox it may switch from one result per request to the results form.
+        response.put("batch", true);
+        send(exchange, 200, response, null);
+    }
+
+    /** Records one result; false when it is malformed. */
+    private boolean apply(String id, String username, String gameType, String result) {
+        int game = gameType == null ? -1 : StatsStore.gameIndex(gameType);
+        int outcome = result == null ? -1 : StatsStore.resultIndex(result);
+        if (username == null || username.isEmpty() || game < 0 || outcome < 0) {
+            return false;
+        }
+        store.record(id, username, game, outcome);
+        return true;
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        String username = readParams(exchange).get("username");
+        if (username == null || username.isEmpty()) {
+            send(exchange, 200, new JSONObject().put("success", false).put("message", "Missing username"), null);
+            return;
+        }
+        String etag = currentEtag();
+        if (notModified(exchange, etag)) {
+            return;
+        }
+        StatsStore.UserStats stats = store.getStats(username);
+        JSONObject body = new JSONObject();
+        for (int game = 0; game < StatsStore.GAME_TYPES.length; game++) {
+            String prefix = StatsStore.GAME_TYPES[game];
+            body.put(prefix + "_wins", stats.get(game, 0))
+                    .put(prefix + "_losses", stats.get(game, 1))
+                    .put(prefix + "_draws", stats.get(game, 2));
+        }
+        send(exchange, 200, new JSONObject().put("success", true).put("stats", body), etag);
+    }
+
+    private void handleScoreboard(HttpExchange exchange) throws IOException {
+        Map<String, String> params = readParams(exchange);
+        int offset = Math.max(0, parseInt(params.get("offset"), 0));
+        int limit = Math.min(MAX_PAGE_SIZE, Math.max(1, parseInt(params.get("limit"), DEFAULT_PAGE_SIZE)));
+
+        String etag = currentEtag();
+        if (notModified(exchange, etag)) {
+            return;
+        }
+        StatsStore.Entry[] entries = store.top(offset, limit);
+        JSONArray scoreboard = new JSONArray();
+        for (StatsStore.Entry entry : entries) {
+            scoreboard.put(new JSONObject().put("up_ime", entry.username).put("total_wins", entry.totalWins));
+        }
+        JSONObject response = new JSONObject()
+                .put("success", true)
+                .put("scoreboard", scoreboard)
+                .put("has_more", offset + entries.length < store.userCount());
+        send(exchange, 200, response, etag);
+    }
+
+    /**
+     * Every update bumps the store's version, so it serves as the ETag of all read responses. It is
+     * read before the body: a racing update can only make the tag older than the body, which costs
+     * the client one extra fetch rather than a stale 304.
+     */
+    private String currentEtag() {
+        return "\"" + store.getVersion() + "\"";
+    }
+
+    private static boolean notModified(HttpExchange exchange, String etag) throws IOException {
+        if (!etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            return false;
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return true;
+    }
+
+    private static int parseInt(String value, int fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        if ("POST".equals(exchange.getRequestMethod())) {
+            try (InputStream in = exchange.getRequestBody()) {
+                parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseForm(String encoded, Map<String, String> params) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, JSONObject body, String etag) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(status, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Client went away", e);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.chatroom.stats;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory win/loss/draw counters for every user and both games, plus the total-wins ranking.
+ * A username is mapped to a dense int id once. From then on its counters are one stride of a flat
+ * {@code int[]} and its rank is a node in a {@link RankTree}. Recording a result and answering
+ * rank or top-N queries are all logarithmic in the number of users.
+ *
+ * <p>Reads share a read lock; updates take the write lock. {@link #getVersion} changes on every
+ * update and serves as the ETag of the scoreboard and stats responses.
+ */
+public final class StatsStore {
+
+    public static final String[] GAME_TYPES = {"tictactoe", "fourinarow"};
+    public static final String[] RESULTS = {"win", "loss", "draw"};
+    private static final int STRIDE = GAME_TYPES.length * RESULTS.length;
+    // Result ids remembered for deduplication. Clients retry within minutes, so the oldest ids can go.
+    static final int MAX_REMEMBERED_RESULT_IDS = 100_000;
+
+    /** Counters of one user, {@code counts[game * 3 + result]}, in the order of the arrays above. */
+    public static final class UserStats {
+        public final String username;
+        public final int[] counts;
+
+        UserStats(String username, int[] counts) {
+            this.username = username;
+            this.counts = counts;
+        }
+
+        public int get(int game, int result) {
+            return counts[game * RESULTS.length + result];
+        }
+    }
+
+    public static final class Entry {
+        public final int rank;
+        public final String username;
+        public final int totalWins;
+
+        Entry(int rank, String username, int totalWins) {
+            this.rank = rank;
+            this.username = username;
+            this.totalWins = totalWins;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock.
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Set<String> appliedResultIds = Collections.newSetFromMap(
+            new LinkedHashMap<String, Boolean>() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_REMEMBERED_RESULT_IDS;
+                }
+            });
+    private String[] names = new String[16];
+    private int[] counts = new int[16 * STRIDE];
+    private final RankTree ranking = new RankTree();
+    private long version;
+
+    public static int gameIndex(String gameType) {
+        return indexOf(GAME_TYPES, gameType);
+    }
+
+    public static int resultIndex(String result) {
+        return indexOf(RESULTS, result);
+    }
+
+    private static int indexOf(String[] values, String value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds one finished game. A non-null {@code resultId} is applied at most once among the last
+     * {@value #MAX_REMEMBERED_RESULT_IDS} ids, so clients can retry safely. Returns false only for a
+     * duplicate id.
+     */
+    public boolean record(String resultId, String username, int game, int result) {
+        lock.writeLock().lock();
+        try {
+            if (resultId != null && !appliedResultIds.add(resultId)) {
+                return false;
+            }
+            int id = idFor(username);
+            counts[id * STRIDE + game * RESULTS.length + result]++;
+            if (result == 0) {
+                ranking.put(id, totalWins(id));
+            } else if (!ranking.contains(id)) {
+                ranking.put(id, 0);
+            }
+            version++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** The user's counters; all zero for a user with no games. */
+    public UserStats getStats(String username) {
+        lock.readLock().lock();
+        try {
+            Integer id = ids.get(username);
+            int[] userCounts = id == null ? new int[STRIDE]
+                    : Arrays.copyOfRange(counts, id * STRIDE, id * STRIDE + STRIDE);
+            return new UserStats(username, userCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 1-based rank by total wins, or -1 for a user with no games. */
+    public int rankOf(String username) {
+        lock.readLock().lock();
+        try {
+            Integer id = ids.get(username);
+            return id == null ? -1 : ranking.rankOf(id) + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Up to {@code limit} users ranked from 0-based {@code offset} on. */
+    public Entry[] top(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            int[] page = new int[Math.max(0, Math.min(limit, ranking.size() - offset))];
+            int count = ranking.range(offset, page.length, page);
+            Entry[] entries = new Entry[count];
+            for (int i = 0; i < count; i++) {
+                entries[i] = new Entry(offset + i + 1, names[page[i]], ranking.scoreOf(page[i]));
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int userCount() {
+        lock.readLock().lock();
+        try {
+            return ranking.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getVersion() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int totalWins(int id) {
+        int wins = 0;
+        for (int game = 0; game < GAME_TYPES.length; game++) {
+            wins += counts[id * STRIDE + game * RESULTS.length];
+        }
+        return wins;
+    }
+
+    private int idFor(String username) {
+        Integer existing = ids.get(username);
+        if (existing != null) {
+            return existing;
+        }
+        int id = ids.size();
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            counts = Arrays.copyOf(counts, id * 2 * STRIDE);
+        }
+        names[id] = username;
+        ids.put(username, id);
+        return id;
+    }
+}
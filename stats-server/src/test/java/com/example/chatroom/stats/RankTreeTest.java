@@ -0,0 +1,82 @@
+package com.example.chatroom.stats;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RankTreeTest {
+
+    /** Ids ordered like the tree: score descending, then id ascending. */
+    private static List<Integer> reference(Map<Integer, Integer> scores) {
+        List<Integer> ids = new ArrayList<>(scores.keySet());
+        ids.sort((a, b) -> {
+            int byScore = Integer.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : Integer.compare(a, b);
+        });
+        return ids;
+    }
+
+    private static void assertMatches(RankTree tree, Map<Integer, Integer> scores, Random random) {
+        List<Integer> expected = reference(scores);
+        assertEquals(expected.size(), tree.size());
+        for (int rank = 0; rank < expected.size(); rank++) {
+            int id = expected.get(rank);
+            assertEquals("rank of " + id, rank, tree.rankOf(id));
+            assertEquals("select " + rank, id, tree.select(rank));
+            assertEquals((int) scores.get(id), tree.scoreOf(id));
+        }
+        for (int i = 0; i < 20; i++) {
+            int offset = random.nextInt(expected.size() + 5);
+            int limit = random.nextInt(30);
+            int[] out = new int[limit];
+            int count = tree.range(offset, limit, out);
+            int expectedCount = Math.max(0, Math.min(limit, expected.size() - offset));
+            assertEquals(expectedCount, count);
+            for (int j = 0; j < count; j++) {
+                assertEquals(expected.get(offset + j).intValue(), out[j]);
+            }
+        }
+    }
+
+    @Test
+    public void matchesSortedReference_underRandomPutsAndScoreChanges() {
+        Random random = new Random(11);
+        RankTree tree = new RankTree();
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (int step = 0; step < 4000; step++) {
+            int id = random.nextInt(500);
+            // Few distinct scores, so ties ordered by id are common.
+            int score = scores.containsKey(id) && random.nextBoolean()
+                    ? scores.get(id) + 1 : random.nextInt(40);
+            tree.put(id, score);
+            scores.put(id, score);
+            if (step % 200 == 0) {
+                assertMatches(tree, scores, random);
+            }
+        }
+        assertMatches(tree, scores, random);
+    }
+
+    @Test
+    public void emptyAndUnknownIds() {
+        RankTree tree = new RankTree();
+        assertEquals(0, tree.size());
+        assertEquals(-1, tree.select(0));
+        assertEquals(0, tree.range(0, 10, new int[10]));
+        assertFalse(tree.contains(3));
+
+        tree.put(3, 5);
+        assertTrue(tree.contains(3));
+        assertFalse(tree.contains(2));
+        assertEquals(-1, tree.rankOf(2));
+        assertEquals(-1, tree.select(1));
+    }
+}
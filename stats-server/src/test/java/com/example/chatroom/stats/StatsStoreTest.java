@@ -0,0 +1,53 @@
+package com.example.chatroom.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StatsStoreTest {
+
+    private static final int WIN = StatsStore.resultIndex("win");
+    private static final int TIC_TAC_TOE = StatsStore.gameIndex("tictactoe");
+
+    @Test
+    public void duplicateResultIds_areAppliedOnce() {
+        StatsStore store = new StatsStore();
+        assertTrue(store.record("r1", "alice", TIC_TAC_TOE, WIN));
+        assertFalse(store.record("r1", "alice", TIC_TAC_TOE, WIN));
+        assertTrue(store.record(null, "alice", TIC_TAC_TOE, WIN));
+        assertTrue(store.record(null, "alice", TIC_TAC_TOE, WIN));
+        assertEquals(3, store.getStats("alice").get(TIC_TAC_TOE, WIN));
+    }
+
+    @Test
+    public void rememberedResultIds_areBounded() {
+        StatsStore store = new StatsStore();
+        int total = StatsStore.MAX_REMEMBERED_RESULT_IDS + 10;
+        for (int i = 0; i < total; i++) {
+            assertTrue(store.record("r" + i, "user" + (i % 100), TIC_TAC_TOE, WIN));
+        }
+        // The newest ids are still deduplicated; the oldest have been forgotten.
+        assertFalse(store.record("r" + (total - 1), "user0", TIC_TAC_TOE, WIN));
+        assertTrue(store.record("r0", "user0", TIC_TAC_TOE, WIN));
+    }
+
+    @Test
+    public void ranksByTotalWins() {
+        StatsStore store = new StatsStore();
+        store.record(null, "alice", TIC_TAC_TOE, WIN);
+        store.record(null, "bob", StatsStore.gameIndex("fourinarow"), WIN);
+        store.record(null, "bob", TIC_TAC_TOE, WIN);
+        store.record(null, "carol", TIC_TAC_TOE, StatsStore.resultIndex("loss"));
+        assertEquals(1, store.rankOf("bob"));
+        assertEquals(2, store.rankOf("alice"));
+        assertEquals(3, store.rankOf("carol"));
+        assertEquals(-1, store.rankOf("dave"));
+        StatsStore.Entry[] top = store.top(0, 2);
+        assertEquals(2, top.length);
+        assertEquals("bob", top[0].username);
+        assertEquals(2, top[0].totalWins);
+        assertEquals("alice", top[1].username);
+    }
+}